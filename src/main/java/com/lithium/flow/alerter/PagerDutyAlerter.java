@@ -20,7 +20,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.lithium.flow.config.Config;
 import com.lithium.flow.util.Logs;
-import com.lithium.flow.util.Sleep;
+import com.lithium.flow.util.RetryPolicy;
 import com.lithium.flow.util.TimeUtils;
 
 import java.io.IOException;
@@ -42,14 +42,16 @@ public class PagerDutyAlerter implements Alerter {
 	private static final Logger log = Logs.getLogger();
 
 	private final PagerDuty client;
-	private final long[] delays;
+	private final RetryPolicy retryPolicy;
 
 	public PagerDutyAlerter(@Nonnull Config config) {
 		checkNotNull(config);
 
 		client = PagerDuty.create(config.getString("pagerduty.key"));
-		delays = config.getList("pagerduty.delays", Arrays.asList("5s", "15s", "30s", "60s"))
+		long[] delays = config.getList("pagerduty.delays", Arrays.asList("5s", "15s", "30s", "60s"))
 				.stream().mapToLong(TimeUtils::getMillisValue).toArray();
+		retryPolicy = delays.length == 0 ? null
+				: RetryPolicy.builder().tries(delays.length).delays(i -> delays[i]).build();
 	}
 
 	@Override
@@ -68,8 +70,12 @@ public class PagerDutyAlerter implements Alerter {
 	}
 
 	private void notify(@Nonnull Object notify) {
-		for (long delay : delays) {
-			try {
+		if (retryPolicy == null) {
+			return;
+		}
+
+		try {
+			retryPolicy.call(() -> {
 				log.debug("notify: {}", ToStringBuilder.reflectionToString(notify, ToStringStyle.SHORT_PREFIX_STYLE));
 
 				NotifyResult result;
@@ -81,17 +87,13 @@ public class PagerDutyAlerter implements Alerter {
 
 				log.debug("result: {}", ToStringBuilder.reflectionToString(result, ToStringStyle.SHORT_PREFIX_STYLE));
 
-				if (result.status().equals("success")) {
-					return;
+				if (!result.status().equals("success")) {
+					throw new IOException("notify failed: " + result.status() + " (" + result.message() + ")");
 				}
-
-				log.warn("notify failed: {} ({})", result.status(), result.message());
-			} catch (IOException e) {
-				log.warn("notify failed", e);
-			}
-
-			log.info("retrying in {}ms", delay);
-			Sleep.softly(delay);
+				return result;
+			});
+		} catch (IOException | RuntimeException e) {
+			log.warn("notify failed", e);
 		}
 	}
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Growable long array stored in fixed-size chunks, so it never copies its contents to grow and can hold more than
+ * 2^31 values. Heap chunks are small enough to avoid humongous allocations. A mapped array keeps its values in a
+ * local file that can be flushed and reopened without rebuilding it.
+ *
+ * @author Matt Ayres
+ */
+public class BigLongArray implements Closeable {
+	private static final int HEAP_SHIFT = 15;
+	private static final int MAPPED_SHIFT = 20;
+	private static final long MAGIC = 0x4269674c6f6e6731L;
+	private static final int HEADER = 16;
+
+	private final int shift;
+	private final int mask;
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private MappedByteBuffer[] mapped = new MappedByteBuffer[16];
+	private LongBuffer[] chunks = new LongBuffer[16];
+	private int chunkCount;
+	private long size;
+
+	public BigLongArray() {
+		this(HEAP_SHIFT, null, null);
+	}
+
+	private BigLongArray(int shift, @Nullable FileChannel channel, @Nullable MappedByteBuffer header) {
+		this.shift = shift;
+		this.mask = (1 << shift) - 1;
+		this.channel = channel;
+		this.header = header;
+	}
+
+	/**
+	 * Opens the array stored in the file at the local path, creating it if it does not exist.
+	 */
+	@Nonnull
+	public static BigLongArray mapped(@Nonnull String path) throws IOException {
+		checkNotNull(path);
+
+		FileChannel channel = new RandomAccessFile(path, "rw").getChannel();
+		try {
+			boolean exists = channel.size() >= HEADER;
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+			BigLongArray array = new BigLongArray(MAPPED_SHIFT, channel, header);
+			if (exists) {
+				if (header.getLong(0) != MAGIC) {
+					throw new IOException("not a big array file: " + path);
+				}
+				array.size = header.getLong(8);
+				array.ensureChunks(array.size);
+			} else {
+				header.putLong(0, MAGIC);
+				header.putLong(8, 0);
+			}
+			return array;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public void add(long value) {
+		int chunk = (int) (size >>> shift);
+		if (chunk == chunkCount) {
+			ensureChunks(size + 1);
+		}
+		chunks[chunk].put((int) (size & mask), value);
+		size++;
+	}
+
+	public long get(long index) {
+		checkIndex(index);
+		return chunks[(int) (index >>> shift)].get((int) (index & mask));
+	}
+
+	public void set(long index, long value) {
+		checkIndex(index);
+		chunks[(int) (index >>> shift)].put((int) (index & mask), value);
+	}
+
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Resets the size to zero, keeping allocated chunks for reuse.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	public void forEach(@Nonnull LongConsumer consumer) {
+		checkNotNull(consumer);
+		for (long i = 0; i < size; i++) {
+			consumer.accept(chunks[(int) (i >>> shift)].get((int) (i & mask)));
+		}
+	}
+
+	/**
+	 * Writes the size and forces values to the file for mapped arrays.
+	 */
+	public void flush() {
+		if (header != null) {
+			for (int i = 0; i < chunkCount; i++) {
+				mapped[i].force();
+			}
+			header.putLong(8, size);
+			header.force();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			flush();
+			channel.close();
+		}
+	}
+
+	private void checkIndex(long index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + " out of bounds for size " + size);
+		}
+	}
+
+	private void ensureChunks(long capacity) {
+		long needed = (capacity + mask) >>> shift;
+		checkArgument(needed <= Integer.MAX_VALUE, "capacity too large: %s", capacity);
+		while (chunkCount < needed) {
+			if (chunkCount == chunks.length) {
+				chunks = Arrays.copyOf(chunks, chunks.length * 2);
+				mapped = Arrays.copyOf(mapped, chunks.length);
+			}
+			if (channel == null) {
+				chunks[chunkCount++] = LongBuffer.allocate(1 << shift);
+			} else {
+				mapped[chunkCount] = map(chunkCount);
+				chunks[chunkCount] = mapped[chunkCount].asLongBuffer();
+				chunkCount++;
+			}
+		}
+	}
+
+	@Nonnull
+	private MappedByteBuffer map(int chunk) {
+		long bytes = (long) 8 << shift;
+		try {
+			return channel.map(FileChannel.MapMode.READ_WRITE, HEADER + chunk * bytes, bytes);
+		} catch (IOException e) {
+			throw new IllegalStateException("failed to map chunk " + chunk, e);
+		}
+	}
+}
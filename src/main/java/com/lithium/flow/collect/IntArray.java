@@ -16,6 +16,8 @@
 
 package com.lithium.flow.collect;
 
+import static com.google.common.base.Preconditions.checkElementIndex;
+
 import java.nio.IntBuffer;
 import java.util.Arrays;
 
@@ -40,11 +42,56 @@ public class IntArray {
 
 	public void add(int value) {
 		if (pos == array.length) {
-			array = Arrays.copyOf(array, (int) (array.length * grow));
+			array = Arrays.copyOf(array, Math.max(array.length + 1, (int) (array.length * grow)));
 		}
 		array[pos++] = value;
 	}
 
+	public int get(int index) {
+		checkElementIndex(index, pos);
+		return array[index];
+	}
+
+	public void set(int index, int value) {
+		checkElementIndex(index, pos);
+		array[index] = value;
+	}
+
+	/**
+	 * Removes the value at the index, shifting later values down.
+	 */
+	public int remove(int index) {
+		checkElementIndex(index, pos);
+		int value = array[index];
+		System.arraycopy(array, index + 1, array, index, pos - index - 1);
+		pos--;
+		return value;
+	}
+
+	public int size() {
+		return pos;
+	}
+
+	public void clear() {
+		pos = 0;
+	}
+
+	/**
+	 * Sorts the values in place into ascending order.
+	 */
+	public void sort() {
+		Arrays.sort(array, 0, pos);
+	}
+
+	/**
+	 * Searches values that are sorted in ascending order.
+	 *
+	 * @return index of the value, or (-(insertion point) - 1) if not found, as {@link Arrays#binarySearch}
+	 */
+	public int binarySearch(int value) {
+		return Arrays.binarySearch(array, 0, pos, value);
+	}
+
 	@Nonnull
 	public IntBuffer toBuffer() {
 		return IntBuffer.wrap(array, 0, pos);
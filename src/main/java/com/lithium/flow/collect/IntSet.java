@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Open-addressing set of primitive int values, using linear probing with backward-shift deletion.
+ *
+ * @author Matt Ayres
+ */
+public class IntSet {
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private int[] keys;
+	private int mask;
+	private int threshold;
+	private int size;
+	private boolean hasZero;
+
+	public IntSet() {
+		this(16);
+	}
+
+	public IntSet(int expectedSize) {
+		checkArgument(expectedSize >= 0, "expectedSize must not be negative: %s", expectedSize);
+		allocate(Primitives.tableSize(expectedSize, LOAD_FACTOR));
+	}
+
+	public int size() {
+		return size + (hasZero ? 1 : 0);
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean contains(int value) {
+		return value == 0 ? hasZero : indexOf(value) >= 0;
+	}
+
+	/**
+	 * @return true if the value was not already present
+	 */
+	public boolean add(int value) {
+		if (value == 0) {
+			boolean added = !hasZero;
+			hasZero = true;
+			return added;
+		}
+
+		int index = indexOf(value);
+		if (index >= 0) {
+			return false;
+		}
+
+		keys[-index - 1] = value;
+		if (++size >= threshold) {
+			rehash(keys.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the value was present
+	 */
+	public boolean remove(int value) {
+		if (value == 0) {
+			boolean removed = hasZero;
+			hasZero = false;
+			return removed;
+		}
+
+		int index = indexOf(value);
+		if (index < 0) {
+			return false;
+		}
+
+		int next = index;
+		while (true) {
+			next = (next + 1) & mask;
+			int key = keys[next];
+			if (key == 0) {
+				break;
+			}
+
+			int home = Primitives.mix(key) & mask;
+			if (next > index ? home <= index || home > next : home <= index && home > next) {
+				keys[index] = key;
+				index = next;
+			}
+		}
+
+		keys[index] = 0;
+		size--;
+		return true;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, (int) 0);
+		size = 0;
+		hasZero = false;
+	}
+
+	public void forEach(@Nonnull IntConsumer consumer) {
+		checkNotNull(consumer);
+		if (hasZero) {
+			consumer.accept(0);
+		}
+		for (int key : keys) {
+			if (key != 0) {
+				consumer.accept(key);
+			}
+		}
+	}
+
+	@Nonnull
+	public int[] toArray() {
+		int[] result = new int[size()];
+		int pos = 0;
+		if (hasZero) {
+			result[pos++] = 0;
+		}
+		for (int key : keys) {
+			if (key != 0) {
+				result[pos++] = key;
+			}
+		}
+		return result;
+	}
+
+	private int indexOf(int value) {
+		int index = Primitives.mix(value) & mask;
+		while (true) {
+			int current = keys[index];
+			if (current == value) {
+				return index;
+			} else if (current == 0) {
+				return -index - 1;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	private void rehash(int capacity) {
+		if (capacity <= 0 || capacity > Primitives.MAX_CAPACITY) {
+			throw new IllegalStateException("capacity exceeded: " + capacity);
+		}
+
+		int[] oldKeys = keys;
+		allocate(capacity);
+		for (int key : oldKeys) {
+			if (key != 0) {
+				keys[-indexOf(key) - 1] = key;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		mask = capacity - 1;
+		threshold = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+	}
+}
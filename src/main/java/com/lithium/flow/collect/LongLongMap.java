@@ -0,0 +1,260 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Open-addressing map of primitive long keys to long values. Uses linear probing with backward-shift deletion, so there
+ * are no tombstones or per-entry objects; each slot takes 16 bytes and the table is kept at most three quarters full.
+ *
+ * @author Matt Ayres
+ */
+public class LongLongMap {
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private final long missing;
+	private long[] keys;
+	private long[] values;
+	private int mask;
+	private int threshold;
+	private int size;
+	private boolean hasZero;
+	private long zeroValue;
+
+	public LongLongMap() {
+		this(16);
+	}
+
+	public LongLongMap(int expectedSize) {
+		this(expectedSize, 0);
+	}
+
+	/**
+	 * @param missing value returned by {@link #get} and friends for keys not in the map
+	 */
+	public LongLongMap(int expectedSize, long missing) {
+		checkArgument(expectedSize >= 0, "expectedSize must not be negative: %s", expectedSize);
+		this.missing = missing;
+		allocate(Primitives.tableSize(expectedSize, LOAD_FACTOR));
+	}
+
+	public int size() {
+		return size + (hasZero ? 1 : 0);
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean containsKey(long key) {
+		return key == 0 ? hasZero : indexOf(key) >= 0;
+	}
+
+	public long get(long key) {
+		return getOrDefault(key, missing);
+	}
+
+	public long getOrDefault(long key, long defaultValue) {
+		if (key == 0) {
+			return hasZero ? zeroValue : defaultValue;
+		}
+		int index = indexOf(key);
+		return index >= 0 ? values[index] : defaultValue;
+	}
+
+	/**
+	 * @return the previous value, or the missing value if there was none
+	 */
+	public long put(long key, long value) {
+		if (key == 0) {
+			long previous = hasZero ? zeroValue : missing;
+			hasZero = true;
+			zeroValue = value;
+			return previous;
+		}
+
+		int index = indexOf(key);
+		if (index >= 0) {
+			long previous = values[index];
+			values[index] = value;
+			return previous;
+		}
+
+		insert(-index - 1, key, value);
+		return missing;
+	}
+
+	/**
+	 * Adds to the value for a key, starting from zero if absent.
+	 *
+	 * @return the new value
+	 */
+	public long addTo(long key, long delta) {
+		if (key == 0) {
+			zeroValue = hasZero ? zeroValue + delta : delta;
+			hasZero = true;
+			return zeroValue;
+		}
+
+		int index = indexOf(key);
+		if (index >= 0) {
+			return values[index] += delta;
+		}
+
+		insert(-index - 1, key, delta);
+		return delta;
+	}
+
+	/**
+	 * @return the removed value, or the missing value if there was none
+	 */
+	public long remove(long key) {
+		if (key == 0) {
+			long previous = hasZero ? zeroValue : missing;
+			hasZero = false;
+			zeroValue = 0;
+			return previous;
+		}
+
+		int index = indexOf(key);
+		if (index < 0) {
+			return missing;
+		}
+
+		long previous = values[index];
+		shiftRemove(index);
+		return previous;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, (long) 0);
+		Arrays.fill(values, (long) 0);
+		size = 0;
+		hasZero = false;
+		zeroValue = 0;
+	}
+
+	public void forEach(@Nonnull EntryConsumer consumer) {
+		checkNotNull(consumer);
+		if (hasZero) {
+			consumer.accept((long) 0, zeroValue);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				consumer.accept(keys[i], values[i]);
+			}
+		}
+	}
+
+	@Nonnull
+	public long[] keys() {
+		long[] result = new long[size()];
+		int pos = 0;
+		if (hasZero) {
+			result[pos++] = 0;
+		}
+		for (long key : keys) {
+			if (key != 0) {
+				result[pos++] = key;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return index of the key, or -(slot + 1) of the empty slot where it would be inserted
+	 */
+	private int indexOf(long key) {
+		int index = Primitives.mix(key) & mask;
+		while (true) {
+			long current = keys[index];
+			if (current == key) {
+				return index;
+			} else if (current == 0) {
+				return -index - 1;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	private void insert(int index, long key, long value) {
+		keys[index] = key;
+		values[index] = value;
+		if (++size >= threshold) {
+			rehash(keys.length * 2);
+		}
+	}
+
+	private void shiftRemove(int index) {
+		int next = index;
+		while (true) {
+			next = (next + 1) & mask;
+			long key = keys[next];
+			if (key == 0) {
+				break;
+			}
+
+			int home = Primitives.mix(key) & mask;
+			if (next > index ? home <= index || home > next : home <= index && home > next) {
+				keys[index] = key;
+				values[index] = values[next];
+				index = next;
+			}
+		}
+
+		keys[index] = 0;
+		values[index] = 0;
+		size--;
+	}
+
+	private void rehash(int capacity) {
+		if (capacity <= 0 || capacity > Primitives.MAX_CAPACITY) {
+			throw new IllegalStateException("capacity exceeded: " + capacity);
+		}
+
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(capacity);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if (key != 0) {
+				int index = -indexOf(key) - 1;
+				keys[index] = key;
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+		threshold = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+	}
+
+	@FunctionalInterface
+	public interface EntryConsumer {
+		void accept(long key, long value);
+	}
+}
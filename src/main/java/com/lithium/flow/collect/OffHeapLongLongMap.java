@@ -0,0 +1,322 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lithium.flow.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * {@link LongLongMap} with its table outside the heap, either in a direct buffer or in a memory-mapped file that keeps
+ * the map between runs. Direct maps grow as needed, while mapped maps have a fixed capacity chosen when the file is
+ * created. A single buffer limits the table to {@value #MAX_CAPACITY} slots.
+ *
+ * @author Matt Ayres
+ */
+public class OffHeapLongLongMap implements Closeable {
+	public static final int MAX_CAPACITY = 1 << 26;
+
+	private static final long MAGIC = 0x4c4c4d4150763031L;
+	private static final int HEADER = 8;
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private final long missing;
+	private final FileChannel channel;
+	private ByteBuffer bytes;
+	private LongBuffer table;
+	private int mask;
+	private int threshold;
+	private int size;
+	private boolean hasZero;
+	private long zeroValue;
+
+	private OffHeapLongLongMap(@Nullable FileChannel channel, long missing) {
+		this.channel = channel;
+		this.missing = missing;
+	}
+
+	@Nonnull
+	public static OffHeapLongLongMap direct(int expectedSize) {
+		return direct(expectedSize, 0);
+	}
+
+	@Nonnull
+	public static OffHeapLongLongMap direct(int expectedSize, long missing) {
+		OffHeapLongLongMap map = new OffHeapLongLongMap(null, missing);
+		map.allocate(capacityFor(expectedSize));
+		return map;
+	}
+
+	/**
+	 * Opens the map stored in the file, or creates it with room for {@code expectedSize} entries if the file is empty.
+	 */
+	@Nonnull
+	public static OffHeapLongLongMap mapped(@Nonnull File file, int expectedSize, long missing) throws IOException {
+		checkNotNull(file);
+
+		FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+		OffHeapLongLongMap map = new OffHeapLongLongMap(channel, missing);
+		try {
+			if (channel.size() == 0) {
+				map.allocate(capacityFor(expectedSize));
+				map.flush();
+			} else {
+				map.open();
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		return map;
+	}
+
+	public int size() {
+		return size + (hasZero ? 1 : 0);
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean containsKey(long key) {
+		return key == 0 ? hasZero : indexOf(key) >= 0;
+	}
+
+	public long get(long key) {
+		return getOrDefault(key, missing);
+	}
+
+	public long getOrDefault(long key, long defaultValue) {
+		if (key == 0) {
+			return hasZero ? zeroValue : defaultValue;
+		}
+		int index = indexOf(key);
+		return index >= 0 ? value(index) : defaultValue;
+	}
+
+	/**
+	 * @return the previous value, or the missing value if there was none
+	 */
+	public long put(long key, long value) {
+		if (key == 0) {
+			long previous = hasZero ? zeroValue : missing;
+			hasZero = true;
+			zeroValue = value;
+			return previous;
+		}
+
+		int index = indexOf(key);
+		if (index >= 0) {
+			long previous = value(index);
+			table.put(slot(index) + 1, value);
+			return previous;
+		}
+
+		// grow before inserting, so that a full mapped map fails without having written the entry
+		if (size + 1 >= threshold) {
+			rehash();
+			index = indexOf(key);
+		}
+
+		index = -index - 1;
+		table.put(slot(index), key);
+		table.put(slot(index) + 1, value);
+		size++;
+		return missing;
+	}
+
+	/**
+	 * @return the removed value, or the missing value if there was none
+	 */
+	public long remove(long key) {
+		if (key == 0) {
+			long previous = hasZero ? zeroValue : missing;
+			hasZero = false;
+			zeroValue = 0;
+			return previous;
+		}
+
+		int index = indexOf(key);
+		if (index < 0) {
+			return missing;
+		}
+
+		long previous = value(index);
+		int next = index;
+		while (true) {
+			next = (next + 1) & mask;
+			long nextKey = key(next);
+			if (nextKey == 0) {
+				break;
+			}
+
+			int home = Primitives.mix(nextKey) & mask;
+			if (next > index ? home <= index || home > next : home <= index && home > next) {
+				table.put(slot(index), nextKey);
+				table.put(slot(index) + 1, value(next));
+				index = next;
+			}
+		}
+
+		table.put(slot(index), 0);
+		table.put(slot(index) + 1, 0);
+		size--;
+		return previous;
+	}
+
+	public void forEach(@Nonnull LongLongMap.EntryConsumer consumer) {
+		checkNotNull(consumer);
+		if (hasZero) {
+			consumer.accept(0L, zeroValue);
+		}
+		for (int i = 0; i <= mask; i++) {
+			long key = key(i);
+			if (key != 0) {
+				consumer.accept(key, value(i));
+			}
+		}
+	}
+
+	/**
+	 * Writes the header and, for mapped maps, forces changes to the file.
+	 */
+	public void flush() {
+		table.put(0, MAGIC);
+		table.put(1, mask + 1);
+		table.put(2, size);
+		table.put(3, hasZero ? 1 : 0);
+		table.put(4, zeroValue);
+		if (bytes instanceof MappedByteBuffer) {
+			((MappedByteBuffer) bytes).force();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			flush();
+			channel.close();
+		}
+	}
+
+	private int indexOf(long key) {
+		int index = Primitives.mix(key) & mask;
+		while (true) {
+			long current = key(index);
+			if (current == key) {
+				return index;
+			} else if (current == 0) {
+				return -index - 1;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	private static int slot(int index) {
+		return HEADER + 2 * index;
+	}
+
+	private long key(int index) {
+		return table.get(slot(index));
+	}
+
+	private long value(int index) {
+		return table.get(slot(index) + 1);
+	}
+
+	private void rehash() {
+		if (channel != null) {
+			throw new IllegalStateException("mapped map is full: " + size);
+		}
+
+		int capacity = (mask + 1) * 2;
+		if (capacity > MAX_CAPACITY) {
+			throw new IllegalStateException("capacity exceeded: " + capacity);
+		}
+
+		LongBuffer oldTable = table;
+		int oldCapacity = mask + 1;
+		allocate(capacity);
+
+		for (int i = 0; i < oldCapacity; i++) {
+			long key = oldTable.get(slot(i));
+			if (key != 0) {
+				int index = -indexOf(key) - 1;
+				table.put(slot(index), key);
+				table.put(slot(index) + 1, oldTable.get(slot(i) + 1));
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		long length = (HEADER + 2L * capacity) * 8;
+		if (channel == null) {
+			bytes = ByteBuffer.allocateDirect((int) length);
+		} else {
+			bytes = map(length);
+		}
+
+		table = bytes.asLongBuffer();
+		mask = capacity - 1;
+		threshold = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+	}
+
+	private void open() throws IOException {
+		bytes = map(channel.size());
+		table = bytes.asLongBuffer();
+		if (table.get(0) != MAGIC) {
+			throw new IOException("not a mapped map file");
+		}
+
+		int capacity = (int) table.get(1);
+		if ((HEADER + 2L * capacity) * 8 != channel.size()) {
+			throw new IOException("truncated mapped map file");
+		}
+
+		mask = capacity - 1;
+		threshold = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+		size = (int) table.get(2);
+		hasZero = table.get(3) == 1;
+		zeroValue = table.get(4);
+	}
+
+	@Nonnull
+	private MappedByteBuffer map(long length) {
+		try {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+		} catch (IOException e) {
+			throw new IllegalStateException("failed to map table", e);
+		}
+	}
+
+	private static int capacityFor(int expectedSize) {
+		checkArgument(expectedSize >= 0, "expectedSize must not be negative: %s", expectedSize);
+		int capacity = Primitives.tableSize(expectedSize, LOAD_FACTOR);
+		checkArgument(capacity <= MAX_CAPACITY, "expectedSize too large: %s", expectedSize);
+		return capacity;
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lithium.flow.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Hashing and sizing shared by the open-addressing collections.
+ *
+ * @author Matt Ayres
+ */
+class Primitives {
+	static final int MAX_CAPACITY = 1 << 30;
+
+	static int tableSize(int expectedSize, float loadFactor) {
+		long size = (long) Math.ceil(expectedSize / loadFactor) + 1;
+		checkArgument(size <= MAX_CAPACITY, "expectedSize too large: %s", expectedSize);
+		return Math.max(2, Integer.highestOneBit((int) size - 1) << 1);
+	}
+
+	static int mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	static int mix(int key) {
+		int hash = key * 0x9e3779b9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -18,19 +18,25 @@ package com.lithium.flow.compress;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.util.concurrent.CompletableFuture.runAsync;
 import static java.util.stream.Collectors.toList;
 
+import com.lithium.flow.util.Daemons;
 import com.lithium.flow.util.Logs;
 
+import java.io.File;
 import java.io.FilterInputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -38,9 +44,16 @@ import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
 
 /**
+ * Coder that pipes streams through external processes. The process on the other side is fed by a pump thread from
+ * the shared {@link Daemons} pool, and closing the stream waits for both the process and the pump, so that failures
+ * of either are thrown. When no pump thread is free, the input is spooled to a temp file that the process reads, or
+ * the process writes to a temp file that is copied to the output on close.
+ *
  * @author Matt Ayres
  */
 public class ProcessCoder implements Coder {
+	private static final int BUFFER_SIZE = 65536;
+
 	private final String extension;
 	private final List<String> inCommands;
 	private final List<String> outCommands;
@@ -55,22 +68,30 @@ public class ProcessCoder implements Coder {
 	@Override
 	@Nonnull
 	public InputStream wrapIn(@Nonnull InputStream in) throws IOException {
-		AtomicReference<IOException> exception = new AtomicReference<>();
-
-		Process process = new ProcessBuilder(inCommands).start();
-		runAsync(() -> {
-			try (OutputStream out = process.getOutputStream()) {
-				IOUtils.copy(in, out);
+		ProcessBuilder builder = new ProcessBuilder(inCommands);
+		CompletableFuture<Process> started = new CompletableFuture<>();
+		Future<?> pump = pump(started, process -> in, Process::getOutputStream);
+
+		File spool = null;
+		if (pump == null) {
+			spool = createSpool();
+			try (InputStream closeIn = in) {
+				Files.copy(closeIn, spool.toPath(), StandardCopyOption.REPLACE_EXISTING);
 			} catch (IOException e) {
-				exception.set(e);
+				Files.deleteIfExists(spool.toPath());
+				throw e;
 			}
-		});
+			builder.redirectInput(spool);
+		}
+
+		Process process = start(builder, started, spool);
+		File inSpool = spool;
 
 		return new FilterInputStream(process.getInputStream()) {
 			@Override
 			public void close() throws IOException {
 				super.close();
-				ProcessCoder.this.close(process, null, exception.get());
+				ProcessCoder.this.close(process, pump, inSpool, null);
 			}
 		};
 	}
@@ -78,48 +99,88 @@ public class ProcessCoder implements Coder {
 	@Override
 	@Nonnull
 	public OutputStream wrapOut(@Nonnull OutputStream out, int option) throws IOException {
-		CountDownLatch latch = new CountDownLatch(1);
-		AtomicReference<IOException> exception = new AtomicReference<>();
-
 		List<String> optionCommands = outCommands.stream()
 				.map(c -> c.replace("{option}", String.valueOf(option)))
 				.collect(toList());
 
-		Process process = new ProcessBuilder(optionCommands).start();
-		runAsync(() -> {
-			try {
-				try (InputStream in = process.getInputStream()) {
-					IOUtils.copy(in, out);
-					out.close();
-				}
-			} catch (IOException e) {
-				exception.set(e);
-			}
-			latch.countDown();
-		});
+		ProcessBuilder builder = new ProcessBuilder(optionCommands);
+		CompletableFuture<Process> started = new CompletableFuture<>();
+		Future<?> pump = pump(started, Process::getInputStream, process -> out);
+
+		File spool = null;
+		if (pump == null) {
+			spool = createSpool();
+			builder.redirectOutput(spool);
+		}
+
+		Process process = start(builder, started, spool);
+		// the spool is copied to the output on close, which the filter's own out field would shadow
+		OutputStream spoolOut = spool != null ? out : null;
+		File outSpool = spool;
 
 		return new FilterOutputStream(process.getOutputStream()) {
 			@Override
 			public void write(@Nonnull byte[] b, int off, int len) throws IOException {
-				out.write(b, off, len);
+				process.getOutputStream().write(b, off, len);
 			}
 
 			@Override
 			public void close() throws IOException {
 				super.close();
-				ProcessCoder.this.close(process, latch, exception.get());
+				ProcessCoder.this.close(process, pump, outSpool, spoolOut);
 			}
 		};
 	}
 
-	private void close(@Nonnull Process process, @Nullable CountDownLatch latch, @Nullable IOException exception)
-			throws IOException {
+	/**
+	 * @return the pump, which starts copying once the process has started, or null if no pump thread is free
+	 */
+	@Nullable
+	private static Future<?> pump(@Nonnull CompletableFuture<Process> started,
+			@Nonnull Function<Process, InputStream> in, @Nonnull Function<Process, OutputStream> out) {
 		try {
-			process.waitFor();
+			return Daemons.submit(() -> {
+				Process process = started.get();
+				try (OutputStream closeOut = out.apply(process)) {
+					IOUtils.copy(in.apply(process), closeOut, BUFFER_SIZE);
+				}
+				return null;
+			});
+		} catch (RejectedExecutionException e) {
+			return null;
+		}
+	}
 
-			if (latch != null) {
-				latch.await();
+	@Nonnull
+	private Process start(@Nonnull ProcessBuilder builder, @Nonnull CompletableFuture<Process> started,
+			@Nullable File spool) throws IOException {
+		try {
+			Process process = builder.start();
+			started.complete(process);
+			return process;
+		} catch (IOException | RuntimeException e) {
+			started.completeExceptionally(e);
+			if (spool != null) {
+				Files.deleteIfExists(spool.toPath());
 			}
+			throw e;
+		}
+	}
+
+	@Nonnull
+	private File createSpool() throws IOException {
+		return File.createTempFile("process-coder-", extension);
+	}
+
+	/**
+	 * @param out the output to copy the spool to once the process is done, or null if the spool was the input
+	 */
+	private void close(@Nonnull Process process, @Nullable Future<?> pump, @Nullable File spool,
+			@Nullable OutputStream out) throws IOException {
+		try (OutputStream closeOut = out) {
+			process.waitFor();
+
+			IOException exception = pump != null ? getException(pump) : null;
 
 			int exitValue = process.exitValue();
 			if (exitValue != 0) {
@@ -130,8 +191,27 @@ public class ProcessCoder implements Coder {
 			if (exception != null) {
 				throw exception;
 			}
+
+			if (closeOut != null) {
+				Files.copy(spool.toPath(), closeOut);
+			}
 		} catch (InterruptedException e) {
 			throw new IOException(e);
+		} finally {
+			if (spool != null) {
+				Files.deleteIfExists(spool.toPath());
+			}
+		}
+	}
+
+	@Nullable
+	private static IOException getException(@Nonnull Future<?> pump) throws InterruptedException {
+		try {
+			pump.get();
+			return null;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			return cause instanceof IOException ? (IOException) cause : new IOException(cause);
 		}
 	}
 
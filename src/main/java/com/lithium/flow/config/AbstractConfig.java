@@ -36,11 +36,23 @@ import com.google.common.collect.Lists;
  * @author Matt Ayres
  */
 public abstract class AbstractConfig implements Config {
-	private static final Splitter DEFAULT_SPLITTER = Splitter.on(Pattern.compile(" *([ ,]) *"));
+	static final Splitter DEFAULT_SPLITTER = Splitter.on(Pattern.compile(" *([ ,]) *"));
 
 	protected AbstractConfig() {
 	}
 
+	/**
+	 * @return true if the keys and values of this config can never change, so that they may be cached
+	 */
+	boolean isImmutable() {
+		return false;
+	}
+
+	static boolean isImmutable(@Nullable Config config) {
+		return config == null || config instanceof CompiledConfig
+				|| config instanceof AbstractConfig && ((AbstractConfig) config).isImmutable();
+	}
+
 	@Override
 	@Nullable
 	public abstract String getValue(@Nonnull String key, @Nullable String defVal, boolean defaultSpecified,
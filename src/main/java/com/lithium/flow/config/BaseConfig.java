@@ -19,18 +19,27 @@ package com.lithium.flow.config;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.lithium.flow.config.exception.IllegalConfigException;
+import com.lithium.flow.store.MemoryStore;
 import com.lithium.flow.store.Store;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
 /**
  * Base immutable implementation of {@link Config}.
+ * <p>
+ * A config over a store that may still change reads keys from the store on every call. One made with
+ * {@link #snapshot} owns a copy that nothing else can change, so it indexes its keys once, as long as its defaults
+ * cannot change either.
  *
  * @author Matt Ayres
  */
@@ -39,16 +48,35 @@ public final class BaseConfig extends AbstractConfig {
 	private final Store store;
 	private final Config defaults;
 	private final boolean allowUndefined;
+	private final boolean immutable;
+	private volatile KeyIndex index;
+	private volatile Map<String, String> rawMap;
 
 	public BaseConfig(@Nonnull String name, @Nonnull Store store) {
 		this(name, store, Configs.empty(), false);
 	}
 
 	public BaseConfig(@Nonnull String name, @Nonnull Store store, @Nullable Config defaults, boolean allowUndefined) {
+		this(name, store, defaults, allowUndefined, false);
+	}
+
+	private BaseConfig(@Nonnull String name, @Nonnull Store store, @Nullable Config defaults, boolean allowUndefined,
+			boolean immutable) {
 		this.name = checkNotNull(name);
 		this.store = checkNotNull(store);
 		this.defaults = defaults;
 		this.allowUndefined = allowUndefined;
+		this.immutable = immutable && isImmutable(defaults);
+	}
+
+	/**
+	 * @return a config over a copy of the map, which caches its keys unless the defaults can change
+	 */
+	@Nonnull
+	static BaseConfig snapshot(@Nonnull String name, @Nonnull Map<String, String> map, @Nullable Config defaults,
+			boolean allowUndefined) {
+		Store store = new MemoryStore(Collections.unmodifiableMap(new LinkedHashMap<>(map)));
+		return new BaseConfig(name, store, defaults, allowUndefined, true);
 	}
 
 	@Override
@@ -83,6 +111,52 @@ public final class BaseConfig extends AbstractConfig {
 	@Override
 	@Nonnull
 	public Set<String> keySet() {
+		return immutable ? index().keySet() : buildKeySet();
+	}
+
+	@Override
+	@Nonnull
+	public Set<String> getPrefixKeys(@Nonnull String prefix) {
+		// sorting the keys of a store that may change only pays off when the index is kept
+		return immutable ? index().getPrefixKeys(prefix) : super.getPrefixKeys(prefix);
+	}
+
+	@Override
+	@Nonnull
+	public Map<String, String> asRawMap() {
+		Map<String, String> rawMap = this.rawMap;
+		if (rawMap == null) {
+			ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+			for (String key : keySet()) {
+				String value = getRaw(key);
+				if (value != null) {
+					builder.put(key, value);
+				}
+			}
+			rawMap = builder.build();
+			if (immutable) {
+				this.rawMap = rawMap;
+			}
+		}
+		return rawMap;
+	}
+
+	@Override
+	boolean isImmutable() {
+		return immutable;
+	}
+
+	@Nonnull
+	private KeyIndex index() {
+		KeyIndex index = this.index;
+		if (index == null) {
+			this.index = index = new KeyIndex(buildKeySet());
+		}
+		return index;
+	}
+
+	@Nonnull
+	private Set<String> buildKeySet() {
 		ImmutableSet.Builder<String> builder = ImmutableSet.builder();
 		if (defaults != null) {
 			builder.addAll(defaults.keySet());
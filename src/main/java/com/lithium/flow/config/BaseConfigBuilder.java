@@ -29,7 +29,6 @@ import com.lithium.flow.config.parsers.LoaderConfigParser;
 import com.lithium.flow.config.parsers.RequiredConfigParser;
 import com.lithium.flow.config.parsers.SetNullConfigParser;
 import com.lithium.flow.config.parsers.SubtractConfigParser;
-import com.lithium.flow.store.MemoryStore;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
@@ -176,7 +175,7 @@ public class BaseConfigBuilder implements ConfigBuilder {
 	@Override
 	@Nonnull
 	public final Config build() {
-		Config config = new BaseConfig(name, new MemoryStore(rawMap), defaults, allowUndefined);
+		Config config = BaseConfig.snapshot(name, rawMap, defaults, allowUndefined);
 		if (allowRequiredKeys) {
 			for (String key : requiredKeys) {
 				if (config.getString(key, "").isEmpty()) {
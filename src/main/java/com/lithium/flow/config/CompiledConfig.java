@@ -0,0 +1,389 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.config;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.lithium.flow.config.exception.IllegalConfigException;
+import com.lithium.flow.util.TimeUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Immutable snapshot of a {@link Config} with every value resolved up front, for lookups on hot paths.
+ * <p>
+ * Prefixes and defaults of the source config are flattened into a single map, and numeric, time and list values
+ * are parsed on first use and then reused. Lists returned for defined keys are immutable. Lookups made with an outer
+ * config, such as through a {@link PrefixConfig} wrapped around this one, go to the source config so that variables
+ * still resolve against the outer config.
+ *
+ * @author Matt Ayres
+ */
+public final class CompiledConfig implements Config {
+	private final Config source;
+	private final String name;
+	private final boolean allowUndefined;
+	private final ImmutableMap<String, Entry> entries;
+	private final KeyIndex index;
+	private final ImmutableMap<String, String> rawMap;
+
+	public CompiledConfig(@Nonnull Config source) {
+		this.source = checkNotNull(source);
+		name = source.getName();
+		allowUndefined = source.isAllowUndefined();
+
+		ImmutableMap.Builder<String, Entry> entries = ImmutableMap.builder();
+		ImmutableMap.Builder<String, String> rawMap = ImmutableMap.builder();
+		index = new KeyIndex(source.keySet());
+		for (String key : index.keySet()) {
+			String raw = source.getRaw(key);
+			if (raw != null) {
+				rawMap.put(key, raw);
+			}
+
+			try {
+				String value = source.getValue(key, null, true, null, null);
+				if (value != null) {
+					entries.put(key, new Entry(value, null));
+				}
+			} catch (IllegalConfigException e) {
+				entries.put(key, new Entry(null, e));
+			}
+		}
+		this.entries = entries.build();
+		this.rawMap = rawMap.build();
+	}
+
+	@Override
+	@Nonnull
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public boolean isAllowUndefined() {
+		return allowUndefined;
+	}
+
+	@Override
+	public boolean containsKey(@Nonnull String key) {
+		checkNotNull(key);
+		Entry entry = entries.get(key);
+		return entry != null && entry.error == null;
+	}
+
+	@Override
+	@Nullable
+	public String getRaw(@Nonnull String key) {
+		checkNotNull(key);
+		return rawMap.get(key);
+	}
+
+	@Override
+	public String getString(@Nonnull String key) {
+		Entry entry = entry(key);
+		return entry != null ? entry.value : undefined(key, null);
+	}
+
+	@Override
+	public String getString(@Nonnull String key, @Nullable String def) {
+		Entry entry = entry(key);
+		return entry != null ? entry.value : def;
+	}
+
+	@Override
+	public int getInt(@Nonnull String key) {
+		Entry entry = entry(key);
+		return entry != null ? entry.getInt(key) : parseInt(key, undefined(key, "0"));
+	}
+
+	@Override
+	public int getInt(@Nonnull String key, int def) {
+		Entry entry = entry(key);
+		return entry != null ? entry.getInt(key) : def;
+	}
+
+	@Override
+	public long getLong(@Nonnull String key) {
+		Entry entry = entry(key);
+		return entry != null ? entry.getLong(key) : parseLong(key, undefined(key, "0"));
+	}
+
+	@Override
+	public long getLong(@Nonnull String key, long def) {
+		Entry entry = entry(key);
+		return entry != null ? entry.getLong(key) : def;
+	}
+
+	@Override
+	public long getTime(@Nonnull String key) {
+		Entry entry = entry(key);
+		return entry != null ? entry.getTime(key) : parseTime(key, undefined(key, "0"));
+	}
+
+	@Override
+	public long getTime(@Nonnull String key, @Nullable String def) {
+		Entry entry = entry(key);
+		return entry != null ? entry.getTime(key) : TimeUtils.getMillisValue(def);
+	}
+
+	@Override
+	public double getDouble(@Nonnull String key) {
+		Entry entry = entry(key);
+		return entry != null ? entry.getDouble(key) : parseDouble(key, undefined(key, "0"));
+	}
+
+	@Override
+	public double getDouble(@Nonnull String key, double def) {
+		Entry entry = entry(key);
+		return entry != null ? entry.getDouble(key) : def;
+	}
+
+	@Override
+	public boolean getBoolean(@Nonnull String key) {
+		Entry entry = entry(key);
+		return entry != null ? parseBoolean(key, entry.value) : parseBoolean(key, undefined(key, null));
+	}
+
+	@Override
+	public boolean getBoolean(@Nonnull String key, boolean def) {
+		Entry entry = entry(key);
+		return entry != null ? parseBoolean(key, entry.value) : def;
+	}
+
+	@Override
+	@Nonnull
+	public List<String> getList(@Nonnull String key) {
+		List<String> list = getList(key, Configs.emptyList());
+		if (list.isEmpty()) {
+			throw new IllegalConfigException(key);
+		}
+		return list;
+	}
+
+	@Override
+	@Nonnull
+	public List<String> getList(@Nonnull String key, @Nonnull List<String> def) {
+		checkNotNull(def);
+		Entry entry = entry(key);
+		return entry != null ? entry.getList() : Lists.newArrayList(def);
+	}
+
+	@Override
+	@Nonnull
+	public List<String> getList(@Nonnull String key, @Nonnull Splitter splitter) {
+		return getList(key, Configs.emptyList(), splitter);
+	}
+
+	@Override
+	@Nonnull
+	public List<String> getList(@Nonnull String key, @Nonnull List<String> def, @Nonnull Splitter splitter) {
+		checkNotNull(def);
+		checkNotNull(splitter);
+		Entry entry = entry(key);
+		return entry != null ? split(entry.value, splitter) : Lists.newArrayList(def);
+	}
+
+	@Override
+	@Nullable
+	public String getValue(@Nonnull String key, @Nullable String defVal, boolean defaultSpecified,
+			@Nullable Config outerConfig, @Nullable Set<String> usedKeys) {
+		if (outerConfig != null) {
+			return source.getValue(key, defVal, defaultSpecified, outerConfig, usedKeys);
+		}
+
+		Entry entry = entry(key);
+		if (entry != null) {
+			return entry.value;
+		} else if (defaultSpecified) {
+			return defVal;
+		} else {
+			return undefined(key, defVal);
+		}
+	}
+
+	@Override
+	@Nonnull
+	public ConfigBuilder toBuilder() {
+		return Configs.newBuilder(this).allowUndefined(allowUndefined).setName(name);
+	}
+
+	@Override
+	@Nonnull
+	public Set<String> keySet() {
+		return index.keySet();
+	}
+
+	@Override
+	@Nonnull
+	public Set<String> getPrefixKeys(@Nonnull String prefix) {
+		return index.getPrefixKeys(prefix);
+	}
+
+	@Override
+	@Nonnull
+	public Map<String, String> asRawMap() {
+		return rawMap;
+	}
+
+	@Override
+	@Nonnull
+	public Config compile() {
+		return this;
+	}
+
+	@Nullable
+	private Entry entry(@Nonnull String key) {
+		checkNotNull(key);
+		Entry entry = entries.get(key);
+		if (entry != null && entry.error != null) {
+			IllegalConfigException e = entry.error;
+			throw new IllegalConfigException(e.getKey(), e.getValue(), e.getType(), e.getCause());
+		}
+		return entry;
+	}
+
+	@Nullable
+	private String undefined(@Nonnull String key, @Nullable String defVal) {
+		if (allowUndefined) {
+			return defVal;
+		}
+		throw new IllegalConfigException(key);
+	}
+
+	private static int parseInt(@Nonnull String key, @Nullable String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalConfigException(key, value, "int", e);
+		}
+	}
+
+	private static long parseLong(@Nonnull String key, @Nullable String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalConfigException(key, value, "long", e);
+		}
+	}
+
+	private static long parseTime(@Nonnull String key, @Nullable String value) {
+		try {
+			return TimeUtils.getMillisValue(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalConfigException(key, value, "time", e);
+		}
+	}
+
+	private static double parseDouble(@Nonnull String key, @Nullable String value) {
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalConfigException(key, value, "double", e);
+		}
+	}
+
+	private static boolean parseBoolean(@Nonnull String key, @Nullable String value) {
+		if (value == null || value.equalsIgnoreCase("false")) {
+			return false;
+		} else if (value.equalsIgnoreCase("true")) {
+			return true;
+		} else {
+			throw new IllegalConfigException(key, value, "boolean", null);
+		}
+	}
+
+	@Nonnull
+	private static ImmutableList<String> split(@Nonnull String value, @Nonnull Splitter splitter) {
+		ImmutableList.Builder<String> builder = ImmutableList.builder();
+		for (String item : splitter.split(value)) {
+			if (item.length() > 0) {
+				builder.add(item);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * A resolved value and its parsed forms, filled in on first use. Races only repeat the parsing.
+	 */
+	private static class Entry {
+		private final String value;
+		private final IllegalConfigException error;
+		private Integer intValue;
+		private Long longValue;
+		private Long timeValue;
+		private Double doubleValue;
+		private List<String> list;
+
+		private Entry(@Nullable String value, @Nullable IllegalConfigException error) {
+			this.value = value;
+			this.error = error;
+		}
+
+		private int getInt(@Nonnull String key) {
+			Integer parsed = intValue;
+			if (parsed == null) {
+				intValue = parsed = parseInt(key, value);
+			}
+			return parsed;
+		}
+
+		private long getLong(@Nonnull String key) {
+			Long parsed = longValue;
+			if (parsed == null) {
+				longValue = parsed = parseLong(key, value);
+			}
+			return parsed;
+		}
+
+		private long getTime(@Nonnull String key) {
+			Long parsed = timeValue;
+			if (parsed == null) {
+				timeValue = parsed = parseTime(key, value);
+			}
+			return parsed;
+		}
+
+		private double getDouble(@Nonnull String key) {
+			Double parsed = doubleValue;
+			if (parsed == null) {
+				doubleValue = parsed = parseDouble(key, value);
+			}
+			return parsed;
+		}
+
+		@Nonnull
+		private List<String> getList() {
+			List<String> parsed = list;
+			if (parsed == null) {
+				list = parsed = split(value, AbstractConfig.DEFAULT_SPLITTER);
+			}
+			return parsed;
+		}
+	}
+}
@@ -95,6 +95,14 @@ public interface Config {
 	@Nonnull
 	Set<String> keySet();
 
+	/**
+	 * @return an immutable snapshot of this config with all values resolved, see {@link CompiledConfig}.
+	 */
+	@Nonnull
+	default Config compile() {
+		return new CompiledConfig(this);
+	}
+
 	@Nonnull
 	default Config prefix(@Nonnull String prefix) {
 		checkNotNull(prefix);
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.config;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.lithium.flow.config.loaders.ClasspathConfigLoader;
+import com.lithium.flow.util.Logs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Binary snapshot of a config built from local files, so that short-lived processes can skip parsing and
+ * include resolution on startup.
+ * <p>
+ * A snapshot records the modification time and size of every file checked while building the config, including
+ * files that were looked up but did not exist. It is only used when all of those still match, otherwise the config
+ * is built normally and the snapshot is rewritten. Configs that include anything not read from a local file (such
+ * as classpath resources or custom loaders) are never snapshotted.
+ *
+ * @author Matt Ayres
+ */
+public class ConfigSnapshot {
+	private static final Logger log = Logs.getLogger();
+
+	private static final int MAGIC = 0x666c6f77;
+	private static final int VERSION = 1;
+
+	/**
+	 * Load a config from a snapshot in the specified directory, or build and snapshot it if the snapshot is missing
+	 * or stale. Includes are resolved the same way as {@link Configs#newBuilder()} with an extra file loader for
+	 * the specified root.
+	 *
+	 * @param dir the directory to keep snapshots in, created if needed.
+	 * @param path the path of the config file to include.
+	 * @param root the root for includes relative to the config file, or {@code null} for none.
+	 * @return the config, never {@code null}.
+	 * @throws IOException if the config could not be built.
+	 */
+	@Nonnull
+	public static Config load(@Nonnull File dir, @Nonnull String path, @Nullable String root) throws IOException {
+		checkNotNull(dir);
+		checkNotNull(path);
+
+		// relative includes resolve against the working dir, so it's part of the key too
+		String key = new File("").getAbsolutePath() + "\n" + new File(path).getAbsolutePath()
+				+ "\n" + (root == null ? "" : new File(root).getAbsolutePath());
+		File file = new File(dir, Hashing.murmur3_128().hashString(key, UTF_8) + ".snapshot");
+
+		Config config = read(file);
+		if (config != null) {
+			log.debug("using config snapshot: {}", file);
+			return config;
+		}
+
+		Recorder recorder = new Recorder();
+		config = Configs.newBuilder()
+				.resetLoaders()
+				.addLoader(recorder.loader(null))
+				.addLoader(new ClasspathConfigLoader())
+				.addLoader(recorder.loader(root))
+				.addWatcher(recorder)
+				.include(path)
+				.build();
+
+		if (recorder.cacheable) {
+			try {
+				write(file, recorder.files, config);
+			} catch (IOException e) {
+				log.warn("failed to write config snapshot: {}", file, e);
+			}
+		}
+
+		return config;
+	}
+
+	@Nullable
+	private static Config read(@Nonnull File file) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+
+			int files = in.readInt();
+			for (int i = 0; i < files; i++) {
+				File dependency = new File(readString(in));
+				if (in.readLong() != time(dependency) || in.readLong() != size(dependency)) {
+					return null;
+				}
+			}
+
+			String name = readString(in);
+			boolean allowUndefined = in.readBoolean();
+			int size = in.readInt();
+			Map<String, String> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+			for (int i = 0; i < size; i++) {
+				map.put(readString(in), readString(in));
+			}
+
+			return BaseConfig.snapshot(name, map, null, allowUndefined);
+		} catch (FileNotFoundException e) {
+			return null;
+		} catch (IOException | RuntimeException e) {
+			log.debug("failed to read config snapshot: {}", file, e);
+			return null;
+		}
+	}
+
+	private static void write(@Nonnull File file, @Nonnull Set<File> files, @Nonnull Config config)
+			throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("failed to create dir: " + dir);
+		}
+
+		File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+
+				out.writeInt(files.size());
+				for (File dependency : files) {
+					writeString(out, dependency.getPath());
+					out.writeLong(time(dependency));
+					out.writeLong(size(dependency));
+				}
+
+				writeString(out, config.getName());
+				out.writeBoolean(config.isAllowUndefined());
+				Map<String, String> map = config.asRawMap();
+				out.writeInt(map.size());
+				for (Map.Entry<String, String> entry : map.entrySet()) {
+					writeString(out, entry.getKey());
+					writeString(out, entry.getValue());
+				}
+			}
+
+			Files.move(tempFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private static long time(@Nonnull File file) {
+		return file.lastModified();
+	}
+
+	private static long size(@Nonnull File file) {
+		return file.exists() ? file.length() : -1;
+	}
+
+	@Nonnull
+	private static String readString(@Nonnull DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static void writeString(@Nonnull DataOutputStream out, @Nonnull String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static class Recorder implements ConfigWatcher {
+		private final Set<File> files = new LinkedHashSet<>();
+		private final Set<String> paths = new HashSet<>();
+		private boolean cacheable = true;
+
+		@Nonnull
+		private ConfigLoader loader(@Nullable String root) {
+			return path -> {
+				File file = new File(root == null ? path : root + "/" + path).getAbsoluteFile();
+				files.add(file);
+				if (!file.exists()) {
+					return null;
+				}
+				paths.add(path);
+				return new FileInputStream(file);
+			};
+		}
+
+		@Override
+		public void onStart(@Nonnull ConfigBuilder builder) {
+		}
+
+		@Override
+		public void onEnter(@Nonnull String path) {
+			// anything not read by our own file loaders can't be checked for changes
+			if (!paths.contains(path)) {
+				cacheable = false;
+			}
+		}
+
+		@Override
+		public void onExit(@Nonnull String path) {
+		}
+
+		@Override
+		public void onSet(@Nonnull String key, @Nonnull String value) {
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.config;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Sorted index of config keys, so that the keys under a prefix are found by binary search instead of a scan of every
+ * key. The keys found for each prefix are cached.
+ *
+ * @author Matt Ayres
+ */
+final class KeyIndex {
+	private final ImmutableSet<String> keySet;
+	private final String[] sortedKeys;
+	private final Map<String, Set<String>> prefixKeys = new ConcurrentHashMap<>();
+
+	KeyIndex(@Nonnull Collection<String> keys) {
+		keySet = ImmutableSet.copyOf(keys);
+		sortedKeys = keySet.toArray(new String[0]);
+		Arrays.sort(sortedKeys);
+	}
+
+	@Nonnull
+	public Set<String> keySet() {
+		return keySet;
+	}
+
+	/**
+	 * @return the keys that start with the prefix followed by a dot
+	 */
+	@Nonnull
+	public Set<String> getPrefixKeys(@Nonnull String prefix) {
+		checkNotNull(prefix);
+		return prefixKeys.computeIfAbsent(prefix, this::findPrefixKeys);
+	}
+
+	@Nonnull
+	private Set<String> findPrefixKeys(@Nonnull String prefix) {
+		String start = prefix + ".";
+		int index = Arrays.binarySearch(sortedKeys, start);
+		if (index < 0) {
+			index = -index - 1;
+		}
+
+		ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+		for (; index < sortedKeys.length && sortedKeys[index].startsWith(start); index++) {
+			builder.add(sortedKeys[index]);
+		}
+		return builder.build();
+	}
+}
@@ -18,21 +18,28 @@ package com.lithium.flow.config;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-import com.google.common.collect.Maps;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 /**
+ * Config view where each key is first looked up with the prefix and then without it. When the delegate cannot change,
+ * the key set, raw map and prefix keys are computed from it once and cached.
+ *
  * @author Matt Ayres
  */
 public class PrefixConfig extends AbstractConfig {
 	private final Config delegate;
 	private final String prefix;
+	private final Map<String, Set<String>> prefixKeys = new ConcurrentHashMap<>();
+	private volatile Map<String, String> rawMap;
 
 	public PrefixConfig(@Nonnull Config delegate, @Nonnull String prefix) {
 		this.delegate = checkNotNull(delegate);
@@ -93,19 +100,42 @@ public class PrefixConfig extends AbstractConfig {
 	@Override
 	@Nonnull
 	public Map<String, String> asRawMap() {
-		Map<String, String> rawMap = Maps.newLinkedHashMap();
-		Map<String, String> baseRawMap = delegate.asRawMap();
-		rawMap.putAll(baseRawMap);
-
-		for (Map.Entry<String, String> configEntries : baseRawMap.entrySet()) {
-			String key = configEntries.getKey();
-			String value = configEntries.getValue();
-
-			if (key.startsWith(prefix) && !key.equals(prefix)) {
-				rawMap.put(key.substring(prefix.length()), value);
+		Map<String, String> rawMap = this.rawMap;
+		if (rawMap == null) {
+			Map<String, String> map = new LinkedHashMap<>(delegate.asRawMap());
+			for (String key : delegate.getPrefixKeys(prefix.substring(0, prefix.length() - 1))) {
+				String value = delegate.getRaw(key);
+				if (key.length() > prefix.length() && value != null) {
+					map.put(key.substring(prefix.length()), value);
+				}
+			}
+			rawMap = ImmutableMap.copyOf(map);
+			if (isImmutable()) {
+				this.rawMap = rawMap;
 			}
 		}
+		return rawMap;
+	}
+
+	@Override
+	@Nonnull
+	public Set<String> getPrefixKeys(@Nonnull String prefix) {
+		checkNotNull(prefix);
+		return isImmutable() ? prefixKeys.computeIfAbsent(prefix, this::findPrefixKeys) : findPrefixKeys(prefix);
+	}
 
-		return Collections.unmodifiableMap(rawMap);
+	@Override
+	boolean isImmutable() {
+		return isImmutable(delegate);
+	}
+
+	@Nonnull
+	private Set<String> findPrefixKeys(@Nonnull String prefix) {
+		ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+		builder.addAll(delegate.getPrefixKeys(prefix));
+		for (String key : delegate.getPrefixKeys(prefixKey(prefix))) {
+			builder.add(key.substring(this.prefix.length()));
+		}
+		return builder.build();
 	}
 }
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * @author Matt Ayres
@@ -34,6 +35,14 @@ public interface Repo extends Closeable {
 	@Nonnull
 	Config getConfig(@Nonnull String name) throws IOException;
 
+	/**
+	 * @return a marker that changes whenever the named config may have changed, or null if the repo cannot tell
+	 */
+	@Nullable
+	default String getVersion(@Nonnull String name) throws IOException {
+		return null;
+	}
+
 	@Nonnull
 	default List<Config> getConfigs() throws IOException {
 		List<Config> configs = new ArrayList<>();
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.config;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Notified when a repo that refreshes its configs finds one added, changed or removed.
+ *
+ * @author Matt Ayres
+ */
+@FunctionalInterface
+public interface RepoListener {
+	/**
+	 * @param oldConfig the previous config, or null if the config was added
+	 * @param newConfig the new config, or null if the config was removed
+	 */
+	void onChange(@Nonnull String name, @Nullable Config oldConfig, @Nullable Config newConfig);
+}
@@ -20,33 +20,123 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.lithium.flow.config.Config;
 import com.lithium.flow.config.Repo;
+import com.lithium.flow.config.RepoListener;
 import com.lithium.flow.util.Caches;
+import com.lithium.flow.util.Daemons;
+import com.lithium.flow.util.Logs;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import org.slf4j.Logger;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
+ * Repo that caches the names and configs of its delegate.
+ * <p>
+ * Entries older than the cache duration are refreshed in the background on their next read, while readers keep
+ * getting the cached value. A refresh skips reloading a config whose {@link Repo#getVersion(String) version} has not
+ * changed, and {@link RepoListener}s are told of configs that changed. When the names are refreshed, listeners are
+ * also told of configs that were added, which are loaded to do so, and of cached configs that were removed. Entries
+ * that fail to refresh for several durations, or are not read for that long, expire and are loaded again on the next
+ * read. Refreshes run on the shared {@link Daemons} pool, or on the reading thread when it is busy.
+ * <p>
+ * A duration of 0 disables caching, and with a duration of 0 or one too long to multiply for the expiry, entries
+ * just expire after the duration without being refreshed or telling listeners.
+ *
  * @author Matt Ayres
  */
 public class CachedRepo implements Repo {
+	private static final Logger log = Logs.getLogger();
+	private static final int EXPIRE_FACTOR = 4;
+
+	private final Repo delegate;
+	private final List<RepoListener> listeners = new CopyOnWriteArrayList<>();
 	private final LoadingCache<String, List<String>> namesCache;
-	private final LoadingCache<String, Config> configCache;
+	private final LoadingCache<String, Entry> configCache;
 
 	public CachedRepo(@Nonnull Repo delegate, long duration) {
 		this(delegate, duration, TimeUnit.MILLISECONDS);
 	}
 
 	public CachedRepo(@Nonnull Repo delegate, long duration, @Nonnull TimeUnit unit) {
-		checkNotNull(delegate);
+		this.delegate = checkNotNull(delegate);
 		checkNotNull(unit);
 
-		namesCache = Caches.build(key -> delegate.getNames(), b -> b.expireAfterWrite(duration, unit));
-		configCache = Caches.build(delegate::getConfig, b -> b.expireAfterWrite(duration, unit));
+		namesCache = newBuilder(duration, unit)
+				.build(new CacheLoader<String, List<String>>() {
+					@Override
+					@Nonnull
+					public List<String> load(@Nonnull String key) throws IOException {
+						return delegate.getNames();
+					}
+
+					@Override
+					@Nonnull
+					public ListenableFuture<List<String>> reload(@Nonnull String key, @Nonnull List<String> oldNames)
+							throws Exception {
+						return submit(() -> refreshNames(oldNames));
+					}
+				});
+
+		configCache = newBuilder(duration, unit)
+				.build(new CacheLoader<String, Entry>() {
+					@Override
+					@Nonnull
+					public Entry load(@Nonnull String name) throws IOException {
+						return CachedRepo.this.load(name);
+					}
+
+					@Override
+					@Nonnull
+					public ListenableFuture<Entry> reload(@Nonnull String name, @Nonnull Entry oldEntry)
+							throws Exception {
+						return submit(() -> refresh(name, oldEntry));
+					}
+				});
+	}
+
+	@Nonnull
+	private static CacheBuilder<Object, Object> newBuilder(long duration, @Nonnull TimeUnit unit) {
+		if (duration > 0 && duration <= Long.MAX_VALUE / EXPIRE_FACTOR) {
+			return CacheBuilder.newBuilder()
+					.refreshAfterWrite(duration, unit)
+					.expireAfterWrite(duration * EXPIRE_FACTOR, unit);
+		}
+
+		// refreshing needs a positive duration that can be multiplied for the expiry, so just expire entries
+		return CacheBuilder.newBuilder().expireAfterWrite(duration, unit);
+	}
+
+	@Nonnull
+	private static <T> ListenableFuture<T> submit(@Nonnull Callable<T> callable) throws Exception {
+		try {
+			return Daemons.submit(callable);
+		} catch (RejectedExecutionException e) {
+			// no daemon thread is free, so refresh on the reading thread
+			return Futures.immediateFuture(callable.call());
+		}
+	}
+
+	@Nonnull
+	public CachedRepo addListener(@Nonnull RepoListener listener) {
+		listeners.add(checkNotNull(listener));
+		return this;
 	}
 
 	@Override
@@ -58,7 +148,72 @@ public class CachedRepo implements Repo {
 	@Override
 	@Nonnull
 	public Config getConfig(@Nonnull String name) throws IOException {
-		return Caches.get(configCache, name, IOException.class);
+		return Caches.get(configCache, name, IOException.class).config;
+	}
+
+	@Override
+	@Nullable
+	public String getVersion(@Nonnull String name) throws IOException {
+		return delegate.getVersion(name);
+	}
+
+	@Nonnull
+	private Entry load(@Nonnull String name) throws IOException {
+		// take the version before loading, so a change made while loading is caught by the next refresh
+		String version = delegate.getVersion(name);
+		return new Entry(delegate.getConfig(name), version);
+	}
+
+	@Nonnull
+	private Entry refresh(@Nonnull String name, @Nonnull Entry oldEntry) throws IOException {
+		String version = delegate.getVersion(name);
+		if (version != null && version.equals(oldEntry.version)) {
+			return oldEntry;
+		}
+
+		Entry newEntry = new Entry(delegate.getConfig(name), version);
+		if (!Objects.equals(oldEntry.config.asRawMap(), newEntry.config.asRawMap())) {
+			notifyListeners(name, oldEntry.config, newEntry.config);
+		}
+		return newEntry;
+	}
+
+	@Nonnull
+	private List<String> refreshNames(@Nonnull List<String> oldNames) throws IOException {
+		List<String> newNames = delegate.getNames();
+		Set<String> oldSet = new HashSet<>(oldNames);
+		Set<String> newSet = new HashSet<>(newNames);
+
+		for (String name : oldNames) {
+			if (!newSet.contains(name)) {
+				Entry oldEntry = configCache.asMap().remove(name);
+				if (oldEntry != null) {
+					notifyListeners(name, oldEntry.config, null);
+				}
+			}
+		}
+
+		for (String name : newNames) {
+			if (!oldSet.contains(name) && !listeners.isEmpty()) {
+				try {
+					notifyListeners(name, null, Caches.get(configCache, name, IOException.class).config);
+				} catch (IOException e) {
+					log.warn("failed to read config: {}", name, e);
+				}
+			}
+		}
+
+		return newNames;
+	}
+
+	private void notifyListeners(@Nonnull String name, @Nullable Config oldConfig, @Nullable Config newConfig) {
+		for (RepoListener listener : listeners) {
+			try {
+				listener.onChange(name, oldConfig, newConfig);
+			} catch (RuntimeException e) {
+				log.warn("listener failed for config: {}", name, e);
+			}
+		}
 	}
 
 	@Override
@@ -66,4 +221,14 @@ public class CachedRepo implements Repo {
 		namesCache.invalidateAll();
 		configCache.invalidateAll();
 	}
+
+	private static class Entry {
+		private final Config config;
+		private final String version;
+
+		private Entry(@Nonnull Config config, @Nullable String version) {
+			this.config = config;
+			this.version = version;
+		}
+	}
 }
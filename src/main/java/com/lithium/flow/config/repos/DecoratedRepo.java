@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.util.List;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * @author Matt Ayres
@@ -48,6 +49,12 @@ public class DecoratedRepo implements Repo {
 		return delegate.getConfig(name);
 	}
 
+	@Override
+	@Nullable
+	public String getVersion(@Nonnull String name) throws IOException {
+		return delegate.getVersion(name);
+	}
+
 	@Override
 	public void close() throws IOException {
 		delegate.close();
@@ -16,6 +16,7 @@
 
 package com.lithium.flow.config.repos;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.lithium.flow.config.Config;
@@ -24,28 +25,59 @@ import com.lithium.flow.config.Configs;
 import com.lithium.flow.config.Repo;
 import com.lithium.flow.filer.Filer;
 import com.lithium.flow.filer.Record;
+import com.lithium.flow.filer.RecordPath;
 import com.lithium.flow.io.Swallower;
+import com.lithium.flow.util.Caches;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 /**
+ * Repo of config files found in the given paths of a list of filers, with included files loaded through the same
+ * filers.
+ * <p>
+ * Existence checks are answered from folder listings, which are cached for {@link #withCacheTime(long)} millis, and
+ * file contents are cached by path and modification time, so loading many configs that share includes reads each
+ * distinct file about once.
+ * <p>
+ * The version of a loaded config is a hash of the modification times and sizes of every path looked up while
+ * loading it, found or not, so it changes when the config or any of its includes change.
+ *
  * @author Matt Ayres
  */
 public class FilerRepo implements Repo {
+	private static final long DEFAULT_CACHE_TIME = 5000;
+
 	private final List<Filer> filers;
 	private final List<String> paths;
 	private final String extension;
 	private final UnaryOperator<Config> operator;
 	private final Supplier<ConfigBuilder> supplier;
+	private final List<Map<String, Content>> contents = new ArrayList<>();
+	private final Map<String, List<Dependency>> dependencies = new ConcurrentHashMap<>();
+	private volatile List<LoadingCache<String, Map<String, Record>>> folders;
 
 	public FilerRepo(@Nonnull List<Filer> filers, @Nonnull List<String> paths) {
 		this(filers, paths, ".config");
@@ -62,15 +94,41 @@ public class FilerRepo implements Repo {
 		this.extension = checkNotNull(extension);
 		this.operator = checkNotNull(operator);
 		this.supplier = checkNotNull(supplier);
+
+		filers.forEach(filer -> contents.add(new ConcurrentHashMap<>()));
+		withCacheTime(DEFAULT_CACHE_TIME);
+	}
+
+	/**
+	 * @param cacheTime millis to cache folder listings used for existence checks, or 0 to check each file directly
+	 */
+	@Nonnull
+	public FilerRepo withCacheTime(long cacheTime) {
+		checkArgument(cacheTime >= 0, "invalid cache time: %s", cacheTime);
+
+		List<LoadingCache<String, Map<String, Record>>> folders = new ArrayList<>();
+		for (Filer filer : filers) {
+			folders.add(cacheTime == 0 ? null : Caches.build(folder -> listFolder(filer, folder),
+					b -> b.expireAfterWrite(cacheTime, TimeUnit.MILLISECONDS)));
+		}
+		this.folders = folders;
+		return this;
 	}
 
 	@Override
 	@Nonnull
 	public List<String> getNames() throws IOException {
 		List<String> names = new ArrayList<>();
-		for (Filer filer : filers) {
+		for (int i = 0; i < filers.size(); i++) {
+			Filer filer = filers.get(i);
 			for (String path : paths) {
-				for (Record record : filer.listRecords(path)) {
+				List<Record> records = filer.listRecords(path);
+				LoadingCache<String, Map<String, Record>> cache = folders.get(i);
+				if (cache != null) {
+					cache.put(path, toMap(records));
+				}
+
+				for (Record record : records) {
 					String name = record.getName();
 					if (!record.isDir() && !name.startsWith(".") && name.endsWith(extension)) {
 						names.add(name.replaceFirst(extension + "$", ""));
@@ -85,17 +143,19 @@ public class FilerRepo implements Repo {
 	@Nonnull
 	public Config getConfig(@Nonnull String name) throws IOException {
 		Set<String> fullPaths = new HashSet<>();
+		List<Dependency> deps = new ArrayList<>();
 
 		String fullPath = null;
 		Record record = null;
 
 		find:
-		for (Filer filer : filers) {
+		for (int i = 0; i < filers.size(); i++) {
 			if (paths.size() > 0) {
 				for (String path : paths) {
 					fullPath = path + "/" + name + extension;
 					fullPaths.add(fullPath);
-					record = filer.getRecord(fullPath);
+					record = getRecord(i, fullPath);
+					deps.add(new Dependency(i, fullPath));
 					if (record.exists()) {
 						break find;
 					}
@@ -103,7 +163,8 @@ public class FilerRepo implements Repo {
 			} else {
 				fullPath = name + extension;
 				fullPaths.add(fullPath);
-				record = filer.getRecord(fullPath);
+				record = getRecord(i, fullPath);
+				deps.add(new Dependency(i, fullPath));
 				if (record.exists()) {
 					break;
 				}
@@ -115,21 +176,105 @@ public class FilerRepo implements Repo {
 		}
 
 		ConfigBuilder builder = supplier.get();
-		for (Filer filer : filers) {
+		for (int i = 0; i < filers.size(); i++) {
+			int index = i;
 			builder.addLoader(path -> {
-				Record pathRecord = filer.getRecord(path);
-				return pathRecord.exists() && pathRecord.isFile() ? filer.readFile(path) : null;
+				Record pathRecord = getRecord(index, path);
+				deps.add(new Dependency(index, path));
+				return pathRecord.exists() && pathRecord.isFile() ? readFile(index, path, pathRecord) : null;
 			});
 		}
 		builder.allowFileNotFound(true);
 		builder.include(fullPath);
 		builder.setName(name);
 
-		return operator.apply(builder.build());
+		Config config = operator.apply(builder.build());
+		dependencies.put(name, deps);
+		return config;
+	}
+
+	@Override
+	@Nullable
+	public String getVersion(@Nonnull String name) throws IOException {
+		checkNotNull(name);
+		List<Dependency> deps = dependencies.get(name);
+		if (deps == null) {
+			return null;
+		}
+
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		for (Dependency dep : deps) {
+			Record record = getRecord(dep.index, dep.path);
+			hasher.putInt(dep.index).putUnencodedChars(dep.path).putLong(record.getTime()).putLong(record.getSize());
+		}
+		return hasher.hash().toString();
+	}
+
+	@Nonnull
+	private Record getRecord(int index, @Nonnull String path) throws IOException {
+		LoadingCache<String, Map<String, Record>> cache = folders.get(index);
+		RecordPath recordPath = RecordPath.from(path);
+		if (cache == null || recordPath.getFolder().isEmpty()) {
+			return filers.get(index).getRecord(path);
+		}
+
+		Record record = Caches.get(cache, recordPath.getFolder(), IOException.class).get(recordPath.getName());
+		return record != null ? record : Record.noFile(filers.get(index).getUri(), path);
+	}
+
+	@Nonnull
+	private InputStream readFile(int index, @Nonnull String path, @Nonnull Record record) throws IOException {
+		Map<String, Content> cache = contents.get(index);
+		Content content = cache.get(path);
+		if (content == null || content.time != record.getTime() || content.size != record.getSize()) {
+			try (InputStream in = filers.get(index).readFile(path)) {
+				content = new Content(record.getTime(), record.getSize(), IOUtils.toByteArray(in));
+			}
+			cache.put(path, content);
+		}
+		return new ByteArrayInputStream(content.bytes);
+	}
+
+	@Nonnull
+	private static Map<String, Record> listFolder(@Nonnull Filer filer, @Nonnull String folder) throws IOException {
+		try {
+			return toMap(filer.listRecords(folder));
+		} catch (FileNotFoundException e) {
+			return Collections.emptyMap();
+		}
+	}
+
+	@Nonnull
+	private static Map<String, Record> toMap(@Nonnull List<Record> records) {
+		Map<String, Record> map = new HashMap<>();
+		records.forEach(record -> map.put(record.getName(), record));
+		return map;
 	}
 
 	@Override
 	public void close() {
 		filers.forEach(Swallower::close);
 	}
+
+	private static class Dependency {
+		private final int index;
+		private final String path;
+
+		private Dependency(int index, @Nonnull String path) {
+			this.index = index;
+			this.path = path;
+		}
+	}
+
+	private static class Content {
+		private final long time;
+		private final long size;
+		private final byte[] bytes;
+
+		private Content(long time, long size, @Nonnull byte[] bytes) {
+			this.time = time;
+			this.size = size;
+			this.bytes = bytes;
+		}
+	}
 }
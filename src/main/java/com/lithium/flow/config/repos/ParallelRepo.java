@@ -17,26 +17,30 @@
 package com.lithium.flow.config.repos;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toList;
 
 import com.lithium.flow.config.Config;
 import com.lithium.flow.config.Repo;
 import com.lithium.flow.util.Measure;
+import com.lithium.flow.util.Needle;
 import com.lithium.flow.util.Progress;
 import com.lithium.flow.util.Threader;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
 
-import com.google.common.collect.Lists;
-
 /**
+ * Loads configs from the delegate in parallel on a pool of daemon threads that is kept for the life of the repo.
+ *
  * @author Matt Ayres
  */
 public class ParallelRepo extends DecoratedRepo {
 	private final Config config;
+	private volatile Threader threader;
 
 	public ParallelRepo(@Nonnull Repo delegate, @Nonnull Config config) {
 		super(delegate);
@@ -46,11 +50,7 @@ public class ParallelRepo extends DecoratedRepo {
 	@Override
 	@Nonnull
 	public List<Config> getConfigs() throws IOException {
-		int threads = config.getInt("threads", Runtime.getRuntime().availableProcessors() / 2);
-		int retries = config.getInt("retries", 0);
-
-		List<Config> configs = Lists.newCopyOnWriteArrayList();
-		Threader threader = new Threader(threads).setRetries(retries);
+		Needle<Config> needle = getThreader().needle();
 		Progress progress = new Progress();
 		Measure names = progress.counter("names").useForEta();
 
@@ -60,20 +60,19 @@ public class ParallelRepo extends DecoratedRepo {
 		try {
 			getNames().forEach(name -> {
 				names.incTodo();
-				threader.execute(name, () -> {
-					configs.add(getConfig(name));
+				needle.submit(name, () -> {
+					Config loaded = getConfig(name);
 					names.incDone();
+					return loaded;
 				});
 			});
 
-			threader.close();
+			return needle.toList().stream().filter(Objects::nonNull).collect(toList());
 		} finally {
 			if (config.getBoolean("progress", false)) {
 				progress.close();
 			}
 		}
-
-		return configs;
 	}
 
 	@Override
@@ -81,4 +80,29 @@ public class ParallelRepo extends DecoratedRepo {
 	public Stream<Config> streamConfigs() throws IOException {
 		return getConfigs().stream();
 	}
+
+	@Nonnull
+	private Threader getThreader() {
+		Threader threader = this.threader;
+		if (threader == null) {
+			synchronized (this) {
+				threader = this.threader;
+				if (threader == null) {
+					int threads = config.getInt("threads", Runtime.getRuntime().availableProcessors() / 2);
+					int retries = config.getInt("retries", 0);
+					this.threader = threader = Threader.forDaemon(threads).withRetries(retries);
+				}
+			}
+		}
+		return threader;
+	}
+
+	@Override
+	public void close() throws IOException {
+		Threader threader = this.threader;
+		if (threader != null) {
+			threader.close();
+		}
+		super.close();
+	}
 }
@@ -17,10 +17,10 @@
 package com.lithium.flow.config.repos;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static java.util.stream.Collectors.toMap;
 
 import com.lithium.flow.config.Config;
 import com.lithium.flow.config.Repo;
+import com.lithium.flow.config.RepoListener;
 import com.lithium.flow.util.Caches;
 import com.lithium.flow.util.Checker;
 import com.lithium.flow.util.Logs;
@@ -30,12 +30,18 @@ import com.lithium.flow.util.Sleep;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 
@@ -43,13 +49,23 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 
 /**
+ * Repo that keeps every config of the delegate in memory and refreshes them on a schedule.
+ * <p>
+ * After the first load, each refresh asks the delegate for the {@link Repo#getVersion(String) version} of each config
+ * and reloads only those that changed, falling back to reloading everything when no versions are known. Readers keep
+ * seeing the previous configs until a refresh completes, and {@link RepoListener}s are told of configs that were
+ * added, changed or removed.
+ *
  * @author Matt Ayres
  */
 public class ScheduledRepo implements Repo {
 	private static final Logger log = Logs.getLogger();
 
+	private final Repo delegate;
 	private final CountDownLatch latch = new CountDownLatch(1);
 	private final Thread thread;
+	private final Map<String, String> versions = new ConcurrentHashMap<>();
+	private final List<RepoListener> listeners = new CopyOnWriteArrayList<>();
 	private volatile Map<String, Config> configMap;
 	private final LoadingCache<String, Config> configCache;
 
@@ -58,13 +74,13 @@ public class ScheduledRepo implements Repo {
 	}
 
 	public ScheduledRepo(@Nonnull Repo delegate, long interval, long offset, @Nonnull Checker checker) {
+		this.delegate = checkNotNull(delegate);
 		configCache = Caches.build(delegate::getConfig);
 
 		thread = new LoopThread(interval, offset - interval * 2, true, () -> {
 			if (configMap == null || checker.check()) {
 				try {
-					configMap = delegate.streamConfigs().collect(toMap(Config::getName, config -> config));
-					configMap.keySet().forEach(configCache::invalidate);
+					refresh();
 					latch.countDown();
 				} catch (IOException e) {
 					log.warn("failed to read configs", e);
@@ -73,6 +89,92 @@ public class ScheduledRepo implements Repo {
 		});
 	}
 
+	@Nonnull
+	public ScheduledRepo addListener(@Nonnull RepoListener listener) {
+		listeners.add(checkNotNull(listener));
+		return this;
+	}
+
+	private void refresh() throws IOException {
+		Map<String, Config> oldMap = configMap != null ? configMap : Collections.emptyMap();
+		Map<String, Config> newMap = new HashMap<>();
+
+		Map<String, String> seen = new HashMap<>();
+		List<String> stale = new ArrayList<>();
+		for (String name : delegate.getNames()) {
+			Config config = oldMap.get(name);
+			String version = delegate.getVersion(name);
+			if (version != null) {
+				seen.put(name, version);
+			}
+
+			if (config != null && version != null && version.equals(versions.get(name))) {
+				newMap.put(name, config);
+			} else {
+				stale.add(name);
+			}
+		}
+
+		if (stale.size() > 0 && newMap.isEmpty()) {
+			delegate.streamConfigs().forEach(config -> newMap.put(config.getName(), config));
+		} else {
+			for (String name : stale) {
+				try {
+					newMap.put(name, delegate.getConfig(name));
+				} catch (IOException e) {
+					log.warn("failed to read config: {}", name, e);
+					Config config = oldMap.get(name);
+					if (config != null) {
+						newMap.put(name, config);
+					}
+				}
+			}
+		}
+
+		versions.keySet().retainAll(newMap.keySet());
+		for (String name : newMap.keySet()) {
+			if (newMap.get(name) != oldMap.get(name)) {
+				// prefer the version seen before loading, so a change made while loading is caught next time
+				String version = seen.containsKey(name) ? seen.get(name) : delegate.getVersion(name);
+				if (version != null) {
+					versions.put(name, version);
+				} else {
+					versions.remove(name);
+				}
+			}
+		}
+
+		boolean first = configMap == null;
+		configMap = newMap;
+		newMap.keySet().forEach(configCache::invalidate);
+
+		if (!first) {
+			notifyListeners(oldMap, newMap);
+		}
+	}
+
+	private void notifyListeners(@Nonnull Map<String, Config> oldMap, @Nonnull Map<String, Config> newMap) {
+		Set<String> names = new HashSet<>(oldMap.keySet());
+		names.addAll(newMap.keySet());
+
+		for (String name : names) {
+			Config oldConfig = oldMap.get(name);
+			Config newConfig = newMap.get(name);
+			if (oldConfig == newConfig || (oldConfig != null && newConfig != null
+					&& oldConfig.asRawMap().equals(newConfig.asRawMap()))) {
+				continue;
+			}
+
+			for (RepoListener listener : listeners) {
+				try {
+					listener.onChange(name, oldConfig, newConfig);
+				} catch (RuntimeException e) {
+					log.warn("listener failed for config: {}", name, e);
+				}
+			}
+		}
+	}
+
 	@Override
 	@Nonnull
 	public List<String> getNames() {
@@ -107,6 +209,12 @@ public class ScheduledRepo implements Repo {
 		return configMap != null || Sleep.softly(latch::await) ? configMap : Collections.emptyMap();
 	}
 
+	@Override
+	@Nullable
+	public String getVersion(@Nonnull String name) throws IOException {
+		return versions.get(checkNotNull(name));
+	}
+
 	@Override
 	public void close() {
 		thread.interrupt();
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lithium.flow.filer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.lithium.flow.io.AbstractDataIo;
+import com.lithium.flow.io.DataIo;
+import com.lithium.flow.io.DecoratedOutputStream;
+import com.lithium.flow.util.AdaptiveLimiter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Decorates a {@link Filer} so that calls to the delegate go through an {@link AdaptiveLimiter}. Failures matching
+ * the throttle pattern or timing out count as dropped calls, and the latency of each call is compared against other
+ * calls of the same operation.
+ * <p>
+ * Streams hold a permit while being opened, and written streams hold another while being closed, since that is
+ * when many backends upload. Reads are only limited while opening, so the limiter does not bound concurrent
+ * downloads. Stream latencies are not sampled, because opening can be local and closing depends on the size of the
+ * file. Finding records lists folders through this filer so that each listing is limited.
+ *
+ * @author Matt Ayres
+ */
+public class AdaptiveFiler extends DecoratedFiler {
+	private final AdaptiveLimiter limiter;
+	private final Pattern throttlePattern;
+
+	public AdaptiveFiler(@Nonnull Filer delegate, @Nonnull AdaptiveLimiter limiter, @Nonnull Pattern throttlePattern) {
+		super(delegate);
+		this.limiter = checkNotNull(limiter);
+		this.throttlePattern = checkNotNull(throttlePattern);
+		bypassDelegateFind = true;
+	}
+
+	@Nonnull
+	public AdaptiveLimiter getLimiter() {
+		return limiter;
+	}
+
+	@Override
+	@Nonnull
+	public List<Record> listRecords(@Nonnull String path) throws IOException {
+		return limit("listRecords", () -> super.listRecords(path));
+	}
+
+	@Override
+	@Nonnull
+	public Record getRecord(@Nonnull String path) throws IOException {
+		return limit("getRecord", () -> super.getRecord(path));
+	}
+
+	@Override
+	@Nonnull
+	public String getHash(@Nonnull String path, @Nonnull String hash, @Nonnull String base) throws IOException {
+		// some filers read the whole file to hash it
+		return limit(null, () -> super.getHash(path, hash, base));
+	}
+
+	@Override
+	@Nonnull
+	public InputStream readFile(@Nonnull String path) throws IOException {
+		return limit(null, () -> super.readFile(path));
+	}
+
+	@Override
+	@Nonnull
+	public OutputStream writeFile(@Nonnull String path) throws IOException {
+		return new LimitedOutputStream(limit(null, () -> super.writeFile(path)));
+	}
+
+	@Override
+	@Nonnull
+	public OutputStream appendFile(@Nonnull String path) throws IOException {
+		return new LimitedOutputStream(limit(null, () -> super.appendFile(path)));
+	}
+
+	@Override
+	@Nonnull
+	public DataIo openFile(@Nonnull String path, boolean write) throws IOException {
+		DataIo io = limit(null, () -> super.openFile(path, write));
+		return write ? new LimitedDataIo(io) : io;
+	}
+
+	@Override
+	public void setFileTime(@Nonnull String path, long time) throws IOException {
+		limit("setFileTime", () -> {
+			super.setFileTime(path, time);
+			return null;
+		});
+	}
+
+	@Override
+	public void deleteFile(@Nonnull String path) throws IOException {
+		limit("deleteFile", () -> {
+			super.deleteFile(path);
+			return null;
+		});
+	}
+
+	@Override
+	public void createDirs(@Nonnull String path) throws IOException {
+		limit("createDirs", () -> {
+			super.createDirs(path);
+			return null;
+		});
+	}
+
+	@Override
+	public void renameFile(@Nonnull String oldPath, @Nonnull String newPath) throws IOException {
+		limit("renameFile", () -> {
+			super.renameFile(oldPath, newPath);
+			return null;
+		});
+	}
+
+	/**
+	 * @param operation name of the operation to compare latencies with, or null to not sample the latency
+	 */
+	private <T> T limit(@Nullable String operation, @Nonnull Call<T> call) throws IOException {
+		long startTime;
+		try {
+			startTime = limiter.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting for limiter");
+		}
+
+		try {
+			T result = call.call();
+			if (operation != null) {
+				limiter.onSuccess(operation, startTime);
+			} else {
+				limiter.onSuccess();
+			}
+			return result;
+		} catch (IOException | RuntimeException e) {
+			if (isDropped(e)) {
+				limiter.onDropped(startTime);
+			} else {
+				limiter.onIgnore();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes through the limiter, still closing if interrupted while waiting for a permit.
+	 */
+	private void limitClose(@Nonnull Closeable closeable) throws IOException {
+		AtomicBoolean closing = new AtomicBoolean();
+		try {
+			limit(null, () -> {
+				closing.set(true);
+				closeable.close();
+				return null;
+			});
+		} finally {
+			if (!closing.get()) {
+				closeable.close();
+			}
+		}
+	}
+
+	private boolean isDropped(@Nonnull Exception e) {
+		if (e instanceof SocketTimeoutException) {
+			return true;
+		}
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t.getMessage() != null && throttlePattern.matcher(t.getMessage()).find()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private interface Call<T> {
+		T call() throws IOException;
+	}
+
+	private class LimitedOutputStream extends DecoratedOutputStream {
+		private boolean closed;
+
+		private LimitedOutputStream(@Nonnull OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				limitClose(super::close);
+			}
+		}
+	}
+
+	private class LimitedDataIo extends AbstractDataIo {
+		private final DataIo io;
+		private boolean closed;
+
+		private LimitedDataIo(@Nonnull DataIo io) {
+			super(io, io);
+			this.io = io;
+		}
+
+		@Override
+		public long getFilePointer() throws IOException {
+			return io.getFilePointer();
+		}
+
+		@Override
+		public void seek(long pos) throws IOException {
+			io.seek(pos);
+		}
+
+		@Override
+		public long length() throws IOException {
+			return io.length();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				limitClose(io);
+			}
+		}
+	}
+}
@@ -100,6 +100,11 @@ public class DecoratedFiler implements Filer {
 		return delegate.appendFile(path);
 	}
 
+	@Override
+	public boolean isSeekable() {
+		return delegate.isSeekable();
+	}
+
 	@Override
 	@Nonnull
 	public DataIo openFile(@Nonnull String path, boolean write) throws IOException {
@@ -70,6 +70,14 @@ public interface Filer extends Closeable {
 	@Nonnull
 	DataIo openFile(@Nonnull String path, boolean write) throws IOException;
 
+	/**
+	 * @return true if {@link #openFile(String, boolean)} reads the same bytes as {@link #readFile(String)}, with a
+	 * length matching the record size
+	 */
+	default boolean isSeekable() {
+		return false;
+	}
+
 	void setFileTime(@Nonnull String path, long time) throws IOException;
 
 	void deleteFile(@Nonnull String path) throws IOException;
@@ -108,7 +108,8 @@ public class FilerFactory {
 		}
 
 		List<Streamer> streamers = buildStreamers(config, locator);
-		return streamers.isEmpty() ? filer : new StreamerFiler(filer, new ChainedStreamer(streamers));
+		int pipeDepth = config.getBoolean("streamers.pipelined", false) ? config.getInt("streamers.pipeDepth", 4) : 0;
+		return streamers.isEmpty() ? filer : new StreamerFiler(filer, new ChainedStreamer(streamers, pipeDepth));
 	}
 
 	@Nonnull
@@ -20,6 +20,7 @@ import com.lithium.flow.access.Access;
 import com.lithium.flow.config.Config;
 import com.lithium.flow.config.Repo;
 import com.lithium.flow.config.repos.Repos;
+import com.lithium.flow.filer.chain.AdaptiveFilerChain;
 import com.lithium.flow.filer.chain.CachedFilerChain;
 import com.lithium.flow.filer.chain.ReadOnlyFilerChain;
 import com.lithium.flow.filer.chain.SubpathsFilerChain;
@@ -34,6 +35,8 @@ import com.lithium.flow.shell.Shore;
 import com.lithium.flow.streams.BufferedStreamer;
 import com.lithium.flow.streams.CompressStreamer;
 import com.lithium.flow.streams.CryptStreamer;
+import com.lithium.flow.streams.MetricsReporter;
+import com.lithium.flow.streams.MetricsStreamer;
 import com.lithium.flow.vault.Vault;
 import com.lithium.flow.vault.Vaults;
 
@@ -62,12 +65,15 @@ public class Filers {
 				.addStreamer("buffered", BufferedStreamer.class)
 				.addStreamer("compress", CompressStreamer.class)
 				.addStreamer("crypt", CryptStreamer.class)
+				.addStreamer("metrics", MetricsStreamer.class)
 				.addChain("readonly", ReadOnlyFilerChain.class)
 				.addChain("subpath", SubpathsFilerChain.class)
 				.addChain("temp", TempWriterFilerChain.class)
 				.addChain("cache", CachedFilerChain.class)
 				.addChain("lucene", LuceneFilerChain.class)
 				.addChain("hash", HashFilerChain.class)
+				.addChain("adaptive", AdaptiveFilerChain.class)
+				.addProvider(MetricsReporter.class, locator -> MetricsReporter.build(locator.getInstance(Config.class)))
 				.attempt(ff -> ff.addProvider(Configuration.class, HdfsConfiguration::new))
 				.attempt(ff -> ff.addProvider(Access.class, Vaults::buildAccess))
 				.attempt(ff -> ff.addProvider(Vault.class, Vaults::buildVault))
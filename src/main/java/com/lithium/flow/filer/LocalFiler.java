@@ -109,6 +109,11 @@ public class LocalFiler implements Filer {
 		return new FileOutputStream(path, true);
 	}
 
+	@Override
+	public boolean isSeekable() {
+		return true;
+	}
+
 	@Override
 	@Nonnull
 	public DataIo openFile(@Nonnull String path, boolean write) throws IOException {
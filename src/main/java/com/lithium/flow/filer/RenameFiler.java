@@ -103,6 +103,11 @@ public class RenameFiler implements Filer {
 		return delegate.appendFile(path);
 	}
 
+	@Override
+	public boolean isSeekable() {
+		return delegate.isSeekable();
+	}
+
 	@Override
 	@Nonnull
 	public DataIo openFile(@Nonnull String path, boolean write) throws IOException {
@@ -18,8 +18,10 @@ package com.lithium.flow.filer;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.lithium.flow.io.DataIo;
 import com.lithium.flow.streams.Streamer;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -84,6 +86,41 @@ public class StreamerFiler extends DecoratedFiler {
 		}
 	}
 
+	/**
+	 * Streamers may change the bytes read, and may not support random access at all.
+	 */
+	@Override
+	public boolean isSeekable() {
+		return false;
+	}
+
+	@Override
+	@Nonnull
+	public DataIo openFile(@Nonnull String path, boolean write) throws IOException {
+		DataIo io = super.openFile(path, write);
+		if (write) {
+			return io;
+		}
+
+		try {
+			return streamer.filterIo(io, path);
+		} catch (IOException | RuntimeException e) {
+			io.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			if (streamer instanceof Closeable) {
+				((Closeable) streamer).close();
+			}
+		}
+	}
+
 	@Nonnull
 	private OutputStream exceptionOut(@Nonnull OutputStream out, Exception e) {
 		return new OutputStream() {
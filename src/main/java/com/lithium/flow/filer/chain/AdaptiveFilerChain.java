@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lithium.flow.filer.chain;
+
+import com.lithium.flow.config.Config;
+import com.lithium.flow.filer.AdaptiveFiler;
+import com.lithium.flow.filer.Filer;
+import com.lithium.flow.ioc.Chain;
+import com.lithium.flow.util.AdaptiveLimiter;
+
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Matt Ayres
+ */
+public class AdaptiveFilerChain implements Chain<Filer> {
+	private final Config config;
+
+	public AdaptiveFilerChain(@Nonnull Config config) {
+		this.config = config;
+	}
+
+	@Override
+	@Nonnull
+	public Filer chain(@Nonnull Filer input) {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(
+				config.getInt("adaptive.initialLimit", 20),
+				config.getInt("adaptive.minLimit", 1),
+				config.getInt("adaptive.maxLimit", 1000),
+				config.getDouble("adaptive.backoff", 0.9),
+				config.getDouble("adaptive.tolerance", 2.0));
+		Pattern throttlePattern = Pattern.compile(config.getString("adaptive.throttlePattern",
+				"(?i)slow ?down|throttl|too many requests|rate exceeded|\\b(429|503)\\b"));
+		return new AdaptiveFiler(input, limiter, throttlePattern);
+	}
+}
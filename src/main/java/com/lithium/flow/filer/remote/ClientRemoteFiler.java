@@ -41,6 +41,11 @@ public class ClientRemoteFiler extends DecoratedFiler implements RemoteFiler {
 		bypassDelegateFind = true;
 	}
 
+	@Override
+	public boolean isSeekable() {
+		return false;
+	}
+
 	@Nonnull
 	private static RemoteFiler lookup(@Nonnull String host, int port) throws IOException {
 		checkNotNull(host);
@@ -66,6 +66,11 @@ public class ServerRemoteFiler extends DecoratedFiler implements RemoteFiler, Se
 		return new SerializableOutputStream(new SimpleRemoteOutputStream(super.writeFile(path)));
 	}
 
+	@Override
+	public boolean isSeekable() {
+		return false;
+	}
+
 	@Override
 	@Nonnull
 	public DataIo openFile(@Nonnull String path, boolean write) {
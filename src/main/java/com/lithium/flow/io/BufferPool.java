@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Thread-safe pool of heap or direct buffers in power of two size classes. Buffers larger than the largest class are
+ * allocated on every lease and dropped on release.
+ *
+ * @author Matt Ayres
+ */
+public class BufferPool {
+	public static final int MIN_SIZE = 4096;
+	public static final int MAX_SIZE = 4 * 1024 * 1024;
+	public static final int DEFAULT_MAX_POOLED = 256;
+
+	private static final BufferPool HEAP = new BufferPool(false, DEFAULT_MAX_POOLED);
+	private static final BufferPool DIRECT = new BufferPool(true, DEFAULT_MAX_POOLED);
+
+	private final boolean direct;
+	private final int maxPooled;
+	private final SizeClass[] classes;
+	private final LongAdder leases = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder drops = new LongAdder();
+
+	public BufferPool(boolean direct, int maxPooled) {
+		checkArgument(maxPooled >= 0, "invalid max pooled: %s", maxPooled);
+		this.direct = direct;
+		this.maxPooled = maxPooled;
+
+		int count = Integer.numberOfTrailingZeros(MAX_SIZE) - Integer.numberOfTrailingZeros(MIN_SIZE) + 1;
+		classes = new SizeClass[count];
+		for (int i = 0; i < count; i++) {
+			classes[i] = new SizeClass(MIN_SIZE << i);
+		}
+	}
+
+	@Nonnull
+	public static BufferPool heap() {
+		return HEAP;
+	}
+
+	@Nonnull
+	public static BufferPool direct() {
+		return DIRECT;
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * @return a cleared buffer with a capacity of at least {@code size}, to be given back with {@link #release}.
+	 */
+	@Nonnull
+	public ByteBuffer lease(int size) {
+		checkArgument(size >= 0, "invalid size: %s", size);
+		leases.increment();
+
+		SizeClass sizeClass = sizeClassOf(size);
+		if (sizeClass == null) {
+			misses.increment();
+			return allocate(size);
+		}
+
+		ByteBuffer buffer = sizeClass.poll();
+		if (buffer == null) {
+			misses.increment();
+			return allocate(sizeClass.size);
+		}
+
+		hits.increment();
+		return buffer;
+	}
+
+	@Nonnull
+	public byte[] leaseArray(int size) {
+		checkArgument(!direct, "direct pool has no arrays");
+		return lease(size).array();
+	}
+
+	public void release(@Nonnull ByteBuffer buffer) {
+		checkNotNull(buffer);
+		SizeClass sizeClass = buffer.isDirect() == direct ? sizeClassOf(buffer.capacity()) : null;
+		if (sizeClass == null || sizeClass.size != buffer.capacity() || !sizeClass.offer(buffer)) {
+			drops.increment();
+		}
+	}
+
+	public void releaseArray(@Nonnull byte[] array) {
+		release(ByteBuffer.wrap(array));
+	}
+
+	private SizeClass sizeClassOf(int size) {
+		if (size > MAX_SIZE) {
+			return null;
+		}
+		int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, MIN_SIZE) - 1);
+		return classes[shift - Integer.numberOfTrailingZeros(MIN_SIZE)];
+	}
+
+	@Nonnull
+	private ByteBuffer allocate(int size) {
+		return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+	}
+
+	public long getLeases() {
+		return leases.sum();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of leases that found their size class exhausted and allocated a new buffer.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of released buffers dropped because their size class was full or not poolable.
+	 */
+	public long getDrops() {
+		return drops.sum();
+	}
+
+	public int getPooled() {
+		int pooled = 0;
+		for (SizeClass sizeClass : classes) {
+			pooled += sizeClass.count.get();
+		}
+		return pooled;
+	}
+
+	@Override
+	@Nonnull
+	public String toString() {
+		return (direct ? "direct" : "heap") + " pool: " + getLeases() + " leases, " + getHits() + " hits, "
+				+ getMisses() + " misses, " + getDrops() + " drops, " + getPooled() + " pooled";
+	}
+
+	private class SizeClass {
+		private final int size;
+		private final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger count = new AtomicInteger();
+
+		private SizeClass(int size) {
+			this.size = size;
+		}
+
+		private ByteBuffer poll() {
+			ByteBuffer buffer = queue.poll();
+			if (buffer != null) {
+				count.decrementAndGet();
+				buffer.clear();
+			}
+			return buffer;
+		}
+
+		private boolean offer(@Nonnull ByteBuffer buffer) {
+			if (count.incrementAndGet() > maxPooled) {
+				count.decrementAndGet();
+				return false;
+			}
+			return queue.offer(buffer);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.matcher;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Trie of chars with sorted child arrays, used by the set matchers. After {@link #link()} it is also an Aho-Corasick
+ * automaton for finding any of the added values inside an input.
+ *
+ * @author Matt Ayres
+ */
+class CharTrie {
+	private static final char[] NO_KEYS = new char[0];
+	private static final CharTrie[] NO_CHILDREN = new CharTrie[0];
+
+	private char[] keys = NO_KEYS;
+	private CharTrie[] children = NO_CHILDREN;
+	private boolean terminal;
+	private CharTrie fail;
+
+	public void add(@Nonnull String value, boolean reverse) {
+		checkNotNull(value);
+		CharTrie node = this;
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			node = node.getOrAdd(value.charAt(reverse ? length - 1 - i : i));
+		}
+		node.terminal = true;
+	}
+
+	@Nullable
+	private CharTrie get(char c) {
+		char[] keys = this.keys;
+		if (keys.length <= 8) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == c) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		int index = Arrays.binarySearch(keys, c);
+		return index >= 0 ? children[index] : null;
+	}
+
+	@Nonnull
+	private CharTrie getOrAdd(char c) {
+		int index = Arrays.binarySearch(keys, c);
+		if (index >= 0) {
+			return children[index];
+		}
+
+		index = -index - 1;
+		CharTrie child = new CharTrie();
+
+		char[] newKeys = new char[keys.length + 1];
+		System.arraycopy(keys, 0, newKeys, 0, index);
+		System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+		newKeys[index] = c;
+
+		CharTrie[] newChildren = new CharTrie[children.length + 1];
+		System.arraycopy(children, 0, newChildren, 0, index);
+		System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+		newChildren[index] = child;
+
+		keys = newKeys;
+		children = newChildren;
+		return child;
+	}
+
+	/**
+	 * @return true if the input starts with (or ends with, if reversed) any added value.
+	 */
+	public boolean matchesPrefix(@Nonnull String input, boolean reverse) {
+		CharTrie node = this;
+		int length = input.length();
+		for (int i = 0; !node.terminal; i++) {
+			if (i == length || (node = node.get(input.charAt(reverse ? length - 1 - i : i))) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Build failure links breadth first, marking each node terminal if any value ends at it or at a node along its
+	 * failure chain. Must be called once after all values are added and before {@link #matchesContains(String)}.
+	 */
+	public void link() {
+		fail = this;
+		Deque<CharTrie> queue = new ArrayDeque<>();
+		for (CharTrie child : children) {
+			child.fail = this;
+			queue.add(child);
+		}
+
+		while (!queue.isEmpty()) {
+			CharTrie node = queue.remove();
+			for (int i = 0; i < node.keys.length; i++) {
+				char c = node.keys[i];
+				CharTrie child = node.children[i];
+
+				CharTrie state = node.fail;
+				CharTrie next;
+				while ((next = state.get(c)) == null && state != this) {
+					state = state.fail;
+				}
+				child.fail = next != null ? next : this;
+				child.terminal |= child.fail.terminal;
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the input contains any added value, in a single pass over the input.
+	 */
+	public boolean matchesContains(@Nonnull String input) {
+		if (terminal) {
+			return true;
+		}
+
+		CharTrie state = this;
+		int length = input.length();
+		for (int i = 0; i < length; i++) {
+			char c = input.charAt(i);
+			CharTrie next;
+			while ((next = state.get(c)) == null && state != this) {
+				state = state.fail;
+			}
+			if (next != null) {
+				state = next;
+				if (state.terminal) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -92,14 +92,20 @@ public class StringMatchers {
 		} else if (exacts.size() > 1) {
 			quickMatchers.add(new ExactSetStringMatcher(new HashSet<>(exacts)));
 		}
-		quickMatchers.addAll(buildList(multimap, "prefix", PrefixStringMatcher::new));
-		quickMatchers.addAll(buildList(multimap, "suffix", SuffixStringMatcher::new));
-		quickMatchers.addAll(buildList(multimap, "contains", ContainsStringMatcher::new));
+		quickMatchers.addAll(buildList(multimap, "prefix",
+				PrefixStringMatcher::new, PrefixSetStringMatcher::new));
+		quickMatchers.addAll(buildList(multimap, "suffix",
+				SuffixStringMatcher::new, SuffixSetStringMatcher::new));
+		quickMatchers.addAll(buildList(multimap, "contains",
+				ContainsStringMatcher::new, ContainsSetStringMatcher::new));
 
 		List<StringMatcher> lowerMatchers = new ArrayList<>();
-		lowerMatchers.addAll(buildList(multimap, "lower.prefix", PrefixStringMatcher::new));
-		lowerMatchers.addAll(buildList(multimap, "lower.suffix", SuffixStringMatcher::new));
-		lowerMatchers.addAll(buildList(multimap, "lower.contains", ContainsStringMatcher::new));
+		lowerMatchers.addAll(buildList(multimap, "lower.prefix",
+				PrefixStringMatcher::new, PrefixSetStringMatcher::new));
+		lowerMatchers.addAll(buildList(multimap, "lower.suffix",
+				SuffixStringMatcher::new, SuffixSetStringMatcher::new));
+		lowerMatchers.addAll(buildList(multimap, "lower.contains",
+				ContainsStringMatcher::new, ContainsSetStringMatcher::new));
 
 		List<StringMatcher> regexMatchers = new ArrayList<>();
 		regexMatchers.addAll(buildList(multimap, "regex", RegexStringMatcher::new));
@@ -134,6 +140,22 @@ public class StringMatchers {
 		return list;
 	}
 
+	@Nonnull
+	private static List<StringMatcher> buildList(@Nonnull Multimap<String, String> multimap, @Nonnull String group,
+			@Nonnull Function<String, StringMatcher> function,
+			@Nonnull Function<Collection<String>, StringMatcher> setFunction) {
+		// plain values share one trie or automaton so matching cost doesn't grow with the number of values
+		List<StringMatcher> list = new ArrayList<>();
+		Collection<String> values = multimap.get(group);
+		if (values.size() > 1) {
+			list.add(setFunction.apply(values));
+		} else {
+			values.stream().map(function).forEach(list::add);
+		}
+		multimap.get(group + "?").stream().map(input -> buildConditional(input, function)).forEach(list::add);
+		return list;
+	}
+
 	@Nonnull
 	private static StringMatcher buildConditional(@Nonnull String input,
 			@Nonnull Function<String, StringMatcher> function) {
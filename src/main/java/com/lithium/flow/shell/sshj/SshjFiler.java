@@ -120,6 +120,11 @@ public class SshjFiler implements Filer {
 		return remoteFile.new RemoteFileOutputStream(remoteFile.length(), buffer);
 	}
 
+	@Override
+	public boolean isSeekable() {
+		return true;
+	}
+
 	@Override
 	@Nonnull
 	public DataIo openFile(@Nonnull String path, boolean write) throws IOException {
@@ -19,6 +19,8 @@ package com.lithium.flow.streams;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.lithium.flow.config.Config;
+import com.lithium.flow.io.BufferPool;
+import com.lithium.flow.io.DataIo;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
@@ -26,29 +28,50 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
- * Filter to apply buffering for output and input.
- * 
+ * Filter to apply buffering for output and input. With {@code buffer.pooled} buffers are leased from the shared
+ * heap {@link BufferPool} instead of being allocated per stream, and {@code buffer.pool.interval} sets an interval to
+ * report the pool counters to the {@link MetricsReporter} of {@code metrics.reporter}.
+ *
  * @author Matt Ayres
  */
 public final class BufferedStreamer implements Streamer {
 	private final int size;
+	private final BufferPool pool;
 
 	public BufferedStreamer(@Nonnull Config config) {
 		checkNotNull(config);
 		size = config.getInt("buffer.size", 65536);
+		pool = config.getBoolean("buffer.pooled", false) ? BufferPool.heap() : null;
+
+		long interval = config.getTime("buffer.pool.interval", "0");
+		if (pool != null && interval > 0) {
+			MetricsScheduler.schedulePool(pool, MetricsReporter.build(config), interval);
+		}
+	}
+
+	@Nullable
+	public BufferPool getPool() {
+		return pool;
 	}
 
 	@Override
 	@Nonnull
 	public final OutputStream filterOut(@Nonnull OutputStream out, String name) {
-		return new BufferedOutputStream(out, size);
+		return pool != null ? new PooledBufferedOutputStream(out, pool, size) : new BufferedOutputStream(out, size);
 	}
 
 	@Override
 	@Nonnull
 	public final InputStream filterIn(@Nonnull InputStream in, String name) {
-		return new BufferedInputStream(in, size);
+		return pool != null ? new PooledBufferedInputStream(in, pool, size) : new BufferedInputStream(in, size);
+	}
+
+	@Override
+	@Nonnull
+	public final DataIo filterIo(@Nonnull DataIo io, String name) {
+		return io;
 	}
 }
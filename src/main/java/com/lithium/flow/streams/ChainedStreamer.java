@@ -18,6 +18,9 @@ package com.lithium.flow.streams;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.lithium.flow.io.DataIo;
+
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -30,20 +33,35 @@ import com.google.common.collect.ImmutableList;
 /**
  * Chains a list of {@link Streamer} implementations together. Filters are layered on top of each other in the
  * ordered specified. The last filter is thus run first for both input and output streams.
- * 
+ * <p>
+ * With a positive pipeline depth, each filter runs on its own thread, passing chunks to the next through a
+ * {@link PipeOutputStream} or {@link PipeInputStream} of that depth, so filters overlap instead of running serially
+ * on the calling thread.
+ * <p>
+ * Closing the chain closes any streamers that are {@link Closeable}.
+ *
  * @author Matt Ayres
  */
-public class ChainedStreamer implements Streamer {
+public class ChainedStreamer implements Streamer, Closeable {
 	private final ImmutableList<Streamer> streamers;
+	private final int pipeDepth;
 
 	public ChainedStreamer(@Nonnull List<Streamer> streamers) {
+		this(streamers, 0);
+	}
+
+	public ChainedStreamer(@Nonnull List<Streamer> streamers, int pipeDepth) {
 		this.streamers = ImmutableList.copyOf(checkNotNull(streamers));
+		this.pipeDepth = pipeDepth;
 	}
 
 	@Override
 	@Nonnull
 	public OutputStream filterOut(@Nonnull OutputStream out, String name) throws IOException {
 		for (Streamer streamer : streamers) {
+			if (pipeDepth > 0) {
+				out = new PipeOutputStream(out, pipeDepth);
+			}
 			out = streamer.filterOut(out, name);
 		}
 		return out;
@@ -53,8 +71,29 @@ public class ChainedStreamer implements Streamer {
 	@Nonnull
 	public InputStream filterIn(@Nonnull InputStream in, String name) throws IOException {
 		for (Streamer filter : streamers) {
+			if (pipeDepth > 0) {
+				in = new PipeInputStream(in, pipeDepth);
+			}
 			in = filter.filterIn(in, name);
 		}
 		return in;
 	}
+
+	@Override
+	@Nonnull
+	public DataIo filterIo(@Nonnull DataIo io, String name) throws IOException {
+		for (Streamer filter : streamers) {
+			io = filter.filterIo(io, name);
+		}
+		return io;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Streamer streamer : streamers) {
+			if (streamer instanceof Closeable) {
+				((Closeable) streamer).close();
+			}
+		}
+	}
 }
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.lithium.flow.util.Unchecked;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * AES-GCM cipher over fixed size chunks. Each chunk is sealed independently with its own authentication tag, using
+ * a nonce of a random per-stream prefix and the chunk index, so chunks can be decrypted from any offset and in
+ * parallel. The final chunk is bound as such through its associated data to detect truncation.
+ * <p>
+ * Stream layout following the magic header: chunk size (int), nonce prefix (8 bytes), then the sealed chunks, each
+ * holding {@code chunkSize} bytes of plaintext plus a 16 byte tag, except for the final chunk which may be shorter.
+ *
+ * @author Matt Ayres
+ */
+public class ChunkCipher {
+	public static final int TAG_SIZE = 16;
+	public static final int PREFIX_SIZE = 8;
+	public static final int HEADER_SIZE = 4 + PREFIX_SIZE;
+	public static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+	private static final byte[] MIDDLE_AAD = { 0 };
+	private static final byte[] FINAL_AAD = { 1 };
+
+	private static final ThreadLocal<Cipher> CIPHERS = ThreadLocal.withInitial(() ->
+			Unchecked.get(() -> Cipher.getInstance("AES/GCM/NoPadding")));
+	private static final ThreadLocal<SecureRandom> RANDOMS = ThreadLocal.withInitial(SecureRandom::new);
+
+	private static final ExecutorService SERVICE = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors(),
+			new ThreadFactoryBuilder().setNameFormat("chunk-cipher-%d").setDaemon(true).build());
+
+	private final Key key;
+	private final int chunkSize;
+	private final byte[] prefix;
+	private final int threads;
+
+	public ChunkCipher(@Nonnull Key key, int chunkSize, @Nonnull byte[] prefix, int threads) {
+		checkArgument(chunkSize > 0 && chunkSize <= MAX_CHUNK_SIZE, "invalid chunk size: %s", chunkSize);
+		checkArgument(prefix.length == PREFIX_SIZE, "invalid prefix size: %s", prefix.length);
+		this.key = checkNotNull(key);
+		this.chunkSize = chunkSize;
+		this.prefix = prefix.clone();
+		this.threads = Math.max(1, threads);
+	}
+
+	@Nonnull
+	public static ChunkCipher create(@Nonnull Key key, int chunkSize, int threads) {
+		byte[] prefix = new byte[PREFIX_SIZE];
+		nextBytes(prefix);
+		return new ChunkCipher(key, chunkSize, prefix, threads);
+	}
+
+	@Nonnull
+	public static ChunkCipher readHeader(@Nonnull InputStream in, @Nonnull Key key, int threads) throws IOException {
+		DataInputStream dataIn = new DataInputStream(in);
+		int chunkSize = dataIn.readInt();
+		if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+			throw new IOException("invalid chunk size: " + chunkSize);
+		}
+
+		byte[] prefix = new byte[PREFIX_SIZE];
+		dataIn.readFully(prefix);
+		return new ChunkCipher(key, chunkSize, prefix, threads);
+	}
+
+	public void writeHeader(@Nonnull OutputStream out) throws IOException {
+		DataOutputStream dataOut = new DataOutputStream(out);
+		dataOut.writeInt(chunkSize);
+		dataOut.write(prefix);
+	}
+
+	static void nextBytes(@Nonnull byte[] bytes) {
+		RANDOMS.get().nextBytes(bytes);
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public int getSealedSize() {
+		return chunkSize + TAG_SIZE;
+	}
+
+	/**
+	 * Seals {@code len} bytes of plaintext as consecutive chunks starting at {@code index}.
+	 *
+	 * @return the number of sealed bytes written to {@code out}.
+	 */
+	public int encrypt(long index, @Nonnull byte[] in, int len, boolean last, @Nonnull byte[] out)
+			throws IOException {
+		int chunks = Math.max(1, (len + chunkSize - 1) / chunkSize);
+		run(chunks, i -> {
+			int inOff = i * chunkSize;
+			int inLen = Math.min(chunkSize, len - inOff);
+			crypt(Cipher.ENCRYPT_MODE, index + i, last && i == chunks - 1, in, inOff, inLen, out, i * getSealedSize());
+		});
+		return len + chunks * TAG_SIZE;
+	}
+
+	/**
+	 * Opens {@code len} bytes of sealed chunks starting at {@code index}.
+	 *
+	 * @return the number of plaintext bytes written to {@code out}.
+	 */
+	public int decrypt(long index, @Nonnull byte[] in, int len, boolean last, @Nonnull byte[] out)
+			throws IOException {
+		int sealedSize = getSealedSize();
+		int chunks = Math.max(1, (len + sealedSize - 1) / sealedSize);
+		if (len - (chunks - 1) * sealedSize < TAG_SIZE) {
+			throw new IOException("truncated chunk: " + (index + chunks - 1));
+		}
+
+		run(chunks, i -> {
+			int inOff = i * sealedSize;
+			int inLen = Math.min(sealedSize, len - inOff);
+			crypt(Cipher.DECRYPT_MODE, index + i, last && i == chunks - 1, in, inOff, inLen, out, i * chunkSize);
+		});
+		return len - chunks * TAG_SIZE;
+	}
+
+	private void crypt(int mode, long index, boolean last, @Nonnull byte[] in, int inOff, int inLen,
+			@Nonnull byte[] out, int outOff) throws IOException {
+		if (index >>> 32 != 0) {
+			throw new IOException("too many chunks: " + index);
+		}
+
+		byte[] nonce = ByteBuffer.allocate(PREFIX_SIZE + 4).put(prefix).putInt((int) index).array();
+		try {
+			Cipher cipher = CIPHERS.get();
+			cipher.init(mode, key, new GCMParameterSpec(TAG_SIZE * 8, nonce));
+			cipher.updateAAD(last ? FINAL_AAD : MIDDLE_AAD);
+			cipher.doFinal(in, inOff, inLen, out, outOff);
+		} catch (AEADBadTagException e) {
+			throw new IOException("chunk failed authentication: " + index, e);
+		} catch (GeneralSecurityException e) {
+			throw new IOException("chunk crypt failed: " + index, e);
+		}
+	}
+
+	private void run(int chunks, @Nonnull ChunkTask task) throws IOException {
+		if (threads == 1 || chunks == 1) {
+			for (int i = 0; i < chunks; i++) {
+				task.run(i);
+			}
+			return;
+		}
+
+		List<Future<Void>> futures = new ArrayList<>(chunks);
+		for (int i = 0; i < chunks; i++) {
+			int chunk = i;
+			Callable<Void> callable = () -> {
+				task.run(chunk);
+				return null;
+			};
+			futures.add(SERVICE.submit(callable));
+		}
+
+		try {
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	private interface ChunkTask {
+		void run(int chunk) throws IOException;
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.lithium.flow.io.AbstractDataIo;
+import com.lithium.flow.io.DataIo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Read-only random access over bytes sealed by {@link ChunkCryptOutputStream}. Only the chunks covering the file
+ * pointer are read and opened, a batch of up to {@link ChunkCipher#getThreads()} at a time.
+ *
+ * @author Matt Ayres
+ */
+public class ChunkCryptDataIo extends AbstractDataIo {
+	private final ChunkView view;
+
+	public ChunkCryptDataIo(@Nonnull DataIo io, @Nonnull ChunkCipher cipher, long start) throws IOException {
+		this(new ChunkView(io, cipher, start));
+	}
+
+	private ChunkCryptDataIo(@Nonnull ChunkView view) {
+		super(new DataInputStream(view), new DataOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("encrypted data is read only");
+			}
+		}));
+		this.view = view;
+	}
+
+	@Override
+	public long getFilePointer() {
+		return view.fp;
+	}
+
+	@Override
+	public void seek(long pos) throws IOException {
+		if (pos < 0) {
+			throw new IOException("negative seek: " + pos);
+		}
+		view.fp = pos;
+	}
+
+	@Override
+	public long length() {
+		return view.length;
+	}
+
+	@Override
+	public void close() throws IOException {
+		view.io.close();
+	}
+
+	private static class ChunkView extends InputStream {
+		private final DataIo io;
+		private final ChunkCipher cipher;
+		private final long start;
+		private final long chunks;
+		private final long length;
+		private final byte[] sealed;
+		private final byte[] plain;
+		private long firstChunk = -1;
+		private int limit;
+		private long fp;
+
+		private ChunkView(@Nonnull DataIo io, @Nonnull ChunkCipher cipher, long start) throws IOException {
+			this.io = checkNotNull(io);
+			this.cipher = checkNotNull(cipher);
+			this.start = start;
+
+			long body = io.length() - start;
+			int sealedSize = cipher.getSealedSize();
+			chunks = Math.max(1, (body + sealedSize - 1) / sealedSize);
+			length = body - chunks * ChunkCipher.TAG_SIZE;
+			if (length < 0) {
+				throw new IOException("missing final chunk");
+			}
+
+			sealed = new byte[cipher.getThreads() * sealedSize];
+			plain = new byte[cipher.getThreads() * cipher.getChunkSize()];
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+			if (fp >= length) {
+				return -1;
+			}
+
+			long chunk = fp / cipher.getChunkSize();
+			int threads = cipher.getThreads();
+			if (firstChunk == -1 || chunk < firstChunk || chunk >= firstChunk + threads) {
+				load(chunk);
+			}
+
+			int pos = (int) (fp - firstChunk * cipher.getChunkSize());
+			int count = Math.min(len, limit - pos);
+			System.arraycopy(plain, pos, b, off, count);
+			fp += count;
+			return count;
+		}
+
+		@Override
+		public long skip(long n) {
+			long count = Math.max(0, Math.min(n, length - fp));
+			fp += count;
+			return count;
+		}
+
+		private void load(long chunk) throws IOException {
+			int count = (int) Math.min(cipher.getThreads(), chunks - chunk);
+			long offset = start + chunk * cipher.getSealedSize();
+			int len = (int) Math.min((long) count * cipher.getSealedSize(), io.length() - offset);
+
+			firstChunk = -1;
+			io.seek(offset);
+			io.readFully(sealed, 0, len);
+			limit = cipher.decrypt(chunk, sealed, len, chunk + count == chunks, plain);
+			firstChunk = chunk;
+		}
+	}
+}
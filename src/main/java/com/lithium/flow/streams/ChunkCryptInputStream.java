@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Input stream opening bytes sealed by {@link ChunkCryptOutputStream}. A batch of up to
+ * {@link ChunkCipher#getThreads()} chunks is read at a time so that chunks can be opened in parallel.
+ *
+ * @author Matt Ayres
+ */
+public class ChunkCryptInputStream extends InputStream {
+	private final InputStream in;
+	private final ChunkCipher cipher;
+	private final byte[] sealed;
+	private final byte[] plain;
+	private int pos;
+	private int limit;
+	private long index;
+	private int carry = -1;
+	private boolean eof;
+
+	public ChunkCryptInputStream(@Nonnull InputStream in, @Nonnull ChunkCipher cipher) {
+		this.in = checkNotNull(in);
+		this.cipher = checkNotNull(cipher);
+		sealed = new byte[cipher.getThreads() * cipher.getSealedSize()];
+		plain = new byte[cipher.getThreads() * cipher.getChunkSize()];
+	}
+
+	@Override
+	public int read() throws IOException {
+		while (pos == limit) {
+			if (!fill()) {
+				return -1;
+			}
+		}
+		return plain[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		while (pos == limit) {
+			if (!fill()) {
+				return -1;
+			}
+		}
+
+		int count = Math.min(len, limit - pos);
+		System.arraycopy(plain, pos, b, off, count);
+		pos += count;
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return limit - pos;
+	}
+
+	private boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+
+		int len = 0;
+		if (carry != -1) {
+			sealed[len++] = (byte) carry;
+			carry = -1;
+		}
+		len += IOUtils.read(in, sealed, len, sealed.length - len);
+
+		if (len < sealed.length || (carry = in.read()) == -1) {
+			eof = true;
+		}
+
+		if (len == 0) {
+			throw new IOException("missing final chunk: " + index);
+		}
+
+		limit = cipher.decrypt(index, sealed, len, eof, plain);
+		index += (len + cipher.getSealedSize() - 1) / cipher.getSealedSize();
+		pos = 0;
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
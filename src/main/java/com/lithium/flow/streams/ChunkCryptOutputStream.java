@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Output stream sealing written bytes with a {@link ChunkCipher}. A batch of up to {@link ChunkCipher#getThreads()}
+ * chunks is buffered so that chunks can be sealed in parallel. Partial chunks are only written on {@link #close()},
+ * so {@link #flush()} does not push buffered bytes through.
+ *
+ * @author Matt Ayres
+ */
+public class ChunkCryptOutputStream extends OutputStream {
+	private final OutputStream out;
+	private final ChunkCipher cipher;
+	private final byte[] plain;
+	private final byte[] sealed;
+	private int pos;
+	private long index;
+	private boolean closed;
+
+	public ChunkCryptOutputStream(@Nonnull OutputStream out, @Nonnull ChunkCipher cipher) {
+		this.out = checkNotNull(out);
+		this.cipher = checkNotNull(cipher);
+		plain = new byte[cipher.getThreads() * cipher.getChunkSize()];
+		sealed = new byte[cipher.getThreads() * cipher.getSealedSize()];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (pos == plain.length) {
+			seal(false);
+		}
+		plain[pos++] = (byte) b;
+	}
+
+	@Override
+	public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (pos == plain.length) {
+				seal(false);
+			}
+
+			int count = Math.min(len, plain.length - pos);
+			System.arraycopy(b, off, plain, pos, count);
+			pos += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	private void seal(boolean last) throws IOException {
+		int len = cipher.encrypt(index, plain, pos, last, sealed);
+		out.write(sealed, 0, len);
+		index += pos / cipher.getChunkSize();
+		pos = 0;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			try (OutputStream closeOut = out) {
+				seal(true);
+			}
+		}
+	}
+}
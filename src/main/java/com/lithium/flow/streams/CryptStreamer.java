@@ -20,17 +20,19 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.lithium.flow.config.Config;
+import com.lithium.flow.config.exception.IllegalConfigException;
+import com.lithium.flow.io.DataIo;
 import com.lithium.flow.key.KeySource;
 import com.lithium.flow.replacer.NoOpStringReplacer;
 import com.lithium.flow.replacer.RegexStringReplacer;
 import com.lithium.flow.replacer.StringReplacer;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.GeneralSecurityException;
 import java.security.Key;
-import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
 import java.util.Arrays;
 
@@ -43,13 +45,22 @@ import javax.crypto.spec.IvParameterSpec;
 
 /**
  * Filter to apply encryption on output and decryption on input.
+ * <p>
+ * With {@code crypt.mode=gcm} output is written in the chunked format of {@link ChunkCipher}, which supports
+ * random access through {@link #filterIo(DataIo, String)} and parallel crypt with {@code crypt.threads}. Input in
+ * either format is detected by its header. Random access to input in the default CBC format, including any CBC layer
+ * under a chunked one, is not supported.
  *
  * @author Matt Ayres
  */
 public class CryptStreamer implements Streamer {
 	private final KeySource keySource;
 	private final byte[] header;
+	private final byte[] chunkHeader;
 	private final String cipherName;
+	private final boolean chunked;
+	private final int chunkSize;
+	private final int threads;
 	private final StringReplacer replacer;
 
 	public CryptStreamer(@Nonnull Config config, @Nonnull KeySource keySource) {
@@ -57,7 +68,16 @@ public class CryptStreamer implements Streamer {
 		checkNotNull(keySource);
 
 		header = config.getString("crypt.header", "LiAESv01").getBytes();
+		chunkHeader = config.getString("crypt.chunk.header", "LiAESv02").getBytes();
+		checkArgument(header.length == chunkHeader.length, "crypt.header and crypt.chunk.header lengths differ");
 		cipherName = config.getString("crypt.cipher", "AES/CBC/PKCS5Padding");
+		String mode = config.getString("crypt.mode", "cbc");
+		if (!mode.equals("cbc") && !mode.equals("gcm")) {
+			throw new IllegalConfigException("crypt.mode", mode, "cbc|gcm", null);
+		}
+		chunked = mode.equals("gcm");
+		chunkSize = config.getInt("crypt.chunk.size", 65536);
+		threads = config.getInt("crypt.threads", 1);
 		if (config.containsKey("crypt.regex")) {
 			replacer = new RegexStringReplacer(config.getString("crypt.regex"),
 					config.getString("crypt.replacement", "$1"));
@@ -84,11 +104,18 @@ public class CryptStreamer implements Streamer {
 	@Nonnull
 	private OutputStream encryptOut(@Nonnull OutputStream out, @Nonnull Key key)
 			throws IOException, GeneralSecurityException {
+		if (chunked) {
+			out.write(chunkHeader);
+			ChunkCipher chunkCipher = ChunkCipher.create(key, chunkSize, threads);
+			chunkCipher.writeHeader(out);
+			return new ChunkCryptOutputStream(out, chunkCipher);
+		}
+
 		out.write(header);
 
 		Cipher cipher = Cipher.getInstance(cipherName);
 		byte[] iv = new byte[cipher.getBlockSize()];
-		new SecureRandom().nextBytes(iv);
+		ChunkCipher.nextBytes(iv);
 		AlgorithmParameterSpec spec = new IvParameterSpec(iv);
 
 		out.write(iv);
@@ -120,6 +147,10 @@ public class CryptStreamer implements Streamer {
 			throw new IOException("read didn't complete for header");
 		}
 
+		if (Arrays.equals(chunkHeader, inHeader)) {
+			return new ChunkCryptInputStream(in, ChunkCipher.readHeader(in, key, threads));
+		}
+
 		if (!Arrays.equals(header, inHeader)) {
 			throw new IOException("unexpected header: '" + new String(inHeader) + "', expected: '"
 					+ new String(header) + "'");
@@ -135,4 +166,40 @@ public class CryptStreamer implements Streamer {
 		cipher.init(Cipher.DECRYPT_MODE, key, spec);
 		return new CipherInputStream(in, cipher);
 	}
+
+	@Override
+	@Nonnull
+	public DataIo filterIo(@Nonnull DataIo io, @Nullable String name) throws IOException {
+		checkArgument(name != null, "name must be specified for key lookup");
+
+		for (Key key : keySource.getKeys(replacer.replace(name))) {
+			io = decryptIo(io, key);
+			if (io == null) {
+				// returning the raw bytes would hand out ciphertext as if it were plaintext
+				throw new UnsupportedOperationException("random access not supported for cbc input: " + name);
+			}
+		}
+		return io;
+	}
+
+	@Nullable
+	private DataIo decryptIo(@Nonnull DataIo io, @Nonnull Key key) throws IOException {
+		byte[] inHeader = new byte[chunkHeader.length];
+		io.seek(0);
+		io.readFully(inHeader);
+
+		if (Arrays.equals(header, inHeader)) {
+			return null;
+		}
+
+		if (!Arrays.equals(chunkHeader, inHeader)) {
+			throw new IOException("unexpected header for random access: '" + new String(inHeader) + "', expected: '"
+					+ new String(chunkHeader) + "'");
+		}
+
+		byte[] cipherHeader = new byte[ChunkCipher.HEADER_SIZE];
+		io.readFully(cipherHeader);
+		ChunkCipher chunkCipher = ChunkCipher.readHeader(new ByteArrayInputStream(cipherHeader), key, threads);
+		return new ChunkCryptDataIo(io, chunkCipher, chunkHeader.length + ChunkCipher.HEADER_SIZE);
+	}
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static com.lithium.flow.util.PrintUtils.bytes;
+
+import com.lithium.flow.io.BufferPool;
+import com.lithium.flow.util.Logs;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+
+/**
+ * @author Matt Ayres
+ */
+public class LogMetricsReporter implements MetricsReporter {
+	private static final Logger log = Logs.getLogger();
+
+	@Override
+	public void report(@Nonnull String name, long interval, @Nonnull List<StreamMetrics> metrics) {
+		for (StreamMetrics m : metrics) {
+			log.info("{} {}: {} streams, read {} ({}/s, {}ms blocked), wrote {} ({}/s, {}ms blocked)",
+					m.getStage(), m.getPrefix(), m.getStreams(),
+					bytes(m.getReadBytes()), bytes(m.getReadBytes() * 1000 / Math.max(1, interval)),
+					m.getReadNanos() / 1000000,
+					bytes(m.getWriteBytes()), bytes(m.getWriteBytes() * 1000 / Math.max(1, interval)),
+					m.getWriteNanos() / 1000000);
+		}
+	}
+
+	@Override
+	public void report(@Nonnull BufferPool pool) {
+		log.info("{}", pool);
+	}
+}
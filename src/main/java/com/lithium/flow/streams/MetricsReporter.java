@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import com.lithium.flow.config.Config;
+import com.lithium.flow.config.exception.IllegalConfigException;
+import com.lithium.flow.io.BufferPool;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives the {@link StreamMetrics} of a {@link MetricsStreamer} at the end of each reporting interval.
+ *
+ * @author Matt Ayres
+ */
+public interface MetricsReporter {
+	void report(@Nonnull String name, long interval, @Nonnull List<StreamMetrics> metrics);
+
+	/**
+	 * Receives a {@link BufferPool} used by a {@link BufferedStreamer} at the end of each reporting interval, to
+	 * read its counters from.
+	 */
+	default void report(@Nonnull BufferPool pool) {
+	}
+
+	@Nonnull
+	static MetricsReporter build(@Nonnull Config config) {
+		String reporter = config.getString("metrics.reporter", "log");
+		switch (reporter) {
+			case "none":
+				return (name, interval, metrics) -> {
+				};
+
+			case "log":
+				return new LogMetricsReporter();
+
+			default:
+				throw new IllegalConfigException("metrics.reporter", reporter, "none|log", null);
+		}
+	}
+}
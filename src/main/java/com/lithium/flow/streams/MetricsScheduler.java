@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.lithium.flow.io.BufferPool;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Shared daemon thread running the periodic reports of streamers, so that building filers doesn't start threads.
+ *
+ * @author Matt Ayres
+ */
+final class MetricsScheduler {
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setNameFormat("streamer-metrics-%d").setDaemon(true).build());
+	private static final Map<BufferPool, ScheduledFuture<?>> POOLS = new ConcurrentHashMap<>();
+
+	private MetricsScheduler() {
+	}
+
+	@Nonnull
+	static ScheduledFuture<?> schedule(@Nonnull Runnable runnable, long interval) {
+		checkNotNull(runnable);
+		return SCHEDULER.scheduleAtFixedRate(runnable, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Report the counters of a pool at an interval, unless they're already being reported. Pools are shared, so
+	 * this happens once per pool no matter how many streamers use it.
+	 */
+	static void schedulePool(@Nonnull BufferPool pool, @Nonnull MetricsReporter reporter, long interval) {
+		checkNotNull(pool);
+		checkNotNull(reporter);
+		POOLS.computeIfAbsent(pool, key -> schedule(() -> reporter.report(pool), interval));
+	}
+}
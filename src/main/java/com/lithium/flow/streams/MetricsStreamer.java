@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.lithium.flow.config.Config;
+import com.lithium.flow.io.DataIo;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Filter to count bytes and time blocked in reads and writes, grouped by the first {@code metrics.depth} path
+ * segments, reported under the stage {@code metrics.name} every {@code metrics.interval} to a
+ * {@link MetricsReporter}. At most {@code metrics.prefixes} path prefixes are tracked, streams under any others are
+ * counted under {@code *}. Reports run on a shared thread until the streamer is closed.
+ *
+ * @author Matt Ayres
+ */
+public class MetricsStreamer implements Streamer, Closeable {
+	private final String name;
+	private final int depth;
+	private final MetricsReporter reporter;
+	private final int maxPrefixes;
+	private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+	private final ScheduledFuture<?> future;
+	private long lastTime = System.currentTimeMillis();
+
+	public MetricsStreamer(@Nonnull Config config) {
+		this(config, MetricsReporter.build(config));
+	}
+
+	public MetricsStreamer(@Nonnull Config config, @Nonnull MetricsReporter reporter) {
+		checkNotNull(config);
+		this.reporter = checkNotNull(reporter);
+		name = config.getString("metrics.name", "metrics");
+		depth = config.getInt("metrics.depth", 1);
+		maxPrefixes = config.getInt("metrics.prefixes", 1000);
+
+		long interval = config.getTime("metrics.interval", "1m");
+		future = interval > 0 ? MetricsScheduler.schedule(this::report, interval) : null;
+	}
+
+	@Override
+	@Nonnull
+	public OutputStream filterOut(@Nonnull OutputStream out, @Nullable String name) {
+		Counters counter = getCounters(name);
+		counter.streams.increment();
+
+		return new FilterOutputStream(out) {
+			@Override
+			public void write(int b) throws IOException {
+				long time = System.nanoTime();
+				out.write(b);
+				counter.writeNanos.add(System.nanoTime() - time);
+				counter.writeBytes.increment();
+			}
+
+			@Override
+			public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+				long time = System.nanoTime();
+				out.write(b, off, len);
+				counter.writeNanos.add(System.nanoTime() - time);
+				counter.writeBytes.add(len);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				long time = System.nanoTime();
+				out.flush();
+				counter.writeNanos.add(System.nanoTime() - time);
+			}
+
+			@Override
+			public void close() throws IOException {
+				long time = System.nanoTime();
+				out.close();
+				counter.writeNanos.add(System.nanoTime() - time);
+			}
+		};
+	}
+
+	@Override
+	@Nonnull
+	public InputStream filterIn(@Nonnull InputStream in, @Nullable String name) {
+		Counters counter = getCounters(name);
+		counter.streams.increment();
+
+		return new FilterInputStream(in) {
+			@Override
+			public int read() throws IOException {
+				long time = System.nanoTime();
+				int read = in.read();
+				counter.readNanos.add(System.nanoTime() - time);
+				if (read != -1) {
+					counter.readBytes.increment();
+				}
+				return read;
+			}
+
+			@Override
+			public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+				long time = System.nanoTime();
+				int read = in.read(b, off, len);
+				counter.readNanos.add(System.nanoTime() - time);
+				if (read > 0) {
+					counter.readBytes.add(read);
+				}
+				return read;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				long time = System.nanoTime();
+				long skipped = in.skip(n);
+				counter.readNanos.add(System.nanoTime() - time);
+				counter.readBytes.add(skipped);
+				return skipped;
+			}
+		};
+	}
+
+	@Nonnull
+	private Counters getCounters(@Nullable String path) {
+		String prefix = getPrefix(path);
+		Counters counter = counters.get(prefix);
+		if (counter == null) {
+			String key = counters.size() < maxPrefixes ? prefix : "*";
+			counter = counters.computeIfAbsent(key, Counters::new);
+		}
+		return counter;
+	}
+
+	@Nonnull
+	private String getPrefix(@Nullable String path) {
+		if (path == null) {
+			return "-";
+		}
+
+		int index = 0;
+		for (int i = 0; i < depth; i++) {
+			while (index < path.length() && path.charAt(index) == '/') {
+				index++;
+			}
+			int next = path.indexOf('/', index);
+			if (next == -1) {
+				return path;
+			}
+			index = next;
+		}
+		return index == 0 ? "/" : path.substring(0, index);
+	}
+
+	@Nonnull
+	public synchronized List<StreamMetrics> snapshot() {
+		List<StreamMetrics> metrics = new ArrayList<>();
+		for (Counters counter : counters.values()) {
+			StreamMetrics metric = counter.snapshot(name);
+			if (!metric.isEmpty()) {
+				metrics.add(metric);
+			}
+		}
+		return metrics;
+	}
+
+	public synchronized void report() {
+		long time = System.currentTimeMillis();
+		List<StreamMetrics> metrics = snapshot();
+		if (!metrics.isEmpty()) {
+			reporter.report(name, time - lastTime, metrics);
+		}
+		lastTime = time;
+	}
+
+	@Override
+	public void close() {
+		if (future != null) {
+			future.cancel(false);
+		}
+		report();
+	}
+
+	private static class Counters {
+		private final String prefix;
+		private final LongAdder streams = new LongAdder();
+		private final LongAdder readBytes = new LongAdder();
+		private final LongAdder readNanos = new LongAdder();
+		private final LongAdder writeBytes = new LongAdder();
+		private final LongAdder writeNanos = new LongAdder();
+
+		private Counters(@Nonnull String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Nonnull
+		private StreamMetrics snapshot(@Nonnull String stage) {
+			return new StreamMetrics(prefix, stage, streams.sumThenReset(),
+					readBytes.sumThenReset(), readNanos.sumThenReset(),
+					writeBytes.sumThenReset(), writeNanos.sumThenReset());
+		}
+	}
+
+	@Override
+	@Nonnull
+	public DataIo filterIo(@Nonnull DataIo io, @Nullable String name) {
+		return io;
+	}
+}
@@ -16,6 +16,8 @@
 
 package com.lithium.flow.streams;
 
+import com.lithium.flow.io.DataIo;
+
 import java.io.InputStream;
 import java.io.OutputStream;
 
@@ -37,4 +39,10 @@ public class NoOpStreamer implements Streamer {
 	public InputStream filterIn(@Nonnull InputStream in, @Nullable String name) {
 		return in;
 	}
+
+	@Override
+	@Nonnull
+	public DataIo filterIo(@Nonnull DataIo io, @Nullable String name) {
+		return io;
+	}
 }
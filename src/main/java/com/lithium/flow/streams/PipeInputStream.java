@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.lithium.flow.util.Daemons;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Input stream reading ahead from the delegate on a pump thread, passing pooled chunks through a bounded queue.
+ * The pump stops reading when the queue is full. {@link #close()} stops the pump and closes the delegate, so that
+ * a pump blocked in a read of the delegate is woken up too. When no thread of the shared {@link Daemons} pool is
+ * free, reads go straight to the delegate instead.
+ *
+ * @author Matt Ayres
+ */
+public class PipeInputStream extends InputStream {
+	private final InputStream in;
+	private final BlockingQueue<Chunk> queue;
+	private final boolean direct;
+	private Thread pumpThread;
+	private volatile boolean closed;
+	private Chunk chunk;
+	private int pos;
+	private boolean eof;
+
+	public PipeInputStream(@Nonnull InputStream in, int depth) {
+		checkArgument(depth > 0, "invalid depth: %s", depth);
+		this.in = checkNotNull(in);
+		queue = new ArrayBlockingQueue<>(depth);
+		direct = Pipes.pump(this::pump) == null;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (direct) {
+			return in.read();
+		}
+		return next() ? chunk.bytes[pos++] & 0xff : -1;
+	}
+
+	@Override
+	public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+		if (direct) {
+			return in.read(b, off, len);
+		} else if (len == 0) {
+			return 0;
+		} else if (!next()) {
+			return -1;
+		}
+
+		int count = Math.min(len, chunk.len - pos);
+		System.arraycopy(chunk.bytes, pos, b, off, count);
+		pos += count;
+		return count;
+	}
+
+	@Override
+	public int available() throws IOException {
+		if (direct) {
+			return in.available();
+		}
+		return chunk == null ? 0 : chunk.len - pos;
+	}
+
+	private boolean next() throws IOException {
+		while (chunk == null || pos == chunk.len) {
+			if (eof) {
+				return false;
+			}
+
+			if (chunk != null) {
+				Pipes.release(chunk.bytes);
+				chunk = null;
+			}
+
+			Chunk next;
+			try {
+				next = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+
+			if (next.exception != null) {
+				eof = true;
+				throw next.exception;
+			} else if (next.len == -1) {
+				Pipes.release(next.bytes);
+				eof = true;
+			} else {
+				chunk = next;
+				pos = 0;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+
+			if (pumpThread != null) {
+				pumpThread.interrupt();
+			}
+		}
+
+		eof = true;
+		if (chunk != null) {
+			Pipes.release(chunk.bytes);
+			chunk = null;
+		}
+		releaseQueued();
+		in.close();
+	}
+
+	private void releaseQueued() {
+		List<Chunk> chunks = new ArrayList<>();
+		queue.drainTo(chunks);
+		chunks.stream().filter(next -> next.bytes != null).forEach(next -> Pipes.release(next.bytes));
+	}
+
+	private void pump() {
+		synchronized (this) {
+			pumpThread = Thread.currentThread();
+		}
+
+		try (InputStream closeIn = in) {
+			int len = 0;
+			while (len != -1 && !closed) {
+				byte[] bytes = Pipes.lease();
+				boolean queued = false;
+				try {
+					len = closeIn.read(bytes);
+					queue.put(new Chunk(bytes, len, null));
+					queued = true;
+				} finally {
+					if (!queued) {
+						Pipes.release(bytes);
+					}
+				}
+			}
+		} catch (IOException e) {
+			if (!closed) {
+				putQuietly(new Chunk(null, -1, e));
+			}
+		} catch (InterruptedException e) {
+			//
+		} finally {
+			synchronized (this) {
+				pumpThread = null;
+				Thread.interrupted();
+			}
+		}
+
+		if (closed) {
+			releaseQueued();
+		}
+	}
+
+	private void putQuietly(@Nonnull Chunk next) {
+		try {
+			queue.put(next);
+		} catch (InterruptedException e) {
+			//
+		}
+	}
+
+	private static class Chunk {
+		private final byte[] bytes;
+		private final int len;
+		private final IOException exception;
+
+		private Chunk(@Nullable byte[] bytes, int len, @Nullable IOException exception) {
+			this.bytes = bytes;
+			this.len = len;
+			this.exception = exception;
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.lithium.flow.util.Daemons;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Output stream handing off written bytes in pooled chunks through a bounded queue to a pump thread, which writes
+ * them to the delegate. Writers block when the queue is full. {@link #flush()} is passed along without waiting,
+ * while {@link #close()} waits for the pump to finish and closes the delegate. The pump also closes the delegate
+ * and exits on the first failure, which is then thrown to the writer. Writing after close fails, since the current
+ * chunk has gone back to the pool by then. When no thread of the shared {@link Daemons} pool is free, writes go
+ * straight to the delegate instead.
+ *
+ * @author Matt Ayres
+ */
+public class PipeOutputStream extends OutputStream {
+	private static final Chunk FLUSH = new Chunk(new byte[0], 0);
+	private static final Chunk CLOSE = new Chunk(new byte[0], 0);
+
+	private final OutputStream out;
+	private final BlockingQueue<Chunk> queue;
+	private final Future<?> future;
+	private volatile IOException exception;
+	private byte[] chunk;
+	private int pos;
+	private boolean closed;
+
+	public PipeOutputStream(@Nonnull OutputStream out, int depth) {
+		checkArgument(depth > 0, "invalid depth: %s", depth);
+		this.out = checkNotNull(out);
+		queue = new ArrayBlockingQueue<>(depth);
+		future = Pipes.pump(this::pump);
+		if (future != null) {
+			chunk = Pipes.lease();
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		checkOpen();
+		if (future == null) {
+			out.write(b);
+			return;
+		} else if (pos == chunk.length) {
+			handoff();
+		}
+		chunk[pos++] = (byte) b;
+	}
+
+	@Override
+	public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		if (future == null) {
+			out.write(b, off, len);
+			return;
+		}
+
+		while (len > 0) {
+			if (pos == chunk.length) {
+				handoff();
+			}
+
+			int count = Math.min(len, chunk.length - pos);
+			System.arraycopy(b, off, chunk, pos, count);
+			pos += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		checkOpen();
+		if (future == null) {
+			out.flush();
+			return;
+		}
+
+		handoff();
+		put(FLUSH);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		if (future == null) {
+			out.close();
+			return;
+		}
+
+		try {
+			handoff();
+		} finally {
+			Pipes.release(chunk);
+			chunk = null;
+			try {
+				offer(CLOSE);
+			} catch (InterruptedException e) {
+				future.cancel(true);
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+
+		if (exception != null) {
+			throw new IOException("pipe failed", exception);
+		}
+	}
+
+	private void handoff() throws IOException {
+		if (pos > 0) {
+			put(new Chunk(chunk, pos));
+			chunk = Pipes.lease();
+			pos = 0;
+		}
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IOException("closed");
+		}
+	}
+
+	private void put(@Nonnull Chunk next) throws IOException {
+		try {
+			if (!offer(next)) {
+				throw new IOException("pipe failed", exception);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	private boolean offer(@Nonnull Chunk next) throws InterruptedException {
+		// a failed pump stops taking chunks, so don't wait on it forever
+		while (exception == null) {
+			if (queue.offer(next, 100, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void pump() {
+		try (OutputStream closeOut = out) {
+			Chunk next;
+			while ((next = queue.take()) != CLOSE) {
+				if (next == FLUSH) {
+					closeOut.flush();
+				} else {
+					closeOut.write(next.bytes, 0, next.len);
+					Pipes.release(next.bytes);
+				}
+			}
+		} catch (IOException e) {
+			exception = e;
+		} catch (InterruptedException e) {
+			exception = new InterruptedIOException();
+		}
+
+		if (exception != null) {
+			List<Chunk> chunks = new ArrayList<>();
+			queue.drainTo(chunks);
+			chunks.stream().filter(next -> next.len > 0).forEach(next -> Pipes.release(next.bytes));
+		}
+	}
+
+	private static class Chunk {
+		private final byte[] bytes;
+		private final int len;
+
+		private Chunk(@Nonnull byte[] bytes, int len) {
+			this.bytes = bytes;
+			this.len = len;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import com.lithium.flow.io.BufferPool;
+import com.lithium.flow.util.Daemons;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Pump threads from the shared {@link Daemons} pool and chunks from the heap {@link BufferPool} for
+ * {@link PipeInputStream} and {@link PipeOutputStream}.
+ *
+ * @author Matt Ayres
+ */
+final class Pipes {
+	static final int CHUNK_SIZE = 65536;
+
+	private Pipes() {
+	}
+
+	/**
+	 * @return the started pump, or null if no daemon thread is free to run it
+	 */
+	@Nullable
+	static Future<?> pump(@Nonnull Runnable pump) {
+		try {
+			return Daemons.submit(Executors.callable(pump));
+		} catch (RejectedExecutionException e) {
+			return null;
+		}
+	}
+
+	@Nonnull
+	static byte[] lease() {
+		return BufferPool.heap().leaseArray(CHUNK_SIZE);
+	}
+
+	static void release(@Nonnull byte[] chunk) {
+		BufferPool.heap().releaseArray(chunk);
+	}
+}
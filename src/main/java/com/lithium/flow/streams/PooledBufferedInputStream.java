@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.lithium.flow.io.BufferPool;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Buffered input stream leasing its buffer from a {@link BufferPool} and giving it back on close.
+ * Mark and reset are not supported.
+ *
+ * @author Matt Ayres
+ */
+public class PooledBufferedInputStream extends FilterInputStream {
+	private final BufferPool pool;
+	private byte[] buf;
+	private int pos;
+	private int count;
+
+	public PooledBufferedInputStream(@Nonnull InputStream in, @Nonnull BufferPool pool, int size) {
+		super(checkNotNull(in));
+		this.pool = checkNotNull(pool);
+		buf = pool.leaseArray(size);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (pos == count && !fill()) {
+			return -1;
+		}
+		return buf[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		if (len == 0) {
+			return 0;
+		}
+
+		if (pos == count) {
+			if (len >= buf.length) {
+				return in.read(b, off, len);
+			} else if (!fill()) {
+				return -1;
+			}
+		}
+
+		int read = Math.min(len, count - pos);
+		System.arraycopy(buf, pos, b, off, read);
+		pos += read;
+		return read;
+	}
+
+	private boolean fill() throws IOException {
+		checkOpen();
+		int read = in.read(buf, 0, buf.length);
+		pos = 0;
+		count = Math.max(0, read);
+		return read > 0;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		checkOpen();
+		if (n <= 0) {
+			return 0;
+		}
+
+		int buffered = count - pos;
+		if (buffered == 0) {
+			return in.skip(n);
+		}
+
+		long skipped = Math.min(n, buffered);
+		pos += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		checkOpen();
+		int buffered = count - pos;
+		int available = in.available();
+		return buffered > Integer.MAX_VALUE - available ? Integer.MAX_VALUE : buffered + available;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void mark(int limit) {
+	}
+
+	@Override
+	public void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+
+	private void checkOpen() throws IOException {
+		if (buf == null) {
+			throw new IOException("stream closed");
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (buf != null) {
+			pool.releaseArray(buf);
+			buf = null;
+			pos = 0;
+			count = 0;
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.lithium.flow.io.BufferPool;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Buffered output stream leasing its buffer from a {@link BufferPool} and giving it back on close.
+ *
+ * @author Matt Ayres
+ */
+public class PooledBufferedOutputStream extends FilterOutputStream {
+	private final BufferPool pool;
+	private byte[] buf;
+	private int count;
+
+	public PooledBufferedOutputStream(@Nonnull OutputStream out, @Nonnull BufferPool pool, int size) {
+		super(checkNotNull(out));
+		this.pool = checkNotNull(pool);
+		buf = pool.leaseArray(size);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		checkOpen();
+		if (count == buf.length) {
+			flushBuffer();
+		}
+		buf[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(@Nonnull byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		if (len >= buf.length) {
+			flushBuffer();
+			out.write(b, off, len);
+			return;
+		}
+
+		if (len > buf.length - count) {
+			flushBuffer();
+		}
+		System.arraycopy(b, off, buf, count, len);
+		count += len;
+	}
+
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			out.write(buf, 0, count);
+			count = 0;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		checkOpen();
+		flushBuffer();
+		out.flush();
+	}
+
+	private void checkOpen() throws IOException {
+		if (buf == null) {
+			throw new IOException("stream closed");
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (buf != null) {
+			try (OutputStream closeOut = out) {
+				flushBuffer();
+			} finally {
+				pool.releaseArray(buf);
+				buf = null;
+			}
+		}
+	}
+}
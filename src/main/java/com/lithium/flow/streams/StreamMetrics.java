@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Stream counts over one reporting interval of a {@link MetricsStreamer}, for streams under a path prefix. The stage
+ * is the name of the streamer. Read and write times are the time blocked beneath the streamer.
+ *
+ * @author Matt Ayres
+ */
+public class StreamMetrics {
+	private final String prefix;
+	private final String stage;
+	private final long streams;
+	private final long readBytes;
+	private final long readNanos;
+	private final long writeBytes;
+	private final long writeNanos;
+
+	public StreamMetrics(@Nonnull String prefix, @Nonnull String stage, long streams,
+			long readBytes, long readNanos, long writeBytes, long writeNanos) {
+		this.prefix = checkNotNull(prefix);
+		this.stage = checkNotNull(stage);
+		this.streams = streams;
+		this.readBytes = readBytes;
+		this.readNanos = readNanos;
+		this.writeBytes = writeBytes;
+		this.writeNanos = writeNanos;
+	}
+
+	@Nonnull
+	public String getPrefix() {
+		return prefix;
+	}
+
+	@Nonnull
+	public String getStage() {
+		return stage;
+	}
+
+	public long getStreams() {
+		return streams;
+	}
+
+	public long getReadBytes() {
+		return readBytes;
+	}
+
+	public long getReadNanos() {
+		return readNanos;
+	}
+
+	public long getWriteBytes() {
+		return writeBytes;
+	}
+
+	public long getWriteNanos() {
+		return writeNanos;
+	}
+
+	public boolean isEmpty() {
+		return streams == 0 && readBytes == 0 && writeBytes == 0 && readNanos == 0 && writeNanos == 0;
+	}
+}
@@ -16,6 +16,8 @@
 
 package com.lithium.flow.streams;
 
+import com.lithium.flow.io.DataIo;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -46,4 +48,19 @@ public interface Streamer {
 	 */
 	@Nonnull
 	InputStream filterIn(@Nonnull InputStream in, @Nullable String name) throws IOException;
+
+	/**
+	 * Streamers that change bytes must override this to support random access, streamers that leave bytes as they
+	 * are can return the input unchanged.
+	 *
+	 * @param io the random access input to be manipulated, cannot be {@code null}.
+	 * @param name the name of stream, can be {@code null}.
+	 * @return the filtered random access input, never {@code null}.
+	 * @throws java.io.IOException if the filter initialization failed
+	 * @throws UnsupportedOperationException if random access isn't supported for the input.
+	 */
+	@Nonnull
+	default DataIo filterIo(@Nonnull DataIo io, @Nullable String name) throws IOException {
+		throw new UnsupportedOperationException("random access not supported by " + getClass().getSimpleName());
+	}
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lithium.flow.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+
+/**
+ * Concurrency limit that adapts to the backend with additive increase and multiplicative decrease. Each success
+ * while the limit is in use raises it by about one per round trip. A dropped call, such as a throttling error, or a
+ * latency above {@code tolerance} times the lowest recent latency cuts it by the backoff ratio, at most once per
+ * round trip.
+ * <p>
+ * Latencies are compared against a baseline kept per operation, since different calls to the same backend can take
+ * very different times. Calls whose duration depends on more than the backend, such as streaming a file, can
+ * release with {@link #onSuccess()} to count towards the limit without being sampled.
+ *
+ * @author Matt Ayres
+ */
+public class AdaptiveLimiter {
+	private static final Logger log = Logs.getLogger();
+	private static final int RTT_WINDOW = 1000;
+
+	private final double minLimit;
+	private final double maxLimit;
+	private final double backoff;
+	private final double tolerance;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	private double limit;
+	private int inFlight;
+	private long decreaseTime = System.nanoTime();
+	private final Map<String, Baseline> baselines = new TreeMap<>();
+
+	public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, double backoff, double tolerance) {
+		checkArgument(minLimit > 0 && minLimit <= initialLimit && initialLimit <= maxLimit,
+				"invalid limits: %s <= %s <= %s", minLimit, initialLimit, maxLimit);
+		checkArgument(backoff > 0 && backoff < 1, "backoff must be between 0 and 1: %s", backoff);
+		checkArgument(tolerance > 1, "tolerance must be greater than 1: %s", tolerance);
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.backoff = backoff;
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Blocks until a call may start.
+	 *
+	 * @return start time to pass to {@link #onSuccess(String, long)}, {@link #onDropped(long)} or
+	 * {@link #onIgnore()}
+	 */
+	public long acquire() throws InterruptedException {
+		lock.lock();
+		try {
+			while (inFlight >= (int) limit) {
+				available.await();
+			}
+			inFlight++;
+			return System.nanoTime();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void onSuccess(long startTime) {
+		onSuccess("", startTime);
+	}
+
+	/**
+	 * Releases a successful call, comparing its latency against the baseline for the operation.
+	 */
+	public void onSuccess(@Nonnull String operation, long startTime) {
+		checkNotNull(operation);
+		long rtt = System.nanoTime() - startTime;
+
+		lock.lock();
+		try {
+			Baseline baseline = baselines.computeIfAbsent(operation, op -> new Baseline());
+			if (baseline.sample(rtt) > tolerance * baseline.minRtt) {
+				decrease(startTime);
+			} else {
+				increase();
+			}
+			release();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Releases a successful call without sampling its latency.
+	 */
+	public void onSuccess() {
+		lock.lock();
+		try {
+			increase();
+			release();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void onDropped(long startTime) {
+		lock.lock();
+		try {
+			decrease(startTime);
+			release();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Releases a call whose outcome says nothing about the backend's capacity.
+	 */
+	public void onIgnore() {
+		lock.lock();
+		try {
+			release();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		lock.lock();
+		try {
+			StringBuilder sb = new StringBuilder();
+			sb.append("limit=").append((int) limit).append(" inFlight=").append(inFlight);
+			baselines.forEach((operation, baseline) -> sb.append(" minRtt")
+					.append(operation.isEmpty() ? "" : "." + operation)
+					.append("=").append(TimeUnit.NANOSECONDS.toMillis(baseline.minRtt)).append("ms"));
+			return sb.toString();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Cuts the limit at most once per round trip, ignoring calls that started before the last cut.
+	 */
+	private void decrease(long startTime) {
+		if (startTime - decreaseTime < 0) {
+			return;
+		}
+		decreaseTime = System.nanoTime();
+
+		double previous = limit;
+		limit = Math.max(minLimit, limit * backoff);
+		if ((int) previous != (int) limit) {
+			log.debug("decreased limit: {} -> {}", (int) previous, (int) limit);
+		}
+	}
+
+	private void increase() {
+		if (inFlight * 2 >= limit) {
+			limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+	}
+
+	private void release() {
+		inFlight--;
+		available.signalAll();
+	}
+
+	private static class Baseline {
+		private long minRtt = Long.MAX_VALUE;
+		private long nextMinRtt = Long.MAX_VALUE;
+		private int samples;
+
+		private long sample(long rtt) {
+			nextMinRtt = Math.min(nextMinRtt, rtt);
+			if (++samples >= RTT_WINDOW) {
+				// re-learn the baseline so it can rise again if the backend got slower for good
+				minRtt = nextMinRtt;
+				nextMinRtt = Long.MAX_VALUE;
+				samples = 0;
+			}
+			minRtt = Math.min(minRtt, rtt);
+			return rtt;
+		}
+	}
+}
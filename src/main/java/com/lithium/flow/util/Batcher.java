@@ -16,53 +16,133 @@
 
 package com.lithium.flow.util;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToLongFunction;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 /**
+ * Accumulates offered items into batches for consumers. Producers accumulate into stripes chosen by thread, so they
+ * only contend with producers on the same stripe. A batch is handed to consumers when it reaches the batch size or
+ * the maximum weight, or when it has lingered for the linger time. A consumer's {@link #poll} that times out takes a
+ * partial batch directly from a stripe instead.
+ * <p>
+ * Consumers may hand batches back with {@link #recycle(Batch)} once done with them to reuse their storage.
+ *
  * @author Pradeep Gollakota
  */
 public class Batcher<T> {
+	private static final int MAX_POOLED = 64;
 
 	private final Batch<T> POISON_PILL;
 	private final int batchSize;
 	private final BlockingQueue<Batch<T>> batchQueue;
-	private Batch<T> currentBatch;
-	private boolean finished;
+	private final Stripe<T>[] stripes;
+	private final Queue<Batch<T>> pool = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pooled = new AtomicInteger();
+	private final ReadWriteLock handoffLock = new ReentrantReadWriteLock();
+	private volatile long linger = -1;
+	private volatile ToLongFunction<T> weigher;
+	private volatile long maxWeight = Long.MAX_VALUE;
+	private volatile boolean finished;
 
 	public Batcher(int batchSize) {
 		this(batchSize, Integer.MAX_VALUE);
 	}
 
 	public Batcher(int batchSize, int maxNumBatches) {
+		this(batchSize, maxNumBatches, Runtime.getRuntime().availableProcessors());
+	}
+
+	@SuppressWarnings("unchecked")
+	public Batcher(int batchSize, int maxNumBatches, int stripes) {
+		checkArgument(batchSize > 0, "batchSize must be positive: %s", batchSize);
+		checkArgument(stripes > 0, "stripes must be positive: %s", stripes);
 		this.batchSize = batchSize;
-		this.currentBatch = new Batch<>(batchSize);
 		this.batchQueue = new LinkedBlockingQueue<>(maxNumBatches);
-		this.finished = false;
+		this.stripes = new Stripe[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new Stripe<>();
+		}
 		this.POISON_PILL = new Batch<>(0);
 	}
 
-	public synchronized void offer(@Nonnull T item) {
+	/**
+	 * @param linger milliseconds after its first item that a partial batch is handed to consumers, or -1 to wait
+	 *               until it is full
+	 */
+	@Nonnull
+	public Batcher<T> withLinger(long linger) {
+		this.linger = linger;
+		return this;
+	}
+
+	/**
+	 * Also hands a batch to consumers once the total weight of its items reaches {@code maxWeight}.
+	 */
+	@Nonnull
+	public Batcher<T> withWeigher(@Nonnull ToLongFunction<T> weigher, long maxWeight) {
+		checkArgument(maxWeight > 0, "maxWeight must be positive: %s", maxWeight);
+		this.weigher = checkNotNull(weigher);
+		this.maxWeight = maxWeight;
+		return this;
+	}
+
+	public void offer(@Nonnull T item) {
 		checkNotNull(item);
 
-		if (finished) {
-			throw new IllegalStateException("Cannot offer more elements after close() has been called");
-		}
+		Stripe<T> stripe = stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+		ToLongFunction<T> weigher = this.weigher;
+		long weight = weigher == null ? 0 : weigher.applyAsLong(item);
+
+		// held until the handoff is done so that close() cannot queue the poison pill ahead of this batch
+		handoffLock.readLock().lock();
+		try {
+			Batch<T> full = null;
+			long started = -1;
+			synchronized (stripe) {
+				if (finished) {
+					throw new IllegalStateException("Cannot offer more elements after close() has been called");
+				}
+
+				Batch<T> batch = stripe.batch;
+				if (batch == null) {
+					batch = stripe.batch = newBatch();
+					started = ++stripe.generation;
+				}
 
-		currentBatch.add(item);
-		if (currentBatch.size() >= batchSize) {
-			batchQueue.offer(currentBatch);
-			currentBatch = new Batch<>(batchSize);
+				batch.add(item, weight);
+				if (batch.size() >= batchSize || batch.getWeight() >= maxWeight) {
+					full = batch;
+					stripe.batch = null;
+				}
+			}
+
+			if (full != null) {
+				handoff(full);
+			} else if (started != -1 && linger >= 0) {
+				long generation = started;
+				Execute.in(linger, () -> flush(stripe, generation));
+			}
+		} finally {
+			handoffLock.readLock().unlock();
 		}
 	}
 
@@ -79,23 +159,111 @@ public class Batcher<T> {
 	@Nullable
 	public Batch<T> poll(long timeout, TimeUnit unit) throws InterruptedException {
 		Batch<T> toReturn = batchQueue.poll(timeout, unit);
+		if (toReturn == null) {
+			// return a partial batch directly, since handing it off could block on our own full queue
+			toReturn = takePartial();
+			if (toReturn != null) {
+				return toReturn;
+			}
+			toReturn = batchQueue.poll();
+			if (toReturn == null) {
+				// return a static empty batch
+				// it's ok to return the poison pill since batches are immutable for consumers
+				return POISON_PILL;
+			}
+		}
+
 		if (toReturn == POISON_PILL) {
 			batchQueue.offer(POISON_PILL);
 			return null;
-		} else if (toReturn == null) {
-			// lock the batcher so we can drain a partial batch
-			synchronized (this) {
-				if (currentBatch.size() == 0) {
-					// return a static empty batch
-					// it's ok to return the poison pill since batches are immutable for consumers
-					toReturn = POISON_PILL;
-				} else {
-					toReturn = currentBatch;
-					currentBatch = new Batch<>(batchSize);
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Returns a batch for reuse. The batch must not be used after this call.
+	 */
+	public void recycle(@Nonnull Batch<T> batch) {
+		checkNotNull(batch);
+		if (batch != POISON_PILL && pooled.incrementAndGet() <= MAX_POOLED) {
+			batch.clear();
+			pool.offer(batch);
+		} else if (batch != POISON_PILL) {
+			pooled.decrementAndGet();
+		}
+	}
+
+	@Nonnull
+	private Batch<T> newBatch() {
+		Batch<T> batch = pool.poll();
+		if (batch != null) {
+			pooled.decrementAndGet();
+			return batch;
+		}
+		return new Batch<>(Math.min(batchSize, 1024));
+	}
+
+	/**
+	 * Hands off the stripe's batch if it is still the one started in the given generation, since batches are
+	 * recycled and a timer may fire after its batch was handed off and reused.
+	 */
+	private void flush(@Nonnull Stripe<T> stripe, long generation) {
+		handoffLock.readLock().lock();
+		try {
+			Batch<T> batch = null;
+			synchronized (stripe) {
+				if (stripe.batch != null && stripe.generation == generation) {
+					batch = stripe.batch;
+					stripe.batch = null;
 				}
 			}
+
+			if (batch != null) {
+				handoff(batch);
+			}
+		} finally {
+			handoffLock.readLock().unlock();
+		}
+	}
+
+	@Nullable
+	private Batch<T> takePartial() {
+		for (Stripe<T> stripe : stripes) {
+			synchronized (stripe) {
+				Batch<T> batch = stripe.batch;
+				if (batch != null) {
+					stripe.batch = null;
+					return batch;
+				}
+			}
+		}
+		return null;
+	}
+
+	private void flushAll() {
+		handoffLock.readLock().lock();
+		try {
+			for (Stripe<T> stripe : stripes) {
+				Batch<T> batch;
+				synchronized (stripe) {
+					batch = stripe.batch;
+					stripe.batch = null;
+				}
+
+				if (batch != null) {
+					handoff(batch);
+				}
+			}
+		} finally {
+			handoffLock.readLock().unlock();
 		}
-		return toReturn;
+	}
+
+	/**
+	 * Must be called with the handoff read lock held, from taking the batch off its stripe until here.
+	 */
+	private void handoff(@Nonnull Batch<T> batch) {
+		Uninterruptibles.putUninterruptibly(batchQueue, batch);
 	}
 
 	/**
@@ -111,40 +279,75 @@ public class Batcher<T> {
 			throw new IllegalStateException("Batcher already finished");
 		}
 		finished = true;
-		batchQueue.offer(currentBatch); // Offer any remaining items as a partial batch
-		batchQueue.offer(POISON_PILL); // Kill the consumers
-		currentBatch = null;
+		flushAll(); // Offer any remaining items as partial batches
+
+		// wait for batches being handed off by producers before killing the consumers
+		handoffLock.writeLock().lock();
+		try {
+			Uninterruptibles.putUninterruptibly(batchQueue, POISON_PILL);
+		} finally {
+			handoffLock.writeLock().unlock();
+		}
+	}
+
+	private static final class Stripe<T> {
+		private Batch<T> batch;
+		private long generation;
 	}
 
 	public static final class Batch<T> implements Iterable<T> {
+		private Object[] items;
+		private int size;
+		private long weight;
 
-		private final ArrayList<T> itemQueue;
+		private Batch(int capacity) {
+			items = new Object[capacity];
+		}
 
-		private Batch(int size) {
-			this.itemQueue = Lists.newArrayListWithCapacity(size);
+		private void add(T item, long weight) {
+			if (size == items.length) {
+				items = Arrays.copyOf(items, Math.max(16, size * 2));
+			}
+			items[size++] = item;
+			this.weight += weight;
 		}
 
-		private void add(T item) {
-			itemQueue.add(item);
+		private void clear() {
+			Arrays.fill(items, 0, size, null);
+			size = 0;
+			weight = 0;
 		}
 
 		public int size() {
-			return itemQueue.size();
+			return size;
+		}
+
+		public long getWeight() {
+			return weight;
+		}
+
+		@SuppressWarnings("unchecked")
+		public T get(int index) {
+			checkElementIndex(index, size);
+			return (T) items[index];
 		}
 
 		@Override
 		public Iterator<T> iterator() {
 			return new Iterator<T>() {
-				private final Iterator<T> internal = itemQueue.iterator();
+				private int index;
 
 				@Override
 				public boolean hasNext() {
-					return internal.hasNext();
+					return index < size;
 				}
 
 				@Override
 				public T next() {
-					return internal.next();
+					if (index >= size) {
+						throw new NoSuchElementException();
+					}
+					return get(index++);
 				}
 			};
 		}
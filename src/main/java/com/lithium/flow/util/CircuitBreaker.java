@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lithium.flow.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Stops calls to an endpoint after consecutive failures. Once open, calls are rejected until the open time passes,
+ * after which a single probe call is let through: success closes the breaker and failure opens it again.
+ *
+ * @author Matt Ayres
+ */
+public class CircuitBreaker {
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int threshold;
+	private final long openTime;
+	private final AtomicInteger failures = new AtomicInteger();
+	private final AtomicBoolean probing = new AtomicBoolean();
+	private volatile long openedTime;
+
+	public CircuitBreaker(int threshold, long openTime) {
+		checkArgument(threshold > 0, "threshold must be positive: %s", threshold);
+		this.threshold = threshold;
+		this.openTime = openTime;
+	}
+
+	public boolean allowRequest() {
+		long openedTime = this.openedTime;
+		if (openedTime == 0) {
+			return true;
+		} else if (System.currentTimeMillis() - openedTime < openTime) {
+			return false;
+		} else {
+			return probing.compareAndSet(false, true);
+		}
+	}
+
+	public void onSuccess() {
+		failures.set(0);
+		openedTime = 0;
+		probing.set(false);
+	}
+
+	public void onFailure() {
+		if (probing.get() || failures.incrementAndGet() >= threshold) {
+			openedTime = System.currentTimeMillis();
+			probing.set(false);
+		}
+	}
+
+	@Nonnull
+	public State getState() {
+		long openedTime = this.openedTime;
+		if (openedTime == 0) {
+			return State.CLOSED;
+		}
+		return System.currentTimeMillis() - openedTime < openTime ? State.OPEN : State.HALF_OPEN;
+	}
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2016 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lithium.flow.util;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Thrown instead of calling an endpoint whose {@link CircuitBreaker} is open.
+ *
+ * @author Matt Ayres
+ */
+public class CircuitOpenException extends RuntimeException {
+	public CircuitOpenException(@Nonnull String endpoint) {
+		super("circuit open: " + endpoint);
+	}
+}
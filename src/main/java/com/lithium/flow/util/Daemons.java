@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Shared pool of daemon threads for background work such as pumping streams and refreshing caches. The pool is
+ * capped at {@code flow.daemons.threads} threads, 256 by default, and does not queue: when every thread is busy a
+ * task is rejected right away, so callers can fall back to doing the work another way instead of waiting behind
+ * tasks that may block for a long time.
+ *
+ * @author Matt Ayres
+ */
+public final class Daemons {
+	private static final int MAX_THREADS = Integer.getInteger("flow.daemons.threads", 256);
+
+	private static final ListeningExecutorService EXECUTOR = MoreExecutors.listeningDecorator(
+			new ThreadPoolExecutor(0, MAX_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+					new ThreadFactoryBuilder().setNameFormat("flow-daemon-%d").setDaemon(true).build()));
+
+	private Daemons() {
+	}
+
+	/**
+	 * @throws RejectedExecutionException if every thread is busy
+	 */
+	@Nonnull
+	public static <T> ListenableFuture<T> submit(@Nonnull Callable<T> callable) {
+		checkNotNull(callable);
+		return EXECUTOR.submit(callable);
+	}
+
+	/**
+	 * @throws RejectedExecutionException if every thread is busy
+	 */
+	public static void execute(@Nonnull Runnable runnable) {
+		checkNotNull(runnable);
+		EXECUTOR.execute(runnable);
+	}
+}
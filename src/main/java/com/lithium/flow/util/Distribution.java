@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lithium.flow.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of non-negative values. Each power of two is split into 16 buckets, so percentiles
+ * are accurate to within about 3% of the value.
+ *
+ * @author Matt Ayres
+ */
+public class Distribution {
+	private static final int SUB_BITS = 4;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS + 1) * SUB_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+
+	public void record(long value) {
+		checkArgument(value >= 0, "value must not be negative: %s", value);
+		buckets.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : (double) sum.sum() / count;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 */
+	public long percentile(double percentile) {
+		checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100: %s", percentile);
+
+		long total = 0;
+		long[] counts = new long[buckets.length()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= target) {
+				return valueOf(i);
+			}
+		}
+		return valueOf(counts.length - 1);
+	}
+
+	private static int indexOf(long value) {
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+		return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+	}
+
+	private static long valueOf(int index) {
+		if (index < SUB_COUNT) {
+			return index;
+		}
+		int shift = index / SUB_COUNT - 1;
+		long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+		return lower + ((1L << shift) >> 1);
+	}
+}
@@ -20,7 +20,6 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -28,6 +27,9 @@ import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 
 /**
+ * Runs executables after a delay on a shared {@link HashedWheelTimer}. The tick defaults to 10ms and can be set with
+ * the {@code flow.execute.tick} system property, in milliseconds.
+ *
  * @author Matt Ayres
  */
 public class Execute {
@@ -37,8 +39,9 @@ public class Execute {
 		return thread;
 	};
 
-	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(FACTORY);
 	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(FACTORY);
+	private static final HashedWheelTimer TIMER = new HashedWheelTimer(Long.getLong("flow.execute.tick", 10),
+			TimeUnit.MILLISECONDS, 512, EXECUTOR, FACTORY);
 
 	@Nonnull
 	public static ScheduledFuture<?> at(long time, @Nonnull Executable executable) {
@@ -54,6 +57,6 @@ public class Execute {
 	public static ScheduledFuture<?> in(long time, @Nonnull TimeUnit unit, @Nonnull Executable executable) {
 		checkNotNull(unit);
 		checkNotNull(executable);
-		return SCHEDULER.schedule(() -> EXECUTOR.submit(executable), time, unit);
+		return TIMER.schedule(executable, time, unit);
 	}
 }
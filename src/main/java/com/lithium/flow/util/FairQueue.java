@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Queue polling the highest priority first, and within a priority taking turns between names so that one name with
+ * many elements cannot starve the others.
+ *
+ * @author Matt Ayres
+ */
+public class FairQueue<T> {
+	private final TreeMap<Integer, Map<String, Deque<T>>> lanes = new TreeMap<>(Collections.reverseOrder());
+	private int size;
+
+	public synchronized void add(@Nonnull String name, int priority, @Nonnull T element) {
+		checkNotNull(name);
+		checkNotNull(element);
+		lanes.computeIfAbsent(priority, p -> new LinkedHashMap<>())
+				.computeIfAbsent(name, n -> new ArrayDeque<>())
+				.add(element);
+		size++;
+	}
+
+	@Nullable
+	public synchronized T poll() {
+		Map.Entry<Integer, Map<String, Deque<T>>> entry = lanes.firstEntry();
+		if (entry == null) {
+			return null;
+		}
+
+		Map<String, Deque<T>> lane = entry.getValue();
+		Iterator<Map.Entry<String, Deque<T>>> it = lane.entrySet().iterator();
+		Map.Entry<String, Deque<T>> next = it.next();
+		T element = next.getValue().poll();
+
+		it.remove();
+		if (!next.getValue().isEmpty()) {
+			lane.put(next.getKey(), next.getValue());
+		} else if (lane.isEmpty()) {
+			lanes.remove(entry.getKey());
+		}
+
+		size--;
+		return element;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized boolean isEmpty() {
+		return size == 0;
+	}
+}
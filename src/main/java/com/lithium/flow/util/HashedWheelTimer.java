@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lithium.flow.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.util.concurrent.AbstractFuture;
+
+/**
+ * Timer that keeps pending tasks in a wheel of buckets, one per tick, so scheduling and cancelling are O(1) no
+ * matter how many tasks are pending. A single worker thread advances the wheel every tick and hands expired tasks to
+ * the executor, so tasks run up to one tick late.
+ *
+ * @author Matt Ayres
+ */
+public class HashedWheelTimer implements AutoCloseable {
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final Executor executor;
+	private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+	private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pending = new AtomicInteger();
+	private final long startTime = System.nanoTime();
+	private final Thread worker;
+	private volatile boolean closed;
+	private long tick;
+
+	public HashedWheelTimer(long tick, @Nonnull TimeUnit unit, int wheelSize, @Nonnull Executor executor,
+			@Nonnull ThreadFactory factory) {
+		checkArgument(tick > 0, "tick must be positive: %s", tick);
+		checkArgument(wheelSize > 0, "wheelSize must be positive: %s", wheelSize);
+		checkNotNull(unit);
+		checkNotNull(factory);
+
+		this.executor = checkNotNull(executor);
+		tickNanos = unit.toNanos(tick);
+
+		int size = Integer.highestOneBit(wheelSize - 1) << 1;
+		wheel = new Bucket[Math.max(1, size)];
+		for (int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Bucket();
+		}
+		mask = wheel.length - 1;
+
+		worker = factory.newThread(this::run);
+		worker.start();
+	}
+
+	@Nonnull
+	public ScheduledFuture<?> schedule(@Nonnull Executable executable, long delay, @Nonnull TimeUnit unit) {
+		checkNotNull(executable);
+		checkNotNull(unit);
+		if (closed) {
+			throw new IllegalStateException("timer is closed");
+		}
+
+		Timeout timeout = new Timeout(executable, System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+		pending.incrementAndGet();
+		added.add(timeout);
+		return timeout;
+	}
+
+	public int getPending() {
+		return pending.get();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		worker.interrupt();
+	}
+
+	private void run() {
+		while (!closed) {
+			long deadline = startTime + (tick + 1) * tickNanos;
+			long sleep = deadline - System.nanoTime();
+			if (sleep > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleep);
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+
+			removeCancelled();
+			transferAdded();
+			wheel[(int) (tick & mask)].expire(deadline);
+			tick++;
+		}
+	}
+
+	private void removeCancelled() {
+		Timeout timeout;
+		while ((timeout = cancelled.poll()) != null) {
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+				pending.decrementAndGet();
+			}
+		}
+	}
+
+	private void transferAdded() {
+		Timeout timeout;
+		while ((timeout = added.poll()) != null) {
+			if (timeout.isCancelled()) {
+				pending.decrementAndGet();
+				continue;
+			}
+
+			long ticks = Math.max(tick, (timeout.deadline - startTime + tickNanos - 1) / tickNanos - 1);
+			timeout.rounds = (ticks - tick) / wheel.length;
+			wheel[(int) (ticks & mask)].add(timeout);
+		}
+	}
+
+	private final class Bucket {
+		private Timeout head;
+		private Timeout tail;
+
+		private void add(@Nonnull Timeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		private void remove(@Nonnull Timeout timeout) {
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			} else {
+				head = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			} else {
+				tail = timeout.prev;
+			}
+			timeout.prev = timeout.next = null;
+			timeout.bucket = null;
+		}
+
+		private void expire(long deadline) {
+			Timeout timeout = head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				if (timeout.rounds <= 0 && timeout.deadline <= deadline) {
+					remove(timeout);
+					timeout.expire();
+				} else {
+					timeout.rounds--;
+				}
+				timeout = next;
+			}
+		}
+	}
+
+	private final class Timeout extends AbstractFuture<Object> implements ScheduledFuture<Object>, Runnable {
+		private final Executable executable;
+		private final long deadline;
+		private long rounds;
+		private Bucket bucket;
+		private Timeout prev;
+		private Timeout next;
+
+		private Timeout(@Nonnull Executable executable, long deadline) {
+			this.executable = executable;
+			this.deadline = deadline;
+		}
+
+		private void expire() {
+			pending.decrementAndGet();
+			if (!isDone()) {
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			if (isDone()) {
+				return;
+			}
+			try {
+				executable.execute();
+				set(null);
+			} catch (Throwable t) {
+				setException(t);
+			}
+		}
+
+		@Override
+		protected void afterDone() {
+			if (isCancelled()) {
+				cancelled.add(this);
+			}
+		}
+
+		@Override
+		public long getDelay(@Nonnull TimeUnit unit) {
+			return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(@Nonnull Delayed other) {
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lithium.flow.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Lock-free approximate distinct counter. The default precision of 14 uses 16384 registers for a standard error of
+ * about 0.8%, with linear counting for small cardinalities.
+ *
+ * @author Matt Ayres
+ */
+public class HyperLogLog {
+	private final int precision;
+	private final AtomicIntegerArray registers;
+
+	public HyperLogLog() {
+		this(14);
+	}
+
+	public HyperLogLog(int precision) {
+		checkArgument(precision >= 4 && precision <= 18, "precision must be between 4 and 18: %s", precision);
+		this.precision = precision;
+		registers = new AtomicIntegerArray(1 << precision);
+	}
+
+	public void add(@Nonnull Object object) {
+		checkNotNull(object);
+		addHash(mix(object.hashCode()));
+	}
+
+	public void addHash(long hash) {
+		int index = (int) (hash >>> (64 - precision));
+		int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+
+		int current;
+		while ((current = registers.get(index)) < rank) {
+			if (registers.compareAndSet(index, current, rank)) {
+				break;
+			}
+		}
+	}
+
+	public long cardinality() {
+		int m = registers.length();
+		double sum = 0;
+		int zeros = 0;
+		for (int i = 0; i < m; i++) {
+			int register = registers.get(i);
+			sum += 1.0 / (1L << register);
+			if (register == 0) {
+				zeros++;
+			}
+		}
+
+		double alpha = 0.7213 / (1 + 1.079 / m);
+		double estimate = alpha * m * m / sum;
+		if (estimate <= 2.5 * m && zeros > 0) {
+			estimate = m * Math.log((double) m / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Reads lines by scanning raw bytes for line terminators in a large buffer, instead of decoding characters through
+ * a {@link java.io.BufferedReader}. Lines are terminated by {@code \n}, {@code \r} or {@code \r\n}, as with
+ * {@link java.io.BufferedReader#readLine()}.
+ * <p>
+ * Only charsets where {@code \r} and {@code \n} cannot appear inside other characters are supported, which covers
+ * UTF-8 and the ASCII compatible single byte charsets. Lines that are pure ASCII skip charset decoding entirely.
+ * <p>
+ * {@link #readLine()} returns a reusable {@link Line} that is only valid until the next read, for callers that want
+ * to look at each line without allocating a string for it.
+ *
+ * @author Matt Ayres
+ */
+public class LineReader implements Closeable {
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private final InputStream in;
+	private final Line line;
+	private byte[] buffer;
+	private int position;
+	private int limit;
+	private long base;
+	private boolean eof;
+
+	public LineReader(@Nonnull InputStream in) {
+		this(in, StandardCharsets.UTF_8);
+	}
+
+	public LineReader(@Nonnull InputStream in, @Nonnull Charset charset) {
+		this(in, charset, DEFAULT_BUFFER_SIZE);
+	}
+
+	public LineReader(@Nonnull InputStream in, @Nonnull Charset charset, int bufferSize) {
+		checkArgument(isSupported(charset), "unsupported charset: %s", charset);
+		checkArgument(bufferSize > 0, "invalid buffer size: %s", bufferSize);
+		this.in = checkNotNull(in);
+		line = new Line(charset);
+		buffer = new byte[bufferSize];
+	}
+
+	public static boolean isSupported(@Nonnull Charset charset) {
+		checkNotNull(charset);
+
+		if (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+				|| charset.equals(StandardCharsets.ISO_8859_1)) {
+			return true;
+		}
+		if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1) {
+			return false;
+		}
+
+		byte[] ascii = new byte[128];
+		for (int i = 0; i < ascii.length; i++) {
+			ascii[i] = (byte) i;
+		}
+		return Arrays.equals(new String(ascii, StandardCharsets.US_ASCII).getBytes(charset), ascii);
+	}
+
+	@Nullable
+	public Line readLine() throws IOException {
+		int scan = position;
+		int bits = 0;
+		while (true) {
+			for (; scan < limit; scan++) {
+				int b = buffer[scan];
+				bits |= b;
+				if ((b & 0xff) <= '\r' && (b == '\n' || b == '\r')) {
+					if (b == '\r' && scan + 1 == limit && !eof) {
+						// need the next byte to tell \r from \r\n
+						break;
+					}
+
+					line.set(buffer, position, scan - position, bits >= 0);
+					if (b == '\r' && scan + 1 < limit && buffer[scan + 1] == '\n') {
+						scan++;
+					}
+					position = scan + 1;
+					return line;
+				}
+			}
+
+			int scanned = scan - position;
+			boolean filled = fill();
+			scan = position + scanned;
+			if (!filled && scan == limit) {
+				if (position == limit) {
+					return null;
+				}
+				line.set(buffer, position, limit - position, bits >= 0);
+				position = limit;
+				return line;
+			}
+		}
+	}
+
+	@Nullable
+	public String readString() throws IOException {
+		Line line = readLine();
+		return line != null ? line.toString() : null;
+	}
+
+	public void forEach(@Nonnull CheckedConsumer<Line, IOException> consumer) throws IOException {
+		checkNotNull(consumer);
+
+		Line line;
+		while ((line = readLine()) != null) {
+			consumer.accept(line);
+		}
+	}
+
+	/**
+	 * @return the number of bytes consumed from the stream by the lines read so far, including terminators
+	 */
+	public long getPosition() {
+		return base + position;
+	}
+
+	private boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+
+		int pending = limit - position;
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, pending);
+		} else if (pending == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		base += position;
+		position = 0;
+		limit = pending;
+
+		int read = in.read(buffer, limit, buffer.length - limit);
+		if (read < 0) {
+			eof = true;
+			return false;
+		}
+		limit += read;
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * A view of the bytes of a single line, without its terminator.
+	 */
+	public static class Line implements CharSequence {
+		private final Charset charset;
+		private byte[] bytes;
+		private int offset;
+		private int byteLength;
+		private boolean ascii;
+		private String string;
+
+		private Line(@Nonnull Charset charset) {
+			this.charset = charset;
+		}
+
+		private void set(@Nonnull byte[] bytes, int offset, int byteLength, boolean ascii) {
+			this.bytes = bytes;
+			this.offset = offset;
+			this.byteLength = byteLength;
+			this.ascii = ascii;
+			string = null;
+		}
+
+		@Nonnull
+		public byte[] getBytes() {
+			return bytes;
+		}
+
+		public int getOffset() {
+			return offset;
+		}
+
+		public int getByteLength() {
+			return byteLength;
+		}
+
+		public boolean isAscii() {
+			return ascii;
+		}
+
+		@Override
+		public int length() {
+			return ascii ? byteLength : toString().length();
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (ascii) {
+				checkElementIndex(index, byteLength);
+				return (char) bytes[offset + index];
+			}
+			return toString().charAt(index);
+		}
+
+		@Override
+		@Nonnull
+		public CharSequence subSequence(int start, int end) {
+			if (ascii) {
+				checkPositionIndexes(start, end, byteLength);
+				return new String(bytes, offset + start, end - start, StandardCharsets.ISO_8859_1);
+			}
+			return toString().subSequence(start, end);
+		}
+
+		@Override
+		@Nonnull
+		public String toString() {
+			if (string == null) {
+				string = new String(bytes, offset, byteLength, ascii ? StandardCharsets.ISO_8859_1 : charset);
+			}
+			return string;
+		}
+	}
+}
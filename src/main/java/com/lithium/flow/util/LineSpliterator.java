@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.lithium.flow.filer.Filer;
+import com.lithium.flow.io.DataIo;
+import com.lithium.flow.io.Swallower;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Splits the lines of a file into byte ranges that are read independently through {@link Filer#openFile}.
+ * <p>
+ * A range owns every line that starts inside it, so a reader seeks to one byte before its start, drops the partial
+ * line up to the first terminator, and keeps reading past its end to finish the last line it owns.
+ *
+ * @author Matt Ayres
+ */
+class LineSpliterator implements Spliterator<String> {
+	private final Filer filer;
+	private final String path;
+	private final Charset charset;
+	private final long minSplit;
+	private final Set<Closeable> opened;
+	private long start;
+	private final long end;
+	private DataIo io;
+	private LineReader reader;
+	private long base;
+	private boolean done;
+
+	LineSpliterator(@Nonnull Filer filer, @Nonnull String path, @Nonnull Charset charset,
+			long start, long end, long minSplit, @Nonnull Set<Closeable> opened) {
+		checkArgument(minSplit > 0, "invalid min split: %s", minSplit);
+		this.filer = checkNotNull(filer);
+		this.path = checkNotNull(path);
+		this.charset = checkNotNull(charset);
+		this.start = start;
+		this.end = end;
+		this.minSplit = minSplit;
+		this.opened = checkNotNull(opened);
+	}
+
+	@Override
+	public boolean tryAdvance(@Nonnull Consumer<? super String> action) {
+		if (done) {
+			return false;
+		}
+
+		String line;
+		try {
+			if (reader == null) {
+				open();
+			}
+			line = base + reader.getPosition() < end ? reader.readString() : null;
+		} catch (IOException e) {
+			close();
+			throw new UncheckedException(e);
+		}
+
+		if (line == null) {
+			close();
+			return false;
+		}
+
+		action.accept(line);
+		return true;
+	}
+
+	private void open() throws IOException {
+		io = filer.openFile(path, false);
+		opened.add(io);
+
+		base = Math.max(0, start - 1);
+		io.seek(base);
+		reader = new LineReader(new DataIoInputStream(io, io.length()), charset);
+		if (start > 0) {
+			reader.readLine();
+		}
+	}
+
+	private void close() {
+		done = true;
+		if (io != null) {
+			opened.remove(io);
+			Swallower.close(io);
+		}
+	}
+
+	@Override
+	public Spliterator<String> trySplit() {
+		if (reader != null || done || end - start < 2 * minSplit) {
+			return null;
+		}
+
+		long mid = start + (end - start) / 2;
+		LineSpliterator prefix = new LineSpliterator(filer, path, charset, start, mid, minSplit, opened);
+		start = mid;
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+		return end - start;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+
+	private static class DataIoInputStream extends InputStream {
+		private final DataIo io;
+		private final long length;
+
+		private DataIoInputStream(@Nonnull DataIo io, long length) {
+			this.io = io;
+			this.length = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return io.getFilePointer() < length ? io.readUnsignedByte() : -1;
+		}
+
+		@Override
+		public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+			long remaining = length - io.getFilePointer();
+			if (remaining <= 0) {
+				return len == 0 ? 0 : -1;
+			}
+
+			int read = (int) Math.min(len, remaining);
+			io.readFully(b, off, read);
+			return read;
+		}
+	}
+}
@@ -16,15 +16,30 @@
 
 package com.lithium.flow.util;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.lithium.flow.compress.Coder;
+import com.lithium.flow.compress.Coders;
+import com.lithium.flow.compress.NoCoder;
+import com.lithium.flow.filer.Filer;
+import com.lithium.flow.io.Swallower;
+
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
@@ -42,6 +57,8 @@ import com.google.common.base.Throwables;
  */
 public class Lines {
 	private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+	private static final long DEFAULT_SPLIT = 16 * 1024 * 1024;
+	private static final long MIN_SPLIT = 1024 * 1024;
 
 	@Nonnull
 	public static Stream<String> stream(@Nonnull InputStream in) {
@@ -54,6 +71,27 @@ public class Lines {
 		checkNotNull(in);
 		checkNotNull(charset);
 
+		if (LineReader.isSupported(charset)) {
+			LineReader reader = new LineReader(in, charset);
+			Spliterator<String> spliterator = new IndefiniteSpliterator<String>() {
+				@Override
+				public boolean tryAdvance(Consumer<? super String> action) {
+					try {
+						String line = reader.readString();
+						if (line != null) {
+							action.accept(line);
+							return true;
+						}
+					} catch (IOException e) {
+						//
+					}
+					Unchecked.run(reader::close);
+					return false;
+				}
+			};
+			return StreamSupport.stream(spliterator, false);
+		}
+
 		Spliterator<String> spliterator = new IndefiniteSpliterator<String>() {
 			private final LineIterator it = new LineIterator(new InputStreamReader(in, charset));
 
@@ -89,6 +127,16 @@ public class Lines {
 		checkNotNull(charset);
 		checkNotNull(consumer);
 
+		if (LineReader.isSupported(charset)) {
+			try (LineReader reader = new LineReader(in, charset)) {
+				String line;
+				while ((line = reader.readString()) != null) {
+					consumer.accept(line);
+				}
+			}
+			return;
+		}
+
 		try (LineIterator it = IOUtils.lineIterator(in, charset)) {
 			while (it.hasNext()) {
 				consumer.accept(it.nextLine());
@@ -99,6 +147,28 @@ public class Lines {
 		}
 	}
 
+	/**
+	 * Scans lines without allocating a string per line. The {@link LineReader.Line} passed to the consumer is reused
+	 * and is only valid until the consumer returns.
+	 */
+	public static void scan(@Nonnull InputStream in,
+			@Nonnull CheckedConsumer<LineReader.Line, IOException> consumer) throws IOException {
+		checkNotNull(in);
+		checkNotNull(consumer);
+		scan(in, DEFAULT_CHARSET, consumer);
+	}
+
+	public static void scan(@Nonnull InputStream in, @Nonnull Charset charset,
+			@Nonnull CheckedConsumer<LineReader.Line, IOException> consumer) throws IOException {
+		checkNotNull(in);
+		checkNotNull(charset);
+		checkNotNull(consumer);
+
+		try (LineReader reader = new LineReader(in, charset)) {
+			reader.forEach(consumer);
+		}
+	}
+
 	@Nonnull
 	public static Iterable<String> iterate(@Nonnull InputStream in) throws IOException {
 		checkNotNull(in);
@@ -110,6 +180,10 @@ public class Lines {
 		checkNotNull(in);
 		checkNotNull(charset);
 
+		if (LineReader.isSupported(charset)) {
+			return iterate(new LineReader(in, charset));
+		}
+
 		LineIterator it = IOUtils.lineIterator(in, charset);
 		AtomicBoolean used = new AtomicBoolean();
 
@@ -136,6 +210,115 @@ public class Lines {
 		};
 	}
 
+	@Nonnull
+	private static Iterable<String> iterate(@Nonnull LineReader reader) {
+		AtomicBoolean used = new AtomicBoolean();
+
+		return () -> {
+			if (used.getAndSet(true)) {
+				throw new RuntimeException("this iterable can only be used once");
+			}
+
+			return new Iterator<String>() {
+				private String next;
+				private boolean done;
+
+				@Override
+				public boolean hasNext() {
+					if (next == null && !done) {
+						try {
+							next = reader.readString();
+						} catch (IOException e) {
+							Unchecked.run(reader::close);
+							throw new IllegalStateException(e);
+						}
+						if (next == null) {
+							done = true;
+							Unchecked.run(reader::close);
+						}
+					}
+					return next != null;
+				}
+
+				@Override
+				public String next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					String line = next;
+					next = null;
+					return line;
+				}
+			};
+		};
+	}
+
+	/**
+	 * Streams the lines of a file in parallel. Uncompressed files on a {@link Filer#isSeekable() seekable} filer are
+	 * split into byte ranges on line boundaries and read concurrently; other files are decoded by a single reader and
+	 * split into batches of lines. Line order is kept for ordered terminal operations.
+	 */
+	@Nonnull
+	public static Stream<String> parallel(@Nonnull Filer filer, @Nonnull String path) throws IOException {
+		checkNotNull(filer);
+		checkNotNull(path);
+		return parallel(filer, path, DEFAULT_CHARSET, DEFAULT_SPLIT);
+	}
+
+	@Nonnull
+	public static Stream<String> parallel(@Nonnull Filer filer, @Nonnull String path, @Nonnull Charset charset,
+			long minSplit) throws IOException {
+		checkNotNull(filer);
+		checkNotNull(path);
+		checkNotNull(charset);
+		checkArgument(minSplit > 0, "invalid min split: %s", minSplit);
+
+		Coder coder = Coders.getCoder(path);
+		if (coder instanceof NoCoder && LineReader.isSupported(charset) && filer.isSeekable()) {
+			long length = filer.getRecord(path).getSize();
+			Set<Closeable> opened = ConcurrentHashMap.newKeySet();
+			Spliterator<String> spliterator = new LineSpliterator(filer, path, charset, 0, length, minSplit, opened);
+			return StreamSupport.stream(spliterator, true).onClose(() -> Swallower.closeAll(opened));
+		}
+
+		InputStream in = coder.wrapIn(filer.readFile(path));
+		Iterator<String> it = iterate(in, charset).iterator();
+		Spliterator<String> spliterator = Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, true).onClose(() -> Swallower.close(in));
+	}
+
+	/**
+	 * Passes the lines of a file to a consumer from up to {@code threads} threads at once, splitting the file as in
+	 * {@link #parallel(Filer, String)}. The consumer must be thread safe.
+	 */
+	public static void parallel(@Nonnull Filer filer, @Nonnull String path, int threads,
+			@Nonnull CheckedConsumer<String, IOException> consumer) throws IOException {
+		checkNotNull(filer);
+		checkNotNull(path);
+		checkArgument(threads > 0, "invalid threads: %s", threads);
+		checkNotNull(consumer);
+
+		long length = filer.getRecord(path).getSize();
+		long minSplit = Math.max(MIN_SPLIT, length / (threads * 4L));
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try (Stream<String> lines = parallel(filer, path, DEFAULT_CHARSET, minSplit)) {
+			pool.submit(() -> lines.forEach(line -> Unchecked.run(() -> consumer.accept(line)))).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedException) {
+				throw ((UncheckedException) cause).unwrap(IOException.class);
+			}
+			Throwables.throwIfUnchecked(cause);
+			throw new IOException(cause);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
 	@Nonnull
 	public static String first(@Nonnull InputStream in) throws IOException {
 		checkNotNull(in);
@@ -145,6 +328,14 @@ public class Lines {
 	@Nonnull
 	public static String first(@Nonnull InputStream in, @Nonnull Charset charset) throws IOException {
 		checkNotNull(in);
+		checkNotNull(charset);
+
+		if (LineReader.isSupported(charset)) {
+			try (LineReader reader = new LineReader(in, charset, 8192)) {
+				String line = reader.readString();
+				return line != null ? line : "";
+			}
+		}
 
 		LineIterator it = IOUtils.lineIterator(in, charset);
 		String line = it.hasNext() ? it.nextLine() : "";
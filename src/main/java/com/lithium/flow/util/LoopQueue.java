@@ -16,27 +16,49 @@
 
 package com.lithium.flow.util;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import org.slf4j.Logger;
+
 /**
+ * Bounded queue drained in batches by one or more consumer threads. Consumers block until a batch is ready, which is
+ * when it reaches its minimum size or, with a linger time, when the element at the head of the queue has lingered
+ * that long since it was added, which is the oldest waiting element unless the queue is ordered by a comparator.
+ * Producers block while the queue is at capacity.
+ *
  * @author Matt Ayres
  */
 public class LoopQueue<T> implements AutoCloseable {
+	private static final Logger log = Logs.getLogger();
+	private static final AtomicInteger nextId = new AtomicInteger();
+
 	private final int capacity;
-	private final BlockingQueue<T> queue;
-	private final List<LoopThread> threads = new CopyOnWriteArrayList<>();
+	private final Queue<Node<T>> queue;
+	private final List<Thread> threads = new CopyOnWriteArrayList<>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Condition empty = lock.newCondition();
+	private int consumerWaiters;
+	private int producerWaiters;
 	private volatile boolean finish;
+	private volatile boolean closed;
 
 	public LoopQueue() {
 		this(Integer.MAX_VALUE);
@@ -47,36 +69,59 @@ public class LoopQueue<T> implements AutoCloseable {
 	}
 
 	public LoopQueue(int capacity, @Nullable Comparator<T> comparator) {
+		checkArgument(capacity > 0, "capacity must be positive: %s", capacity);
 		this.capacity = capacity;
-		queue = comparator == null
-				? new LinkedBlockingQueue<>(capacity)
-				: new PriorityBlockingQueue<>(capacity, comparator);
+		queue = comparator == null ? new ArrayDeque<>()
+				: new PriorityQueue<>((node1, node2) -> comparator.compare(node1.element, node2.element));
 	}
 
 	public void forList(@Nonnull CheckedConsumer<List<T>, Exception> consumer) {
-		forList(consumer, () -> !queue.isEmpty(), Integer.MAX_VALUE);
+		forBatch(1, Integer.MAX_VALUE, 0, consumer);
 	}
 
 	public void forList(int batch, @Nonnull CheckedConsumer<List<T>, Exception> consumer) {
-		forList(consumer, () -> finish || queue.size() >= batch, batch);
+		forBatch(batch, batch, -1, consumer);
 	}
 
 	public void forList(int minBatch, int maxBatch, @Nonnull CheckedConsumer<List<T>, Exception> consumer) {
-		forList(consumer, () -> finish || queue.size() >= minBatch, maxBatch);
+		forBatch(minBatch, maxBatch, -1, consumer);
+	}
+
+	/**
+	 * Flushes a batch once it reaches {@code maxBatch} elements or its first element has waited {@code linger}
+	 * milliseconds, whichever comes first.
+	 */
+	public void forBatch(int maxBatch, long linger, @Nonnull CheckedConsumer<List<T>, Exception> consumer) {
+		forBatch(maxBatch, maxBatch, linger, consumer);
 	}
 
-	private void forList(@Nonnull CheckedConsumer<List<T>, Exception> consumer, @Nonnull Checker checker, int max) {
-		threads.add(new LoopThread(10, () -> {
-			while (queue.size() > 0 && checker.check()) {
-				List<T> list = new ArrayList<>();
-				queue.drainTo(list, max);
-				if (list.size() > 0) {
+	/**
+	 * @param linger milliseconds after the head of the queue was added to wait for {@code minBatch} elements, or -1
+	 *               to wait indefinitely
+	 */
+	public void forBatch(int minBatch, int maxBatch, long linger,
+			@Nonnull CheckedConsumer<List<T>, Exception> consumer) {
+		checkArgument(minBatch > 0 && maxBatch >= minBatch, "invalid batch sizes: %s-%s", minBatch, maxBatch);
+		checkNotNull(consumer);
+
+		Thread thread = new Thread(() -> {
+			List<T> list;
+			while ((list = take(minBatch, maxBatch, linger)) != null) {
+				try {
 					consumer.accept(list);
+				} catch (Exception e) {
+					log.warn("loop iteration failed", e);
 				}
 			}
-		}));
+		}, "LoopQueue-" + nextId.incrementAndGet());
+		thread.setDaemon(true);
+		threads.add(thread);
+		thread.start();
 	}
 
+	/**
+	 * Consumes elements individually. Calling this multiple times adds more consumer threads.
+	 */
 	public void forEach(@Nonnull CheckedConsumer<T, Exception> consumer) {
 		forList(list -> {
 			for (T item : list) {
@@ -85,17 +130,98 @@ public class LoopQueue<T> implements AutoCloseable {
 		});
 	}
 
+	@Nullable
+	private List<T> take(int minBatch, int maxBatch, long linger) {
+		lock.lock();
+		try {
+			consumerWaiters++;
+			try {
+				long lingerNanos = TimeUnit.MILLISECONDS.toNanos(linger);
+				while (true) {
+					// rechecked after each wait, since other consumers may have taken the head meanwhile
+					Node<T> head = queue.peek();
+					if (head == null) {
+						if (closed || finish) {
+							return null;
+						}
+						notEmpty.awaitUninterruptibly();
+					} else if (queue.size() >= minBatch || finish || closed) {
+						break;
+					} else if (linger < 0) {
+						notEmpty.awaitUninterruptibly();
+					} else {
+						// linger from when the head was added, not from when this consumer got to it
+						long nanos = head.time + lingerNanos - System.nanoTime();
+						if (nanos <= 0) {
+							break;
+						}
+						notEmpty.awaitNanos(nanos);
+					}
+				}
+			} finally {
+				consumerWaiters--;
+			}
+
+			if (closed) {
+				return null;
+			}
+
+			List<T> list = new ArrayList<>(Math.min(queue.size(), maxBatch));
+			while (list.size() < maxBatch && !queue.isEmpty()) {
+				list.add(queue.poll().element);
+			}
+
+			if (producerWaiters > 0 && !list.isEmpty()) {
+				notFull.signalAll();
+			}
+			if (queue.isEmpty()) {
+				empty.signalAll();
+			}
+			return list;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	public void add(@Nonnull T element) {
 		checkNotNull(element);
-		Sleep.until(() -> queue.size() < capacity && queue.offer(element));
+
+		lock.lock();
+		try {
+			if (queue.size() >= capacity) {
+				producerWaiters++;
+				try {
+					while (queue.size() >= capacity) {
+						notFull.awaitUninterruptibly();
+					}
+				} finally {
+					producerWaiters--;
+				}
+			}
+
+			queue.add(new Node<>(element, System.nanoTime()));
+			if (consumerWaiters > 0) {
+				notEmpty.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	public int size() {
-		return queue.size();
+		lock.lock();
+		try {
+			return queue.size();
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	public boolean isEmpty() {
-		return queue.isEmpty();
+		return size() == 0;
 	}
 
 	/**
@@ -112,13 +238,49 @@ public class LoopQueue<T> implements AutoCloseable {
 	}
 
 	public boolean close(long timeout) {
-		long endTime = timeout == -1 ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
-		long threadTimeout = timeout == -1 ? -1 : 0;
+		long endTime = timeout == -1 ? Long.MAX_VALUE : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+		lock.lock();
+		try {
+			finish = true;
+			notEmpty.signalAll();
+
+			while (!queue.isEmpty() && !threads.isEmpty()) {
+				if (timeout == -1) {
+					empty.awaitUninterruptibly();
+				} else {
+					long nanos = endTime - System.nanoTime();
+					if (nanos <= 0) {
+						break;
+					}
+					empty.awaitNanos(nanos);
+				}
+			}
+
+			closed = timeout != -1;
+			notEmpty.signalAll();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			lock.unlock();
+		}
+
+		if (timeout == -1) {
+			for (Thread thread : threads) {
+				Unchecked.run(thread::join);
+			}
+		}
+
+		return isEmpty();
+	}
 
-		finish = true;
-		Sleep.until(() -> queue.isEmpty() || System.currentTimeMillis() >= endTime);
-		threads.forEach(loopThread -> loopThread.close(threadTimeout));
+	private static class Node<T> {
+		private final T element;
+		private final long time;
 
-		return queue.isEmpty();
+		private Node(@Nonnull T element, long time) {
+			this.element = element;
+			this.time = time;
+		}
 	}
 }
@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.lithium.flow.config.Config;
 import com.lithium.flow.config.ConfigLoader;
+import com.lithium.flow.config.ConfigSnapshot;
 import com.lithium.flow.config.Configs;
 import com.lithium.flow.config.loaders.ClasspathConfigLoader;
 import com.lithium.flow.config.loaders.FileConfigLoader;
@@ -155,6 +156,12 @@ public interface Main {
 
 		log.info("using config file: {}", path);
 
+		// optional binary snapshot to skip parsing on startup, keyed by the mtimes of all included files
+		String snapshot = System.getProperty("config.snapshot");
+		if (snapshot != null) {
+			return ConfigSnapshot.load(new File(snapshot), path, file.getParent());
+		}
+
 		// this loader allows for includes relative to the local.config parent path
 		ConfigLoader loader = new FileConfigLoader(file.getParent());
 
@@ -17,32 +17,48 @@
 package com.lithium.flow.util;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
-import com.google.common.primitives.Longs;
 
 /**
+ * Lock-free progress counter. Averages are computed from a fixed ring of per-second snapshots, so {@link #avg(long)}
+ * covers at most the last {@value #RING_SIZE} seconds. Distinct objects passed to {@link #add(Object)} are counted
+ * exactly, or approximately and without locking after {@link #withApproximateUniques()}.
+ *
  * @author Matt Ayres
  */
 public class Measure {
+	private static final int RING_SIZE = 1024;
+
 	private final String name;
 	private final Function<Number, String> printer;
+	private final LongAdder todo = new LongAdder();
+	private final LongAdder done = new LongAdder();
+	private final LongAdder binned = new LongAdder();
+	private final AtomicLongArray seconds = new AtomicLongArray(RING_SIZE);
+	private final AtomicLongArray totals = new AtomicLongArray(RING_SIZE);
+	private volatile Function<Number, String> valuePrinter;
 	private final Multiset<Object> uniques = HashMultiset.create();
-	private long[] bins = new long[1024];
-	private long startTime;
-	private long todo;
-	private long done;
-	private boolean forEta;
-	private boolean hideAvg;
+	private volatile long distinct = -1;
+	private volatile HyperLogLog approximate;
+	private volatile Distribution distribution;
+	private volatile long startTime;
+	private volatile boolean forEta;
+	private volatile boolean hideAvg;
 
 	public Measure(@Nonnull String name, @Nonnull Function<Number, String> printer) {
 		this.name = checkNotNull(name);
 		this.printer = checkNotNull(printer);
+		valuePrinter = printer;
 	}
 
 	public boolean isForEta() {
@@ -61,16 +77,74 @@ public class Measure {
 		return this;
 	}
 
-	public synchronized void add(@Nonnull Object object) {
+	@Nonnull
+	public Measure withValuePrinter(@Nonnull Function<Number, String> valuePrinter) {
+		this.valuePrinter = checkNotNull(valuePrinter);
+		return this;
+	}
+
+	/**
+	 * Counts distinct objects by {@link Object#hashCode()} in a {@link HyperLogLog} instead of keeping every object,
+	 * at about 0.8% error.
+	 * Approximate counts do not support {@link #remove(Object)}.
+	 */
+	@Nonnull
+	public Measure withApproximateUniques() {
+		synchronized (uniques) {
+			checkState(distinct < 0, "objects already added");
+			approximate = new HyperLogLog();
+		}
+		return this;
+	}
+
+	/**
+	 * Counts distinct objects; once used, {@link #getDone()} reports the distinct count.
+	 */
+	public void add(@Nonnull Object object) {
 		checkNotNull(object);
-		uniques.add(object);
-		done = uniques.elementSet().size();
+		HyperLogLog approximate = this.approximate;
+		if (approximate != null) {
+			approximate.add(object);
+			return;
+		}
+
+		synchronized (uniques) {
+			uniques.add(object);
+			distinct = uniques.elementSet().size();
+		}
 	}
 
-	public synchronized void remove(@Nonnull Object object) {
+	public void remove(@Nonnull Object object) {
 		checkNotNull(object);
-		uniques.remove(object);
-		done = uniques.elementSet().size();
+		if (approximate != null) {
+			throw new UnsupportedOperationException("approximate distinct counts do not support removal");
+		}
+
+		synchronized (uniques) {
+			uniques.remove(object);
+			distinct = uniques.elementSet().size();
+		}
+	}
+
+	/**
+	 * Records a value, such as a latency in milliseconds, into this measure's distribution.
+	 */
+	public void record(long value) {
+		Distribution distribution = this.distribution;
+		if (distribution == null) {
+			synchronized (this) {
+				distribution = this.distribution;
+				if (distribution == null) {
+					distribution = this.distribution = new Distribution();
+				}
+			}
+		}
+		distribution.record(value);
+	}
+
+	@Nullable
+	public Distribution getDistribution() {
+		return distribution;
 	}
 
 	public boolean isHideAvg() {
@@ -87,6 +161,11 @@ public class Measure {
 		return printer;
 	}
 
+	@Nonnull
+	public Function<Number, String> getValuePrinter() {
+		return valuePrinter;
+	}
+
 	public void incTodo() {
 		addTodo(1);
 	}
@@ -103,8 +182,8 @@ public class Measure {
 		addTodo(-value);
 	}
 
-	public synchronized void addTodo(long value) {
-		todo += value;
+	public void addTodo(long value) {
+		todo.add(value);
 	}
 
 	public void incDone() {
@@ -119,56 +198,84 @@ public class Measure {
 		addDone(-value);
 	}
 
-	public synchronized void addDone(long value) {
+	public void addDone(long value) {
+		long time = System.currentTimeMillis();
 		if (startTime == 0) {
-			startTime = System.currentTimeMillis();
+			synchronized (this) {
+				if (startTime == 0) {
+					startTime = time;
+				}
+			}
 		}
 
-		int bin = getBin(System.currentTimeMillis());
-		bins = Longs.ensureCapacity(bins, bin + 1, 1024);
-		bins[bin] += value;
-		done += value;
+		tick(time / 1000);
+		binned.add(value);
+		done.add(value);
 	}
 
-	public synchronized void addSkip(long value) {
-		todo += value;
-		done += value;
+	public void addSkip(long value) {
+		todo.add(value);
+		done.add(value);
 	}
 
-	public synchronized long getTodo() {
-		return todo;
+	public long getTodo() {
+		return todo.sum();
 	}
 
-	public synchronized long getDone() {
-		return done;
+	public long getDone() {
+		HyperLogLog approximate = this.approximate;
+		if (approximate != null) {
+			return approximate.cardinality();
+		}
+		long distinct = this.distinct;
+		return distinct >= 0 ? distinct : done.sum();
 	}
 
-	public synchronized long getLeft() {
-		return todo - done;
+	public long getLeft() {
+		return getTodo() - getDone();
 	}
 
-	public synchronized double avg(long interval) {
+	public double avg(long interval) {
 		if (startTime == 0) {
 			return 0;
 		}
 
-		long time = System.currentTimeMillis();
-		int startBin = Math.max(0, getBin(time - interval));
-		int endBin = getBin(time);
-		if (startBin == endBin) {
+		long endSecond = System.currentTimeMillis() / 1000;
+		long startSecond = Math.max(startTime / 1000, endSecond - Math.min(interval / 1000, RING_SIZE - 1));
+		if (startSecond >= endSecond) {
 			return 0;
 		}
 
-		double total = 0;
-		double count = 0;
-		for (int i = startBin; i < Math.min(endBin, bins.length - 1); i++) {
-			total += bins[i];
-			count++;
+		tick(endSecond);
+		return (double) (totalAt(endSecond) - totalAt(startSecond)) / (endSecond - startSecond);
+	}
+
+	/**
+	 * Records the running total as of the start of this second, the first time the second is seen.
+	 */
+	private void tick(long second) {
+		int slot = (int) (second % RING_SIZE);
+		long previous = seconds.get(slot);
+		if (previous >= 0 && previous < second && seconds.compareAndSet(slot, previous, -second)) {
+			totals.set(slot, binned.sum());
+			seconds.set(slot, second);
 		}
-		return total / count;
 	}
 
-	private int getBin(long time) {
-		return (int) ((time - startTime) / 1000);
+	/**
+	 * Returns the running total as of the start of the second. Seconds without activity have no snapshot, in which
+	 * case the next recorded snapshot holds the same total.
+	 */
+	private long totalAt(long second) {
+		for (long s = second; s - second < RING_SIZE; s++) {
+			int slot = (int) (s % RING_SIZE);
+			long recorded = seconds.get(slot);
+			if (recorded == s) {
+				return totals.get(slot);
+			} else if (recorded < 0 && -recorded == s) {
+				break;
+			}
+		}
+		return binned.sum();
 	}
 }
@@ -16,27 +16,64 @@
 
 package com.lithium.flow.util;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
-import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.UncheckedTimeoutException;
 
 /**
+ * Gathers the results of tasks submitted to a {@link Threader}.
+ * <p>
+ * Results can be consumed in completion order with {@link #iterator()} or {@link #stream()}, or all at once in
+ * submission order with {@link #toList()}. With {@link #withRetained(int)} at most that many tasks may be waiting,
+ * running or holding a result that has not been consumed yet, and submitting blocks until a result is consumed, so
+ * results have to be consumed from another thread while tasks are being submitted.
+ * {@link #withFailFast(boolean)} cancels the remaining tasks on the first failure and {@link #withTimeout(long)}
+ * cancels them once the needle has been open for too long.
+ *
  * @author Matt Ayres
  */
-public class Needle<T> implements AutoCloseable {
+public class Needle<T> implements AutoCloseable, Iterable<T> {
 	private final Threader threader;
 	private final Semaphore semaphore;
-	private final BlockingQueue<ListenableFuture<T>> queue = new LinkedBlockingQueue<>();
+	private final BlockingQueue<Entry<T>> completed = new LinkedBlockingQueue<>();
+	private final Set<Entry<T>> running = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+	private final long startTime = System.currentTimeMillis();
+	private volatile Semaphore retained;
+	private volatile boolean failFast;
+	private volatile long timeout = -1;
+	private volatile Throwable failure;
 
 	public Needle(@Nonnull Threader threader) {
 		this(threader, Integer.MAX_VALUE);
@@ -47,6 +84,29 @@ public class Needle<T> implements AutoCloseable {
 		semaphore = new Semaphore(permits);
 	}
 
+	@Nonnull
+	public Needle<T> withRetained(int retained) {
+		checkArgument(retained > 0, "retained must be positive: %s", retained);
+		checkState(sequence.get() == 0, "retained must be set before submitting");
+		this.retained = new Semaphore(retained);
+		return this;
+	}
+
+	@Nonnull
+	public Needle<T> withFailFast(boolean failFast) {
+		this.failFast = failFast;
+		return this;
+	}
+
+	/**
+	 * @param timeout milliseconds from creation of this needle after which remaining tasks are cancelled, or -1
+	 */
+	@Nonnull
+	public Needle<T> withTimeout(long timeout) {
+		this.timeout = timeout;
+		return this;
+	}
+
 	@Nonnull
 	public ListenableFuture<T> execute(@Nonnull String name, @Nonnull Executable executable) {
 		return submit(name, () -> {
@@ -60,17 +120,63 @@ public class Needle<T> implements AutoCloseable {
 		checkNotNull(name);
 		checkNotNull(callable);
 
-		ListenableFuture<T> future = threader.submit(name, () -> {
-			semaphore.acquireUninterruptibly();
+		Entry<T> entry = new Entry<>(sequence.getAndIncrement());
+
+		// acquired once here rather than in the task, which the threader may retry
+		Semaphore retained = this.retained;
+		if (retained != null) {
+			retained.acquireUninterruptibly();
+			entry.retained = retained;
+		}
+
+		outstanding.incrementAndGet();
+		ListenableFuture<T> future;
+		try {
+			future = threader.submit(name, () -> {
+				semaphore.acquireUninterruptibly();
+				try {
+					return callable.call();
+				} finally {
+					semaphore.release();
+				}
+			});
+		} catch (RuntimeException | Error e) {
+			outstanding.decrementAndGet();
+			entry.release();
+			throw e;
+		}
+
+		entry.future = future;
+		running.add(entry);
+		future.addListener(() -> complete(entry), MoreExecutors.directExecutor());
+
+		if (cancelled.get()) {
+			future.cancel(true);
+		}
+		return future;
+	}
+
+	private void complete(@Nonnull Entry<T> entry) {
+		running.remove(entry);
+		if (failFast && failure == null && !entry.future.isCancelled()) {
 			try {
-				return callable.call();
-			} finally {
-				semaphore.release();
+				entry.future.get();
+			} catch (ExecutionException e) {
+				failure = e.getCause();
+				cancel();
+			} catch (Exception ignored) {
+				// not reachable for a completed future
 			}
-		});
+		}
+		completed.add(entry);
+	}
 
-		queue.add(future);
-		return future;
+	/**
+	 * Cancels all tasks that have not finished yet, including any submitted afterwards.
+	 */
+	public void cancel() {
+		cancelled.set(true);
+		running.forEach(entry -> entry.future.cancel(true));
 	}
 
 	@Override
@@ -87,20 +193,134 @@ public class Needle<T> implements AutoCloseable {
 		return toList();
 	}
 
+	/**
+	 * Waits for all outstanding tasks and returns their results in submission order, with null for failed tasks.
+	 */
 	@Nonnull
 	public List<T> toList() {
-		List<T> values = new ArrayList<>();
-
-		while (!queue.isEmpty()) {
-			List<ListenableFuture<T>> futures = new ArrayList<>();
-			queue.drainTo(futures);
-			values.addAll(Unchecked.get(() -> Futures.successfulAsList(futures).get()));
+		List<Entry<T>> entries = new ArrayList<>();
+		Entry<T> entry;
+		while ((entry = take()) != null) {
+			entries.add(entry);
 		}
 
+		entries.sort(Comparator.comparingLong(e -> e.sequence));
+		List<T> values = new ArrayList<>(entries.size());
+		for (Entry<T> e : entries) {
+			values.add(e.value);
+		}
 		return values;
 	}
 
+	/**
+	 * Returns results in the order tasks finish, blocking until the next one is available. Failed tasks are skipped
+	 * unless fail-fast is enabled, in which case the first failure is thrown.
+	 */
+	@Override
+	@Nonnull
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private Entry<T> next;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null) {
+					Entry<T> entry = take();
+					if (entry == null) {
+						return false;
+					} else if (!entry.failed) {
+						next = entry;
+					}
+				}
+				return true;
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				T value = next.value;
+				next = null;
+				return value;
+			}
+		};
+	}
+
+	@Nonnull
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED), false);
+	}
+
+	@Nullable
+	private Entry<T> take() {
+		while (outstanding.get() > 0) {
+			Entry<T> entry = poll();
+			if (entry == null) {
+				continue;
+			}
+
+			outstanding.decrementAndGet();
+			entry.consume();
+			entry.release();
+
+			Throwable failure = this.failure;
+			if (failFast && failure != null) {
+				throw failure instanceof RuntimeException ? (RuntimeException) failure
+						: new UncheckedException(failure instanceof Exception ? (Exception) failure
+								: new ExecutionException(failure));
+			}
+			return entry;
+		}
+		return null;
+	}
+
+	@Nullable
+	private Entry<T> poll() {
+		if (timeout < 0) {
+			return Unchecked.get(completed::take);
+		}
+
+		long wait = startTime + timeout - System.currentTimeMillis();
+		Entry<T> entry = wait > 0 ? Unchecked.get(() -> completed.poll(wait, TimeUnit.MILLISECONDS)) : completed.poll();
+		if (entry == null && System.currentTimeMillis() >= startTime + timeout) {
+			cancel();
+			throw new UncheckedTimeoutException("needle timed out after " + timeout + "ms");
+		}
+		return entry;
+	}
+
 	public int size() {
-		return queue.size();
+		return outstanding.get();
+	}
+
+	private static class Entry<T> {
+		private final long sequence;
+		private volatile ListenableFuture<T> future;
+		private volatile Semaphore retained;
+		private T value;
+		private boolean failed;
+
+		private Entry(long sequence) {
+			this.sequence = sequence;
+		}
+
+		private void consume() {
+			try {
+				value = future.get();
+			} catch (ExecutionException | CancellationException | InterruptedException e) {
+				failed = true;
+			} finally {
+				future = null;
+			}
+		}
+
+		private void release() {
+			Semaphore retained = this.retained;
+			if (retained != null) {
+				this.retained = null;
+				retained.release();
+			}
+		}
 	}
 }
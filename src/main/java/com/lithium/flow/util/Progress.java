@@ -60,6 +60,22 @@ public class Progress implements AutoCloseable {
 		return measure(name).hideAvg();
 	}
 
+	/**
+	 * Like {@link #unique(String)}, but counting distinct objects approximately without keeping them.
+	 */
+	@Nonnull
+	public Measure approximateUnique(@Nonnull String name) {
+		return unique(name).withApproximateUniques();
+	}
+
+	/**
+	 * Counter whose recorded values are latencies in milliseconds, logged as p50/p99.
+	 */
+	@Nonnull
+	public Measure timer(@Nonnull String name) {
+		return counter(name).withValuePrinter(n -> n.longValue() + "ms");
+	}
+
 	@Nonnull
 	public synchronized Measure measure(@Nonnull String name, @Nonnull Function<Number, String> printer) {
 		checkNotNull(name);
@@ -142,6 +158,13 @@ public class Progress implements AutoCloseable {
 				sb.append(" (").append(printer.apply(measure.avg(avgInterval)));
 				sb.append("/s)");
 			}
+
+			Distribution distribution = measure.getDistribution();
+			if (distribution != null && distribution.getCount() > 0) {
+				Function<Number, String> valuePrinter = measure.getValuePrinter();
+				sb.append(" [p50 ").append(valuePrinter.apply(distribution.percentile(50)));
+				sb.append(", p99 ").append(valuePrinter.apply(distribution.percentile(99))).append("]");
+			}
 		}
 
 		log.info(sb.toString());
@@ -66,9 +66,13 @@ public class Recycler<K, V extends Closeable> implements Closeable {
 		cache.invalidateAll();
 	}
 
+	/**
+	 * Counts the objects holding the value, closing it when the last one recycles it after the bin was evicted.
+	 */
 	private class Bin implements Reusable<V>, Closeable {
 		private final V value;
-		private final Set<Object> set = new HashSet<>();
+		private final Set<Object> holders = new HashSet<>();
+		private boolean evicted;
 		private boolean closed;
 
 		public Bin(@Nonnull V value) {
@@ -78,24 +82,29 @@ public class Recycler<K, V extends Closeable> implements Closeable {
 		@Override
 		@Nonnull
 		public synchronized V get(@Nonnull Object object) {
-			set.add(object);
+			holders.add(object);
 			return value;
 		}
 
 		@Override
 		public synchronized void recycle(@Nonnull Object object) {
-			set.remove(object);
+			if (holders.remove(object) && evicted && holders.isEmpty()) {
+				closeValue();
+			}
 		}
 
 		@Override
-		public synchronized void close() throws IOException {
+		public synchronized void close() {
+			evicted = true;
+			if (closing || holders.isEmpty()) {
+				closeValue();
+			}
+		}
+
+		private void closeValue() {
 			if (!closed) {
-				if (closing || set.isEmpty()) {
-					value.close();
-				} else {
-					Execute.in(time, this::close);
-				}
 				closed = true;
+				Swallower.close(value);
 			}
 		}
 	}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lithium.flow.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries to a ratio of calls, plus a minimum number per second, so that retries cannot multiply load on a
+ * failing backend. Each call deposits {@code ratio} of a retry and each retry withdraws a whole one.
+ *
+ * @author Matt Ayres
+ */
+public class RetryBudget {
+	private static final long UNIT = 1000;
+
+	private final long deposit;
+	private final long minPerSecond;
+	private final long max;
+	private final AtomicLong balance = new AtomicLong();
+	private final AtomicLong refillTime = new AtomicLong(System.currentTimeMillis());
+
+	public RetryBudget(double ratio, int minPerSecond, int maxRetries) {
+		checkArgument(ratio >= 0, "ratio must not be negative: %s", ratio);
+		checkArgument(maxRetries > 0, "maxRetries must be positive: %s", maxRetries);
+		deposit = (long) (ratio * UNIT);
+		this.minPerSecond = minPerSecond * UNIT;
+		max = maxRetries * UNIT;
+		balance.set(this.minPerSecond);
+	}
+
+	public void deposit() {
+		add(deposit);
+	}
+
+	public boolean tryWithdraw() {
+		refill();
+		while (true) {
+			long current = balance.get();
+			if (current < UNIT) {
+				return false;
+			} else if (balance.compareAndSet(current, current - UNIT)) {
+				return true;
+			}
+		}
+	}
+
+	private void refill() {
+		long time = System.currentTimeMillis();
+		long last = refillTime.get();
+		long seconds = (time - last) / 1000;
+		if (seconds > 0 && refillTime.compareAndSet(last, last + seconds * 1000)) {
+			add(seconds * minPerSecond);
+		}
+	}
+
+	private void add(long amount) {
+		balance.accumulateAndGet(amount, (current, delta) -> Math.min(max, current + delta));
+	}
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2016 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lithium.flow.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.lithium.flow.config.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+
+import com.google.common.util.concurrent.AsyncCallable;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Retries calls with exponential backoff and full jitter. Exceptions can be classified as retryable or not, an
+ * optional {@link RetryBudget} caps retries as a ratio of calls, and calls made for an endpoint go through a
+ * {@link CircuitBreaker} per endpoint. Async calls schedule retries on {@link Execute} instead of parking a thread.
+ *
+ * @author Matt Ayres
+ */
+public class RetryPolicy {
+	private static final Logger log = Logs.getLogger();
+
+	private final int tries;
+	private final long delay;
+	private final long maxDelay;
+	private final double multiplier;
+	private final boolean jitter;
+	private final IntFunction<Number> delays;
+	private final List<Class<? extends Throwable>> retryOn;
+	private final List<Class<? extends Throwable>> abortOn;
+	private final RetryBudget budget;
+	private final int breakerThreshold;
+	private final long breakerOpenTime;
+	private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+	private RetryPolicy(@Nonnull Builder builder) {
+		tries = builder.tries;
+		delay = builder.delay;
+		maxDelay = builder.maxDelay;
+		multiplier = builder.multiplier;
+		jitter = builder.jitter;
+		delays = builder.delays;
+		retryOn = new ArrayList<>(builder.retryOn);
+		abortOn = new ArrayList<>(builder.abortOn);
+		budget = builder.budget;
+		breakerThreshold = builder.breakerThreshold;
+		breakerOpenTime = builder.breakerOpenTime;
+	}
+
+	public int getTries() {
+		return tries;
+	}
+
+	public boolean isRetryable(@Nonnull Throwable throwable) {
+		checkNotNull(throwable);
+		if (throwable instanceof InterruptedException || throwable instanceof CircuitOpenException
+				|| abortOn.stream().anyMatch(clazz -> clazz.isInstance(throwable))) {
+			return false;
+		}
+		return retryOn.isEmpty() || retryOn.stream().anyMatch(clazz -> clazz.isInstance(throwable));
+	}
+
+	/**
+	 * @param retry zero for the first retry
+	 * @return milliseconds to wait before the retry
+	 */
+	public long getDelay(int retry) {
+		if (delays != null) {
+			return delays.apply(retry).longValue();
+		}
+
+		double cap = Math.min(maxDelay, delay * Math.pow(multiplier, retry));
+		return jitter ? (long) (ThreadLocalRandom.current().nextDouble() * cap) : (long) cap;
+	}
+
+	/**
+	 * @return the breaker for the endpoint, or null if this policy has no breakers
+	 */
+	@Nullable
+	public CircuitBreaker getBreaker(@Nonnull String endpoint) {
+		checkNotNull(endpoint);
+		if (breakerThreshold <= 0) {
+			return null;
+		}
+		return breakers.computeIfAbsent(endpoint, e -> new CircuitBreaker(breakerThreshold, breakerOpenTime));
+	}
+
+	public <T, E extends Exception> T call(@Nonnull CheckedSupplier<T, E> supplier) throws E {
+		return call(null, supplier);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T, E extends Exception> T call(@Nullable String endpoint, @Nonnull CheckedSupplier<T, E> supplier)
+			throws E {
+		checkNotNull(supplier);
+
+		CircuitBreaker breaker = endpoint == null ? null : getBreaker(endpoint);
+		if (budget != null) {
+			budget.deposit();
+		}
+
+		List<Exception> exceptions = null;
+		for (int retry = 0; ; retry++) {
+			if (breaker != null && !breaker.allowRequest()) {
+				throw new CircuitOpenException(endpoint);
+			}
+
+			try {
+				T result = supplier.get();
+				if (breaker != null) {
+					breaker.onSuccess();
+				}
+				return result;
+			} catch (Exception e) {
+				boolean retryable = isRetryable(e);
+				if (breaker != null) {
+					record(breaker, retryable);
+				}
+
+				if (tries == 1 || !retryable) {
+					// the supplier can only throw E or unchecked exceptions
+					throw (E) e;
+				}
+
+				if (exceptions == null) {
+					exceptions = new ArrayList<>();
+				}
+				exceptions.add(e);
+
+				if (!canRetry(retry)) {
+					break;
+				}
+
+				long delay = getDelay(retry);
+				log.debug("retrying in {}ms: {}", delay, e.toString());
+				if (!Sleep.softly(delay)) {
+					break;
+				}
+			}
+		}
+
+		throw new RetryingException(exceptions);
+	}
+
+	/**
+	 * Runs each attempt on the executor and schedules retries without blocking any thread.
+	 */
+	@Nonnull
+	public <T> ListenableFuture<T> callAsync(@Nullable String endpoint,
+			@Nonnull CheckedSupplier<T, ? extends Exception> supplier, @Nonnull Executor executor) {
+		checkNotNull(supplier);
+		checkNotNull(executor);
+		return callAsync(endpoint, () -> Futures.submit(supplier::get, executor));
+	}
+
+	/**
+	 * Retries the asynchronous operation returned by the callable, scheduling retries without blocking any thread.
+	 */
+	@Nonnull
+	public <T> ListenableFuture<T> callAsync(@Nullable String endpoint, @Nonnull AsyncCallable<T> callable) {
+		checkNotNull(callable);
+
+		if (budget != null) {
+			budget.deposit();
+		}
+
+		SettableFuture<T> future = SettableFuture.create();
+		attempt(endpoint, callable, future, 0, Collections.synchronizedList(new ArrayList<>()));
+		return future;
+	}
+
+	private <T> void attempt(@Nullable String endpoint, @Nonnull AsyncCallable<T> callable,
+			@Nonnull SettableFuture<T> future, int retry, @Nonnull List<Exception> exceptions) {
+		if (future.isDone()) {
+			return;
+		}
+
+		CircuitBreaker breaker = endpoint == null ? null : getBreaker(endpoint);
+		if (breaker != null && !breaker.allowRequest()) {
+			future.setException(new CircuitOpenException(endpoint));
+			return;
+		}
+
+		ListenableFuture<T> attempt;
+		try {
+			attempt = callable.call();
+		} catch (Exception e) {
+			attempt = Futures.immediateFailedFuture(e);
+		}
+
+		Futures.addCallback(attempt, new FutureCallback<T>() {
+			@Override
+			public void onSuccess(T result) {
+				if (breaker != null) {
+					breaker.onSuccess();
+				}
+				future.set(result);
+			}
+
+			@Override
+			public void onFailure(@Nonnull Throwable throwable) {
+				boolean retryable = throwable instanceof Exception && isRetryable(throwable);
+				if (breaker != null) {
+					record(breaker, retryable);
+				}
+
+				if (tries == 1 || !retryable) {
+					future.setException(throwable);
+					return;
+				}
+
+				exceptions.add((Exception) throwable);
+				if (!canRetry(retry)) {
+					future.setException(new RetryingException(new ArrayList<>(exceptions)));
+					return;
+				}
+
+				long delay = getDelay(retry);
+				log.debug("retrying in {}ms: {}", delay, throwable.toString());
+				Execute.in(delay, () -> attempt(endpoint, callable, future, retry + 1, exceptions));
+			}
+		}, MoreExecutors.directExecutor());
+	}
+
+	/**
+	 * Only retryable failures count against the breaker, since a caller error still means the endpoint answered.
+	 */
+	private static void record(@Nonnull CircuitBreaker breaker, boolean retryable) {
+		if (retryable) {
+			breaker.onFailure();
+		} else {
+			breaker.onSuccess();
+		}
+	}
+
+	private boolean canRetry(int retry) {
+		return retry + 1 < tries && (budget == null || budget.tryWithdraw());
+	}
+
+	@Nonnull
+	public static RetryPolicy from(@Nonnull Config config) {
+		checkNotNull(config);
+
+		Builder builder = builder()
+				.tries(config.getInt("retry.tries", 3))
+				.delay(config.getTime("retry.delay", "100ms"))
+				.maxDelay(config.getTime("retry.maxDelay", "30s"))
+				.multiplier(config.getDouble("retry.multiplier", 2))
+				.jitter(config.getBoolean("retry.jitter", true))
+				.breaker(config.getInt("retry.breaker.threshold", 0), config.getTime("retry.breaker.openTime", "30s"));
+
+		double ratio = config.getDouble("retry.budget.ratio", 0);
+		if (ratio > 0) {
+			builder.budget(new RetryBudget(ratio, config.getInt("retry.budget.minPerSecond", 10),
+					config.getInt("retry.budget.max", 100)));
+		}
+
+		return builder.build();
+	}
+
+	@Nonnull
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+		private int tries = 3;
+		private long delay = 100;
+		private long maxDelay = 30000;
+		private double multiplier = 2;
+		private boolean jitter = true;
+		private IntFunction<Number> delays;
+		private final List<Class<? extends Throwable>> retryOn = new ArrayList<>();
+		private final List<Class<? extends Throwable>> abortOn = new ArrayList<>();
+		private RetryBudget budget;
+		private int breakerThreshold;
+		private long breakerOpenTime = 30000;
+
+		@Nonnull
+		public Builder tries(int tries) {
+			checkArgument(tries > 0, "tries must be positive: %s", tries);
+			this.tries = tries;
+			return this;
+		}
+
+		@Nonnull
+		public Builder delay(long delay) {
+			this.delay = delay;
+			return this;
+		}
+
+		@Nonnull
+		public Builder maxDelay(long maxDelay) {
+			this.maxDelay = maxDelay;
+			return this;
+		}
+
+		@Nonnull
+		public Builder multiplier(double multiplier) {
+			this.multiplier = multiplier;
+			return this;
+		}
+
+		@Nonnull
+		public Builder jitter(boolean jitter) {
+			this.jitter = jitter;
+			return this;
+		}
+
+		/**
+		 * Uses the function of the retry number for delays instead of exponential backoff.
+		 */
+		@Nonnull
+		public Builder delays(@Nonnull IntFunction<Number> delays) {
+			this.delays = checkNotNull(delays);
+			return this;
+		}
+
+		/**
+		 * Only retries exceptions of these types, instead of all exceptions.
+		 */
+		@Nonnull
+		@SafeVarargs
+		public final Builder retryOn(@Nonnull Class<? extends Throwable>... classes) {
+			retryOn.addAll(Arrays.asList(classes));
+			return this;
+		}
+
+		/**
+		 * Never retries exceptions of these types.
+		 */
+		@Nonnull
+		@SafeVarargs
+		public final Builder abortOn(@Nonnull Class<? extends Throwable>... classes) {
+			abortOn.addAll(Arrays.asList(classes));
+			return this;
+		}
+
+		@Nonnull
+		public Builder budget(@Nonnull RetryBudget budget) {
+			this.budget = checkNotNull(budget);
+			return this;
+		}
+
+		/**
+		 * @param threshold consecutive failures that open an endpoint's breaker, or 0 for no breakers
+		 */
+		@Nonnull
+		public Builder breaker(int threshold, long openTime) {
+			breakerThreshold = threshold;
+			breakerOpenTime = openTime;
+			return this;
+		}
+
+		@Nonnull
+		public RetryPolicy build() {
+			return new RetryPolicy(this);
+		}
+	}
+}
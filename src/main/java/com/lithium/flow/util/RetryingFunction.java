@@ -18,19 +18,18 @@ package com.lithium.flow.util;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.function.IntFunction;
 
 import javax.annotation.Nonnull;
 
 /**
+ * Retries a function synchronously with a {@link RetryPolicy} of fixed or computed delays.
+ *
  * @author Matt Ayres
  */
 public class RetryingFunction<T, R, E extends Exception> implements CheckedFunction<T, R, E> {
-	private final IntFunction<Number> delay;
+	private final RetryPolicy policy;
 	private final CheckedFunction<T, R, E> function;
-	private final int tries;
 
 	public RetryingFunction(int tries, @Nonnull CheckedFunction<T, R, E> function) {
 		this(tries, 0, function);
@@ -41,37 +40,17 @@ public class RetryingFunction<T, R, E extends Exception> implements CheckedFunct
 	}
 
 	public RetryingFunction(int tries, @Nonnull IntFunction<Number> delay, @Nonnull CheckedFunction<T, R, E> function) {
-		this.delay = checkNotNull(delay);
+		this(RetryPolicy.builder().tries(tries).delays(delay).build(), function);
+	}
+
+	public RetryingFunction(@Nonnull RetryPolicy policy, @Nonnull CheckedFunction<T, R, E> function) {
+		this.policy = checkNotNull(policy);
 		this.function = checkNotNull(function);
-		this.tries = tries;
 	}
 
 	public R apply(@Nonnull T input) throws E {
 		checkNotNull(input);
-
-		if (tries == 1) {
-			return function.apply(input);
-		}
-
-		List<Exception> exceptions = null;
-
-		int i = 0;
-		do {
-			try {
-				return function.apply(input);
-			} catch (Exception e) {
-				if (exceptions == null) {
-					exceptions = new ArrayList<>();
-				}
-				exceptions.add(e);
-
-				if (!Sleep.softly(delay.apply(i).longValue())) {
-					break;
-				}
-			}
-		} while (++i < tries);
-
-		throw new RetryingException(exceptions);
+		return policy.call(() -> function.apply(input));
 	}
 
 	public R get(@Nonnull T input) throws E {
@@ -38,6 +38,10 @@ public class RetryingSupplier<T, E extends Exception> implements CheckedSupplier
 		function = new RetryingFunction<>(tries, delay, x -> supplier.get());
 	}
 
+	public RetryingSupplier(@Nonnull RetryPolicy policy, @Nonnull CheckedSupplier<T, E> supplier) {
+		function = new RetryingFunction<>(policy, x -> supplier.get());
+	}
+
 	public T get() throws E {
 		return function.get("");
 	}
@@ -21,13 +21,20 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.lithium.flow.config.Config;
 import com.lithium.flow.config.exception.IllegalConfigException;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 
@@ -36,6 +43,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 
 /**
  * @author Matt Ayres
@@ -48,11 +56,21 @@ public class Threader implements AutoCloseable {
 	public static final int DEFAULT_MAX_QUEUED = Integer.MAX_VALUE;
 	public static final int DEFAULT_NEEDLE_PERMITS = Integer.MAX_VALUE;
 	public static final boolean DEFAULT_DAEMON = false;
+	public static final long DEFAULT_RETRY_DELAY = 0;
 
 	private final ListeningExecutorService service;
+	private final boolean virtual;
+	private final FairQueue<LaneTask<?>> lanes = new FairQueue<>();
 	private final AtomicInteger remaining = new AtomicInteger();
 	private final AtomicInteger queued = new AtomicInteger();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notFull = lock.newCondition();
+	private final Condition finished = lock.newCondition();
+	private volatile int fullWaiters;
+	private volatile int finishWaiters;
 	private volatile int retries = DEFAULT_RETRIES;
+	private volatile long retryDelay = DEFAULT_RETRY_DELAY;
+	private volatile RetryPolicy retryPolicy;
 	private volatile int maxQueued = DEFAULT_MAX_QUEUED;
 	private volatile int needlePermits = DEFAULT_NEEDLE_PERMITS;
 
@@ -65,7 +83,20 @@ public class Threader implements AutoCloseable {
 	}
 
 	public Threader(@Nonnull ExecutorService service) {
+		this(service, false);
+	}
+
+	private Threader(@Nonnull ExecutorService service, boolean virtual) {
 		this.service = MoreExecutors.listeningDecorator(checkNotNull(service));
+		this.virtual = virtual;
+	}
+
+	/**
+	 * @return true if tasks run on virtual threads, in which case {@code maxQueued} limits running tasks as well as
+	 * queued ones.
+	 */
+	public boolean isVirtual() {
+		return virtual;
 	}
 
 	public int getRetries() {
@@ -84,6 +115,38 @@ public class Threader implements AutoCloseable {
 		return this;
 	}
 
+	public long getRetryDelay() {
+		return retryDelay;
+	}
+
+	@Nonnull
+	public Threader setRetryDelay(long retryDelay) {
+		this.retryDelay = retryDelay;
+		return this;
+	}
+
+	@Nonnull
+	public Threader withRetryDelay(long retryDelay) {
+		this.retryDelay = retryDelay;
+		return this;
+	}
+
+	@Nullable
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Uses the policy to classify failures and compute backoff delays for retries, in place of the fixed retry delay.
+	 * Retries are also set from the policy's tries.
+	 */
+	@Nonnull
+	public Threader withRetryPolicy(@Nonnull RetryPolicy retryPolicy) {
+		this.retryPolicy = checkNotNull(retryPolicy);
+		retries = retryPolicy.getTries() - 1;
+		return this;
+	}
+
 	public int getMaxQueued() {
 		return maxQueued;
 	}
@@ -91,13 +154,13 @@ public class Threader implements AutoCloseable {
 	@Nonnull
 	public Threader setMaxQueued(int maxQueued) {
 		this.maxQueued = maxQueued;
+		signal(notFull, fullWaiters);
 		return this;
 	}
 
 	@Nonnull
 	public Threader withMaxQueued(int maxQueued) {
-		this.maxQueued = maxQueued;
-		return this;
+		return setMaxQueued(maxQueued);
 	}
 
 	public int getNeedlePermits() {
@@ -123,40 +186,110 @@ public class Threader implements AutoCloseable {
 
 	@Nonnull
 	public <T> ListenableFuture<T> submit(@Nonnull String name, @Nonnull Callable<T> callable) {
-		return submit(name, callable, retries);
+		return submit(name, callable, retries, true);
 	}
 
+	/**
+	 * Submits a task to run before any waiting task of lower priority. Waiting tasks of the same priority take turns
+	 * by name, so a name with many tasks does not hold up other names. Unlike {@link #submit(String, Callable)},
+	 * the returned future only fails once all retries have failed.
+	 */
 	@Nonnull
-	private <T> ListenableFuture<T> submit(@Nonnull String name, @Nonnull Callable<T> callable, int retriesLeft) {
+	public <T> ListenableFuture<T> submit(@Nonnull String name, int priority, @Nonnull Callable<T> callable) {
 		checkNotNull(name);
 		checkNotNull(callable);
 
-		if (retriesLeft == retries) {
-			Sleep.until(() -> queued.get() < maxQueued);
+		SettableFuture<T> future = SettableFuture.create();
+		submitLane(new LaneTask<>(name, priority, callable, future, retries), true);
+		return future;
+	}
+
+	private void submitLane(@Nonnull LaneTask<?> task, boolean admit) {
+		lanes.add(task.name, task.priority, task);
+		submit("lanes", () -> {
+			checkNotNull(lanes.poll()).run();
+			return null;
+		}, 0, admit);
+	}
+
+	@Nonnull
+	private <T> ListenableFuture<T> submit(@Nonnull String name, @Nonnull Callable<T> callable, int retriesLeft,
+			boolean admit) {
+		checkNotNull(name);
+		checkNotNull(callable);
+
+		if (admit) {
+			awaitNotFull();
 		}
 
 		remaining.incrementAndGet();
 		queued.incrementAndGet();
 
-		ListenableFuture<T> future = service.submit(() -> {
-			queued.decrementAndGet();
-			return callable.call();
-		});
+		// a task only stops counting as remaining once it has both exited and had its callback run, since a
+		// cancelled task completes its future while it may still be running
+		AtomicBoolean started = new AtomicBoolean();
+		AtomicInteger arrivals = new AtomicInteger(2);
+		Runnable arrive = () -> {
+			if (arrivals.decrementAndGet() == 0) {
+				decrementRemaining();
+			}
+		};
+
+		ListenableFuture<T> future;
+		try {
+			future = service.submit(() -> {
+				boolean first = started.compareAndSet(false, true);
+				try {
+					if (!virtual && first) {
+						dequeue();
+					}
+					return callable.call();
+				} finally {
+					if (first) {
+						if (virtual) {
+							dequeue();
+						}
+						arrive.run();
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			dequeue();
+			decrementRemaining();
+			throw e;
+		}
 
 		Futures.addCallback(future, new FutureCallback<T>() {
 			@Override
 			public void onSuccess(T object) {
-				remaining.decrementAndGet();
+				arrive.run();
 				log.debug("execution finished: {}", name);
 			}
 
 			@Override
 			public void onFailure(@Nonnull Throwable throwable) {
-				if (retriesLeft > 0) {
-					submit(name, callable, retriesLeft - 1);
+				if (future.isCancelled()) {
+					if (started.compareAndSet(false, true)) {
+						dequeue();
+						arrive.run();
+					}
+					arrive.run();
+					log.debug("execution cancelled: {}", name);
+					return;
+				}
+
+				if (shouldRetry(retriesLeft, throwable)) {
+					remaining.incrementAndGet();
+					Execute.in(getRetryDelay(retriesLeft), () -> {
+						try {
+							submit(name, callable, retriesLeft - 1, false);
+						} finally {
+							decrementRemaining();
+						}
+					});
 				}
 
-				remaining.decrementAndGet();
+				arrive.run();
 				log.warn("execution failed: {} ({} retries left)", name, retriesLeft, throwable);
 			}
 		}, MoreExecutors.directExecutor());
@@ -164,6 +297,56 @@ public class Threader implements AutoCloseable {
 		return future;
 	}
 
+	private boolean shouldRetry(int retriesLeft, @Nonnull Throwable throwable) {
+		RetryPolicy retryPolicy = this.retryPolicy;
+		return retriesLeft > 0 && (retryPolicy == null || retryPolicy.isRetryable(throwable));
+	}
+
+	private long getRetryDelay(int retriesLeft) {
+		RetryPolicy retryPolicy = this.retryPolicy;
+		return retryPolicy == null ? retryDelay : retryPolicy.getDelay(Math.max(0, retries - retriesLeft));
+	}
+
+	private void awaitNotFull() {
+		if (queued.get() < maxQueued) {
+			return;
+		}
+
+		lock.lock();
+		try {
+			fullWaiters++;
+			while (queued.get() >= maxQueued) {
+				notFull.awaitUninterruptibly();
+			}
+		} finally {
+			fullWaiters--;
+			lock.unlock();
+		}
+	}
+
+	private void dequeue() {
+		if (queued.decrementAndGet() < maxQueued) {
+			signal(notFull, fullWaiters);
+		}
+	}
+
+	private void decrementRemaining() {
+		if (remaining.decrementAndGet() == 0) {
+			signal(finished, finishWaiters);
+		}
+	}
+
+	private void signal(@Nonnull Condition condition, int waiters) {
+		if (waiters > 0) {
+			lock.lock();
+			try {
+				condition.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
 	/**
 	 * @deprecated Use {@link #close()} instead.
 	 */
@@ -186,8 +369,21 @@ public class Threader implements AutoCloseable {
 	}
 
 	public boolean close(long timeout) {
-		long endTime = timeout == -1 ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
-		Sleep.until(() -> remaining.get() == 0 || System.currentTimeMillis() >= endTime);
+		long nanos = timeout == -1 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(timeout);
+
+		lock.lock();
+		try {
+			finishWaiters++;
+			while (remaining.get() > 0 && nanos > 0) {
+				nanos = finished.awaitNanos(nanos);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			finishWaiters--;
+			lock.unlock();
+		}
+
 		service.shutdown();
 		return remaining.get() == 0;
 	}
@@ -210,9 +406,18 @@ public class Threader implements AutoCloseable {
 		return new Needle<>(this, permits);
 	}
 
+	/**
+	 * @return a threader on a work-stealing pool with a thread per processor, where tasks submitted from within a
+	 * task are queued locally to the submitting thread.
+	 */
 	@Nonnull
 	public static Threader forCompute() {
-		return new Threader(Runtime.getRuntime().availableProcessors());
+		return forCompute(Runtime.getRuntime().availableProcessors());
+	}
+
+	@Nonnull
+	public static Threader forCompute(int threads) {
+		return new Threader(buildComputeService(threads));
 	}
 
 	@Nonnull
@@ -225,16 +430,38 @@ public class Threader implements AutoCloseable {
 		return new Threader(buildService(threads, true));
 	}
 
+	/**
+	 * @return a threader running each task on a new virtual thread, or on a cached thread pool if the runtime does
+	 * not support virtual threads.
+	 */
+	@Nonnull
+	public static Threader forVirtual() {
+		ExecutorService service = buildVirtualService();
+		return service != null ? new Threader(service, true) : forDaemon();
+	}
+
 	@Nonnull
 	public static Threader build(@Nonnull Config config) {
-		int threads = getThreads(config);
 		int retries = config.getInt("retries", DEFAULT_RETRIES);
 		int maxQueued = config.getInt("maxQueued", DEFAULT_MAX_QUEUED);
 		int needlePermits = config.getInt("needlePermits", DEFAULT_NEEDLE_PERMITS);
 		boolean daemon = config.getBoolean("daemon", DEFAULT_DAEMON);
+		long retryDelay = config.getTime("retryDelay", String.valueOf(DEFAULT_RETRY_DELAY));
+
+		Threader threader;
+		if (config.getString("threads", "").equals("virtual")) {
+			ExecutorService service = buildVirtualService();
+			threader = service != null ? new Threader(service, true) : new Threader(buildService(-1, daemon));
+		} else if (config.getBoolean("workStealing", false)) {
+			int threads = getThreads(config);
+			threader = forCompute(threads == -1 ? Runtime.getRuntime().availableProcessors() : threads);
+		} else {
+			threader = new Threader(buildService(getThreads(config), daemon));
+		}
 
-		return new Threader(buildService(threads, daemon))
+		return threader
 				.withRetries(retries)
+				.withRetryDelay(retryDelay)
 				.withMaxQueued(maxQueued)
 				.withNeedlePermits(needlePermits);
 	}
@@ -267,4 +494,61 @@ public class Threader implements AutoCloseable {
 				? Executors.newCachedThreadPool(daemonFactory)
 				: Executors.newFixedThreadPool(threads, daemonFactory);
 	}
+
+	@Nonnull
+	private static ExecutorService buildComputeService(int threads) {
+		return new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+	}
+
+	@Nullable
+	private static ExecutorService buildVirtualService() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			log.warn("virtual threads not supported, using platform threads", e);
+			return null;
+		}
+	}
+
+	private class LaneTask<T> implements Runnable {
+		private final String name;
+		private final int priority;
+		private final Callable<T> callable;
+		private final SettableFuture<T> future;
+		private final int retriesLeft;
+
+		private LaneTask(@Nonnull String name, int priority, @Nonnull Callable<T> callable,
+				@Nonnull SettableFuture<T> future, int retriesLeft) {
+			this.name = name;
+			this.priority = priority;
+			this.callable = callable;
+			this.future = future;
+			this.retriesLeft = retriesLeft;
+		}
+
+		@Override
+		public void run() {
+			try {
+				future.set(callable.call());
+				log.debug("execution finished: {}", name);
+			} catch (Throwable throwable) {
+				log.warn("execution failed: {} ({} retries left)", name, retriesLeft, throwable);
+
+				if (shouldRetry(retriesLeft, throwable)) {
+					LaneTask<T> retry = new LaneTask<>(name, priority, callable, future, retriesLeft - 1);
+					remaining.incrementAndGet();
+					Execute.in(getRetryDelay(retriesLeft), () -> {
+						try {
+							submitLane(retry, false);
+						} finally {
+							decrementRemaining();
+						}
+					});
+				} else {
+					future.setException(throwable);
+				}
+			}
+		}
+	}
 }
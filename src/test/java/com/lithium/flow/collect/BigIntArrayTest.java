@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.collect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+/**
+ * @author Matt Ayres
+ */
+public class BigIntArrayTest {
+	@Test
+	public void testAddGetSet() {
+		BigIntArray array = new BigIntArray();
+		for (int i = 0; i < 100000; i++) {
+			array.add(i * 3);
+		}
+		assertEquals(100000, array.size());
+		assertEquals(0, array.get(0));
+		assertEquals(32767 * 3, array.get(32767));
+		assertEquals(32768 * 3, array.get(32768));
+		assertEquals(99999 * 3, array.get(99999));
+
+		array.set(32768, -1);
+		assertEquals(-1, array.get(32768));
+		assertEquals(32769 * 3, array.get(32769));
+	}
+
+	@Test
+	public void testBounds() {
+		BigIntArray array = new BigIntArray();
+		array.add(1);
+		try {
+			array.get(1);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+		try {
+			array.set(-1, 1);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testClear() {
+		BigIntArray array = new BigIntArray();
+		for (int i = 0; i < 40000; i++) {
+			array.add(i);
+		}
+		array.clear();
+		assertEquals(0, array.size());
+
+		array.add(7);
+		assertEquals(1, array.size());
+		assertEquals(7, array.get(0));
+	}
+
+	@Test
+	public void testForEach() {
+		BigIntArray array = new BigIntArray();
+		for (int i = 0; i < 70000; i++) {
+			array.add(i);
+		}
+
+		long[] sum = new long[1];
+		int[] count = new int[1];
+		array.forEach(value -> {
+			assertEquals(count[0]++, value);
+			sum[0] += value;
+		});
+		assertEquals(70000, count[0]);
+		assertEquals(69999L * 70000 / 2, sum[0]);
+	}
+
+	@Test
+	public void testMapped() throws IOException {
+		File file = File.createTempFile("array", ".bin");
+		file.delete();
+		file.deleteOnExit();
+
+		try (BigIntArray array = BigIntArray.mapped(file.getPath())) {
+			for (int i = 0; i < 1100000; i++) {
+				array.add(i);
+			}
+			array.set(5, -5);
+		}
+
+		try (BigIntArray array = BigIntArray.mapped(file.getPath())) {
+			assertEquals(1100000, array.size());
+			assertEquals(-5, array.get(5));
+			assertEquals(1048576, array.get(1048576));
+			assertEquals(1099999, array.get(1099999));
+			array.add(-1);
+		}
+
+		try (BigIntArray array = BigIntArray.mapped(file.getPath())) {
+			assertEquals(1100001, array.size());
+			assertEquals(-1, array.get(1100000));
+		}
+	}
+
+	@Test
+	public void testNotArrayFile() throws IOException {
+		File file = File.createTempFile("array", ".bin");
+		file.deleteOnExit();
+		Files.write(new byte[32], file);
+		try {
+			BigIntArray.mapped(file.getPath()).close();
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
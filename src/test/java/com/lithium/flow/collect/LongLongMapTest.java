@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.collect;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class LongLongMapTest {
+	@Test
+	public void testPutGetRemove() {
+		LongLongMap map = new LongLongMap(4, -1);
+		assertEquals(-1, map.get(1));
+		assertEquals(-1, map.put(1, 10));
+		assertEquals(10, map.put(1, 11));
+		assertEquals(-1, map.put(0, 20));
+		assertEquals(-1, map.put(-5, 30));
+		assertEquals(3, map.size());
+		assertEquals(11, map.get(1));
+		assertEquals(20, map.get(0));
+		assertEquals(30, map.get(-5));
+		assertTrue(map.containsKey(0));
+
+		assertEquals(20, map.remove(0));
+		assertFalse(map.containsKey(0));
+		assertEquals(-1, map.remove(0));
+		assertEquals(11, map.remove(1));
+		assertEquals(-1, map.remove(1));
+		assertEquals(1, map.size());
+		assertEquals(7, map.getOrDefault(1, 7));
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey(-5));
+	}
+
+	@Test
+	public void testAddTo() {
+		LongLongMap map = new LongLongMap();
+		assertEquals(3, map.addTo(5, 3));
+		assertEquals(5, map.addTo(5, 2));
+		assertEquals(4, map.addTo(0, 4));
+		assertEquals(5, map.get(5));
+	}
+
+	@Test
+	public void testKeys() {
+		LongLongMap map = new LongLongMap();
+		map.put(3, 1);
+		map.put(0, 2);
+		map.put(1, 3);
+		long[] keys = map.keys();
+		Arrays.sort(keys);
+		assertArrayEquals(new long[] {0, 1, 3}, keys);
+	}
+
+	@Test
+	public void testRandom() {
+		// a small key range keeps probe chains long, exercising deletion with backward shifts
+		Random random = new Random(1);
+		Map<Long, Long> expected = new HashMap<>();
+		LongLongMap map = new LongLongMap();
+		for (int i = 0; i < 100000; i++) {
+			long key = (long) random.nextInt(2000);
+			if (random.nextInt(3) == 0) {
+				Long previous = expected.remove(key);
+				assertEquals(previous == null ? 0 : previous, map.remove(key));
+			} else {
+				long value = (long) random.nextInt();
+				Long previous = expected.put(key, value);
+				assertEquals(previous == null ? 0 : previous, map.put(key, value));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		for (int key = 0; key < 2000; key++) {
+			assertEquals(expected.containsKey((long) key), map.containsKey(key));
+		}
+
+		Map<Long, Long> actual = new HashMap<>();
+		map.forEach(actual::put);
+		assertEquals(expected, actual);
+	}
+}
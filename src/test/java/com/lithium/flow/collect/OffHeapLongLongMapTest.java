@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.collect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+/**
+ * @author Matt Ayres
+ */
+public class OffHeapLongLongMapTest {
+	@Test
+	public void testDirect() {
+		Random random = new Random(1);
+		Map<Long, Long> expected = new HashMap<>();
+		OffHeapLongLongMap map = OffHeapLongLongMap.direct(4, -1);
+		for (int i = 0; i < 50000; i++) {
+			long key = random.nextInt(2000);
+			if (random.nextInt(3) == 0) {
+				Long previous = expected.remove(key);
+				assertEquals(previous == null ? -1 : previous, map.remove(key));
+			} else {
+				long value = random.nextLong();
+				Long previous = expected.put(key, value);
+				assertEquals(previous == null ? -1 : previous, map.put(key, value));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		Map<Long, Long> actual = new HashMap<>();
+		map.forEach(actual::put);
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testMapped() throws IOException {
+		File file = File.createTempFile("map", ".bin");
+		file.deleteOnExit();
+		try (OffHeapLongLongMap map = OffHeapLongLongMap.mapped(file, 100, -1)) {
+			for (long i = 0; i < 50; i++) {
+				map.put(i, i * 10);
+			}
+			map.remove(7);
+			map.remove(0);
+		}
+
+		try (OffHeapLongLongMap map = OffHeapLongLongMap.mapped(file, 100, -1)) {
+			assertEquals(48, map.size());
+			assertFalse(map.containsKey(0));
+			assertFalse(map.containsKey(7));
+			assertEquals(490, map.get(49));
+			assertEquals(-1, map.get(50));
+		}
+	}
+
+	@Test
+	public void testMappedHeader() throws IOException {
+		File file = File.createTempFile("map", ".bin");
+		file.deleteOnExit();
+		try (OffHeapLongLongMap map = OffHeapLongLongMap.mapped(file, 10, -1)) {
+			// a new file is readable before the first flush
+			try (OffHeapLongLongMap other = OffHeapLongLongMap.mapped(file, 10, -1)) {
+				assertTrue(other.isEmpty());
+			}
+			assertTrue(map.isEmpty());
+		}
+	}
+
+	@Test
+	public void testMappedFull() throws IOException {
+		File file = File.createTempFile("map", ".bin");
+		file.deleteOnExit();
+		try (OffHeapLongLongMap map = OffHeapLongLongMap.mapped(file, 4, -1)) {
+			int count = 0;
+			try {
+				while (true) {
+					map.put(count + 1, count);
+					count++;
+				}
+			} catch (IllegalStateException e) {
+				// full
+			}
+
+			assertEquals(count, map.size());
+			assertFalse(map.containsKey(count + 1));
+			assertEquals(count - 1, map.put(count, 5));
+			assertEquals(5, map.remove(count));
+			assertEquals(-1, map.put(count + 1, count));
+		}
+	}
+
+	@Test
+	public void testNotMapFile() throws IOException {
+		File file = File.createTempFile("map", ".bin");
+		file.deleteOnExit();
+		Files.write(new byte[64], file);
+		try {
+			OffHeapLongLongMap.mapped(file, 10, -1).close();
+			fail();
+		} catch (IOException e) {
+			assertEquals("not a mapped map file", e.getMessage());
+		}
+	}
+}
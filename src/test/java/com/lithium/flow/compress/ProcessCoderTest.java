@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.compress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.lithium.flow.util.Daemons;
+import com.lithium.flow.util.Sleep;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class ProcessCoderTest {
+	private static final List<String> CAT = Collections.singletonList("cat");
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		// larger than the os pipe buffers, so both directions must be pumped at once
+		byte[] bytes = new byte[4 * 1024 * 1024 + 7];
+		new Random(7).nextBytes(bytes);
+		Coder coder = new ProcessCoder("cat", CAT, CAT);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (OutputStream out = coder.wrapOut(baos, 0)) {
+			out.write(bytes);
+		}
+		assertArrayEquals(bytes, baos.toByteArray());
+
+		try (InputStream in = coder.wrapIn(new ByteArrayInputStream(bytes))) {
+			assertArrayEquals(bytes, IOUtils.toByteArray(in));
+		}
+	}
+
+	@Test
+	public void testExitCode() throws IOException {
+		List<String> fail = Arrays.asList("sh", "-c", "cat > /dev/null; echo oops >&2; exit 3");
+		Coder coder = new ProcessCoder("fail", fail, fail);
+
+		OutputStream out = coder.wrapOut(new ByteArrayOutputStream(), 0);
+		out.write(new byte[100]);
+		try {
+			out.close();
+			fail("exit code was ignored");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("exit code 3: oops"));
+		}
+
+		InputStream in = coder.wrapIn(new ByteArrayInputStream(new byte[100]));
+		IOUtils.toByteArray(in);
+		try {
+			in.close();
+			fail("exit code was ignored");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("exit code 3: oops"));
+		}
+	}
+
+	@Test
+	public void testPumpFailure() throws IOException {
+		Coder coder = new ProcessCoder("cat", CAT, CAT);
+		OutputStream failOut = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("fail");
+			}
+		};
+
+		OutputStream out = coder.wrapOut(failOut, 0);
+		out.write(new byte[100]);
+		try {
+			out.close();
+			fail("pump failure was ignored");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("fail"));
+		}
+	}
+
+	@Test
+	public void testSourceFailure() throws IOException {
+		Coder coder = new ProcessCoder("cat", CAT, CAT);
+		InputStream failIn = new InputStream() {
+			private int count;
+
+			@Override
+			public int read() throws IOException {
+				if (++count > 100) {
+					throw new IOException("fail");
+				}
+				return 0;
+			}
+		};
+
+		// the process exits cleanly on a truncated input, so only the pump knows the input was cut short
+		InputStream in = coder.wrapIn(failIn);
+		IOUtils.toByteArray(in);
+		try {
+			in.close();
+			fail("pump failure was ignored");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("fail"));
+		}
+	}
+
+	@Test
+	public void testNoPumpThreads() throws IOException {
+		byte[] bytes = new byte[1024 * 1024 + 7];
+		new Random(7).nextBytes(bytes);
+		Coder coder = new ProcessCoder("cat", CAT, CAT);
+
+		CountDownLatch latch = new CountDownLatch(1);
+		try {
+			try {
+				while (true) {
+					Daemons.execute(() -> Sleep.softly(latch::await));
+				}
+			} catch (RejectedExecutionException e) {
+				// every daemon is busy
+			}
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			try (OutputStream out = coder.wrapOut(baos, 0)) {
+				out.write(bytes);
+			}
+			assertArrayEquals(bytes, baos.toByteArray());
+
+			try (InputStream in = coder.wrapIn(new ByteArrayInputStream(bytes))) {
+				assertArrayEquals(bytes, IOUtils.toByteArray(in));
+			}
+		} finally {
+			latch.countDown();
+		}
+	}
+}
@@ -32,6 +32,7 @@ import java.util.Map;
 
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
 /**
@@ -286,6 +287,73 @@ public class BaseConfigTest {
 		new BaseConfig("test", store("key", "${key2}value", "key2", "${key}value")).getString("key");
 	}
 
+	@Test
+	public void testPrefixKeys() {
+		BaseConfig config = new BaseConfig("test", store("a.b", "1", "a.c.d", "2", "ab", "3", "a", "4", "b.a.x", "5"));
+		assertEquals(ImmutableSet.of("a.b", "a.c.d"), config.getPrefixKeys("a"));
+		assertEquals(ImmutableSet.of("a.c.d"), config.getPrefixKeys("a.c"));
+		assertEquals(ImmutableSet.of(), config.getPrefixKeys("c"));
+	}
+
+	@Test
+	public void testPrefixConfigKeys() {
+		Config config = new BaseConfig("test", store("x", "1", "p.x", "2", "p.y.z", "3", "y.w", "4")).prefix("p");
+		assertEquals(ImmutableSet.of("x", "p.x", "p.y.z", "y.w", "y.z"), config.keySet());
+		assertEquals(ImmutableSet.of("y.w", "y.z"), config.getPrefixKeys("y"));
+		assertEquals("2", config.asRawMap().get("x"));
+		assertEquals(map("w", "4", "z", "3"), toMap(config.subset("y")));
+	}
+
+	@Test
+	public void testMutableStore() {
+		Store store = store("a.b", "1");
+		BaseConfig config = new BaseConfig("test", store);
+		assertEquals(ImmutableSet.of("a.b"), config.keySet());
+		assertEquals(map("a.b", "1"), config.asRawMap());
+
+		store.putValue("a.c", "2");
+		assertEquals(ImmutableSet.of("a.b", "a.c"), config.keySet());
+		assertEquals(ImmutableSet.of("a.b", "a.c"), config.getPrefixKeys("a"));
+		assertEquals(map("a.b", "1", "a.c", "2"), config.asRawMap());
+	}
+
+	@Test
+	public void testMutablePrefix() {
+		Store store = store("p.a.b", "1");
+		Config config = new BaseConfig("test", store).prefix("p");
+		assertEquals(ImmutableSet.of("a.b"), config.getPrefixKeys("a"));
+		assertTrue(config.keySet().contains("a.b"));
+
+		store.putValue("p.a.c", "2");
+		assertEquals(ImmutableSet.of("a.b", "a.c"), config.getPrefixKeys("a"));
+		assertTrue(config.keySet().contains("a.c"));
+		assertEquals("2", config.asRawMap().get("a.c"));
+	}
+
+	@Test
+	public void testSnapshotMutableDefaults() {
+		Store store = store("a.b", "1");
+		Config config = BaseConfig.snapshot("test", map("a.c", "2"), new BaseConfig("defaults", store), false);
+		assertEquals(ImmutableSet.of("a.b", "a.c"), config.getPrefixKeys("a"));
+
+		store.putValue("a.d", "3");
+		assertEquals(ImmutableSet.of("a.b", "a.c", "a.d"), config.getPrefixKeys("a"));
+		assertEquals(ImmutableSet.of("a.b", "a.c", "a.d"), config.keySet());
+		assertEquals("3", config.asRawMap().get("a.d"));
+	}
+
+	@Test
+	public void testBuiltSnapshot() {
+		ConfigBuilder builder = Configs.newBuilder().setString("a.b", "1");
+		Config config = builder.build();
+		assertEquals(ImmutableSet.of("a.b"), config.keySet());
+
+		builder.setString("a.c", "2");
+		assertEquals(ImmutableSet.of("a.b"), config.keySet());
+		assertEquals(ImmutableSet.of("a.b"), config.getPrefixKeys("a"));
+		assertEquals(ImmutableSet.of("a.b", "a.c"), builder.build().keySet());
+	}
+
 	private List<String> list(String... values) {
 		return Lists.newArrayList(values);
 	}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.lithium.flow.config.exception.IllegalConfigException;
+import com.lithium.flow.store.MemoryStore;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class CompiledConfigTest {
+	@Test
+	public void testValues() {
+		Config config = config("a", "1", "b", "${a}0", "time", "5s", "list", "x, y z", "flag", "true").compile();
+		assertEquals("10", config.getString("b"));
+		assertEquals(10, config.getInt("b"));
+		assertEquals(10L, config.getLong("b"));
+		assertEquals(5000L, config.getTime("time"));
+		assertEquals(1.0, config.getDouble("a"), 0.0);
+		assertTrue(config.getBoolean("flag"));
+		assertEquals(Arrays.asList("x", "y", "z"), config.getList("list"));
+		assertSame(config.getList("list"), config.getList("list"));
+		assertEquals("${a}0", config.getRaw("b"));
+	}
+
+	@Test
+	public void testDefaults() {
+		Config config = config("a", "1").compile();
+		assertEquals(7, config.getInt("missing", 7));
+		assertEquals("def", config.getString("missing", "def"));
+		assertEquals(1000L, config.getTime("missing", "1s"));
+		assertFalse(config.containsKey("missing"));
+		assertEquals(Arrays.asList("q"), config.getList("missing", Arrays.asList("q")));
+	}
+
+	@Test(expected = IllegalConfigException.class)
+	public void testMissing() {
+		config("a", "1").compile().getString("missing");
+	}
+
+	@Test
+	public void testMissingAllowUndefined() {
+		Config config = new BaseConfig("test", new MemoryStore(map("a", "${b}")), null, true).compile();
+		assertNull(config.getString("missing"));
+		assertEquals(0, config.getInt("missing"));
+		assertEquals("${b}", config.getString("a"));
+	}
+
+	@Test
+	public void testRecursionOnAccess() {
+		Config config = config("key", "${key}value", "other", "value").compile();
+		assertEquals("value", config.getString("other"));
+		assertFalse(config.containsKey("key"));
+		try {
+			config.getString("key");
+		} catch (IllegalConfigException e) {
+			assertEquals("recursive", e.getType());
+			return;
+		}
+		throw new AssertionError();
+	}
+
+	@Test
+	public void testPrefix() {
+		Config config = config("name", "base", "foo.name", "foo", "url", "http://${name}").prefix("foo").compile();
+		assertEquals("foo", config.getString("name"));
+		assertEquals("http://foo", config.getString("url"));
+		assertEquals("foo", config.getString("foo.name"));
+	}
+
+	@Test
+	public void testPrefixOfCompiled() {
+		Config config = config("name", "base", "foo.name", "foo", "url", "http://${name}").compile().prefix("foo");
+		assertEquals("http://foo", config.getString("url"));
+	}
+
+	private static Config config(String... keyValues) {
+		return new BaseConfig("test", new MemoryStore(map(keyValues)));
+	}
+
+	private static Map<String, String> map(String... keyValues) {
+		Map<String, String> map = new HashMap<>();
+		for (int i = 0; i < keyValues.length; i += 2) {
+			map.put(keyValues[i], keyValues[i + 1]);
+		}
+		return map;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class ConfigSnapshotTest {
+	private static final long OLD_TIME = 1000000000000L;
+
+	private File dir;
+	private File snapshots;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("snapshot").toFile();
+		snapshots = new File(dir, "snapshots");
+	}
+
+	@Test
+	public void testReuse() throws IOException {
+		File common = write("common.inc", "shared = yes\n");
+		File app = write("app.config", "!include " + common + "\nname = app\n");
+
+		Config config = ConfigSnapshot.load(snapshots, app.getPath(), null);
+		assertEquals("yes", config.getString("shared"));
+		assertEquals("app", config.getString("name"));
+		File snapshot = markSnapshot();
+
+		config = ConfigSnapshot.load(snapshots, app.getPath(), null);
+		assertEquals("yes", config.getString("shared"));
+		assertEquals("app", config.getString("name"));
+		assertEquals(OLD_TIME, snapshot.lastModified());
+	}
+
+	@Test
+	public void testIncludeChanged() throws IOException {
+		File common = write("common.inc", "shared = yes\n");
+		File app = write("app.config", "!include " + common + "\n");
+
+		assertEquals("yes", ConfigSnapshot.load(snapshots, app.getPath(), null).getString("shared"));
+		File snapshot = markSnapshot();
+
+		write("common.inc", "shared = no\n");
+		assertEquals("no", ConfigSnapshot.load(snapshots, app.getPath(), null).getString("shared"));
+		assertFalse(snapshot.lastModified() == OLD_TIME);
+	}
+
+	@Test
+	public void testMissingAppears() throws IOException {
+		// the include is looked up as is before under the root, so it is missing until written
+		File local = new File(dir, "local.inc");
+		File root = new File(dir, "root");
+		File rooted = new File(root, local.getPath());
+		assertTrue(rooted.getParentFile().mkdirs());
+		Files.write(rooted.toPath(), "source = root\n".getBytes(StandardCharsets.UTF_8));
+		File app = write("app.config", "!include " + local + "\n");
+
+		assertEquals("root", ConfigSnapshot.load(snapshots, app.getPath(), root.getPath()).getString("source"));
+		File snapshot = markSnapshot();
+		assertEquals("root", ConfigSnapshot.load(snapshots, app.getPath(), root.getPath()).getString("source"));
+		assertEquals(OLD_TIME, snapshot.lastModified());
+
+		write("local.inc", "source = local\n");
+		assertEquals("local", ConfigSnapshot.load(snapshots, app.getPath(), root.getPath()).getString("source"));
+		assertFalse(snapshot.lastModified() == OLD_TIME);
+	}
+
+	@Nonnull
+	private File markSnapshot() {
+		File[] files = snapshots.listFiles((folder, name) -> name.endsWith(".snapshot"));
+		assertTrue(files != null && files.length == 1);
+		assertTrue(files[0].setLastModified(OLD_TIME));
+		return files[0];
+	}
+
+	@Nonnull
+	private File write(@Nonnull String name, @Nonnull String text) throws IOException {
+		File file = new File(dir, name);
+		long time = file.exists() ? file.lastModified() : 0;
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+		if (time != 0) {
+			// make sure the change is visible even on file systems with coarse modification times
+			assertTrue(file.setLastModified(time + 2000));
+		}
+		return file;
+	}
+}
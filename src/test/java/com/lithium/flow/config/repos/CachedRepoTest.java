@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.config.repos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.lithium.flow.config.Config;
+import com.lithium.flow.config.RepoListener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class CachedRepoTest {
+	private static final long DURATION = 20;
+
+	@Test
+	public void testUnchanged() throws Exception {
+		TestRepo delegate = new TestRepo().set("a", "1");
+		CachedRepo repo = new CachedRepo(delegate, DURATION);
+		Config config = repo.getConfig("a");
+		assertEquals(1, delegate.getLoads());
+
+		for (int i = 0; i < 10; i++) {
+			Thread.sleep(DURATION);
+			assertSame(config, repo.getConfig("a"));
+		}
+		assertEquals(1, delegate.getLoads());
+	}
+
+	@Test
+	public void testChanged() throws Exception {
+		TestRepo delegate = new TestRepo().set("a", "1");
+		List<String> changes = Collections.synchronizedList(new ArrayList<>());
+		CachedRepo repo = new CachedRepo(delegate, DURATION).addListener(listener(changes));
+		assertEquals("1", repo.getConfig("a").getString("value"));
+
+		delegate.set("a", "2");
+		assertTrue(awaitValue(repo, "a", "2"));
+		assertEquals(Collections.singletonList("a:1->2"), changes);
+	}
+
+	@Test
+	public void testChangedWhileLoading() throws Exception {
+		TestRepo delegate = new TestRepo().set("a", "1");
+		delegate.onLoad(() -> delegate.onLoad(() -> {}).set("a", "2"));
+		CachedRepo repo = new CachedRepo(delegate, DURATION);
+
+		// the change made while loading is newer than the loaded version, so the next refresh picks it up
+		assertEquals("1", repo.getConfig("a").getString("value"));
+		assertTrue(awaitValue(repo, "a", "2"));
+	}
+
+	@Test
+	public void testUnversioned() throws Exception {
+		TestRepo delegate = new TestRepo().set("a", "1").withVersions(false);
+		CachedRepo repo = new CachedRepo(delegate, DURATION);
+		assertEquals("1", repo.getConfig("a").getString("value"));
+
+		delegate.set("a", "2");
+		assertTrue(awaitValue(repo, "a", "2"));
+	}
+
+	@Test
+	public void testNames() throws Exception {
+		TestRepo delegate = new TestRepo().set("a", "1").set("b", "1");
+		List<String> changes = Collections.synchronizedList(new ArrayList<>());
+		CachedRepo repo = new CachedRepo(delegate, DURATION).addListener(listener(changes));
+		assertEquals(Arrays.asList("a", "b"), repo.getNames());
+		repo.getConfig("a");
+
+		delegate.remove("a").set("c", "1");
+		long endTime = System.currentTimeMillis() + 10000;
+		while (!repo.getNames().equals(Arrays.asList("b", "c")) && System.currentTimeMillis() < endTime) {
+			Thread.sleep(DURATION);
+		}
+		assertEquals(Arrays.asList("b", "c"), repo.getNames());
+
+		changes.sort(null);
+		assertEquals(Arrays.asList("a:1->null", "c:null->1"), changes);
+	}
+
+	@Test
+	public void testNoCaching() throws Exception {
+		TestRepo delegate = new TestRepo().set("a", "1");
+		CachedRepo repo = new CachedRepo(delegate, 0);
+		assertEquals("1", repo.getConfig("a").getString("value"));
+		delegate.set("a", "2");
+		assertEquals("2", repo.getConfig("a").getString("value"));
+		assertEquals(2, delegate.getLoads());
+	}
+
+	@Test
+	public void testLongDuration() throws Exception {
+		TestRepo delegate = new TestRepo().set("a", "1");
+		CachedRepo repo = new CachedRepo(delegate, Long.MAX_VALUE / 2, TimeUnit.MILLISECONDS);
+		assertEquals("1", repo.getConfig("a").getString("value"));
+		delegate.set("a", "2");
+		assertEquals("1", repo.getConfig("a").getString("value"));
+	}
+
+	private static boolean awaitValue(@Nonnull CachedRepo repo, @Nonnull String name, @Nonnull String value)
+			throws IOException, InterruptedException {
+		long endTime = System.currentTimeMillis() + 10000;
+		while (System.currentTimeMillis() < endTime) {
+			if (repo.getConfig(name).getString("value").equals(value)) {
+				return true;
+			}
+			Thread.sleep(DURATION);
+		}
+		return false;
+	}
+
+	@Nonnull
+	static RepoListener listener(@Nonnull List<String> changes) {
+		return (name, oldConfig, newConfig) -> changes.add(name + ":" + value(oldConfig) + "->" + value(newConfig));
+	}
+
+	@Nonnull
+	private static String value(Config config) {
+		return config != null ? config.getString("value") : "null";
+	}
+}
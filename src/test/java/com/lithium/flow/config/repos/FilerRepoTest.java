@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.config.repos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.lithium.flow.config.Config;
+import com.lithium.flow.config.Configs;
+import com.lithium.flow.filer.DecoratedFiler;
+import com.lithium.flow.filer.Filer;
+import com.lithium.flow.filer.LocalFiler;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class FilerRepoTest {
+	private File dir;
+	private Map<String, AtomicInteger> reads;
+	private Filer filer;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("repo").toFile();
+		dir.deleteOnExit();
+		reads = new ConcurrentHashMap<>();
+		filer = new DecoratedFiler(new LocalFiler()) {
+			@Override
+			@Nonnull
+			public InputStream readFile(@Nonnull String path) throws IOException {
+				reads.computeIfAbsent(new File(path).getName(), name -> new AtomicInteger()).incrementAndGet();
+				return super.readFile(path);
+			}
+		};
+	}
+
+	@Test
+	public void testSharedInclude() throws IOException {
+		write("common.inc", "shared = yes\n");
+		for (int i = 0; i < 10; i++) {
+			write("app" + i + ".config", "!include " + dir + "/common.inc\nname = app" + i + "\n");
+		}
+
+		FilerRepo repo = newRepo(Collections.singletonList(dir.getPath()));
+		List<String> names = repo.getNames();
+		assertEquals(10, names.size());
+		for (String name : names) {
+			Config config = repo.getConfig(name);
+			assertEquals("yes", config.getString("shared"));
+			assertEquals(name, config.getString("name"));
+		}
+
+		assertEquals(1, reads.get("common.inc").get());
+		assertEquals(1, reads.get("app3.config").get());
+	}
+
+	@Test
+	public void testChangedInclude() throws IOException {
+		write("common.inc", "shared = yes\n");
+		write("app.config", "!include " + dir + "/common.inc\n");
+
+		FilerRepo repo = newRepo(Collections.singletonList(dir.getPath()))
+				.withCacheTime(0);
+		assertEquals("yes", repo.getConfig("app").getString("shared"));
+		assertEquals("yes", repo.getConfig("app").getString("shared"));
+		assertEquals(1, reads.get("common.inc").get());
+
+		write("common.inc", "shared = no, changed\n");
+		assertEquals("no, changed", repo.getConfig("app").getString("shared"));
+		assertEquals(2, reads.get("common.inc").get());
+	}
+
+	@Test
+	public void testSearchOrder() throws IOException {
+		File first = new File(dir, "first");
+		File second = new File(dir, "second");
+		first.mkdir();
+		second.mkdir();
+		Files.write(new File(second, "app.config").toPath(), "key = second\n".getBytes(StandardCharsets.UTF_8));
+
+		FilerRepo repo = newRepo(Arrays.asList(first.getPath(), second.getPath()));
+		assertEquals("second", repo.getConfig("app").getString("key"));
+
+		Files.write(new File(first, "app.config").toPath(), "key = first\n".getBytes(StandardCharsets.UTF_8));
+		assertEquals("first", repo.withCacheTime(0).getConfig("app").getString("key"));
+	}
+
+	@Test
+	public void testMissing() throws IOException {
+		FilerRepo repo = newRepo(Collections.singletonList(dir.getPath()));
+		try {
+			repo.getConfig("missing");
+			fail();
+		} catch (FileNotFoundException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testVersion() throws IOException {
+		write("common.inc", "shared = yes\n");
+		write("app.config", "!include " + dir + "/common.inc\n!include " + dir + "/local.inc\n");
+
+		FilerRepo repo = newRepo(Collections.singletonList(dir.getPath())).withCacheTime(0);
+		assertNull(repo.getVersion("app"));
+		repo.getConfig("app");
+		String version = repo.getVersion("app");
+		assertNotNull(version);
+		assertEquals(version, repo.getVersion("app"));
+
+		write("common.inc", "shared = no\n");
+		String changed = repo.getVersion("app");
+		assertFalse(version.equals(changed));
+
+		// an include that was missing when loaded is a dependency too
+		write("local.inc", "local = yes\n");
+		assertFalse(changed.equals(repo.getVersion("app")));
+	}
+
+	@Nonnull
+	private FilerRepo newRepo(@Nonnull List<String> paths) {
+		// only load through the filer so that reads can be counted
+		return new FilerRepo(Collections.singletonList(filer), paths, ".config", config -> config,
+				() -> Configs.newBuilder().resetLoaders());
+	}
+
+	private void write(@Nonnull String name, @Nonnull String text) throws IOException {
+		File file = new File(dir, name);
+		long time = file.exists() ? file.lastModified() : 0;
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+		if (time != 0) {
+			// make sure the change is visible even on file systems with coarse modification times
+			file.setLastModified(time + 2000);
+		}
+	}
+}
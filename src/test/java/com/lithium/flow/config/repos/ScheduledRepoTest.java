@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.config.repos;
+
+import static com.lithium.flow.config.repos.CachedRepoTest.listener;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class ScheduledRepoTest {
+	private static final long INTERVAL = 20;
+
+	@Test
+	public void testRefresh() throws Exception {
+		TestRepo delegate = new TestRepo().set("a", "1").set("b", "1");
+		List<String> changes = Collections.synchronizedList(new ArrayList<>());
+		ScheduledRepo repo = new ScheduledRepo(delegate, INTERVAL, 0).addListener(listener(changes));
+		try {
+			assertEquals(Arrays.asList("a", "b"), sorted(repo.getNames()));
+			assertEquals("1", repo.getVersion("a"));
+			assertEquals(2, delegate.getLoads());
+
+			// unchanged versions are not reloaded
+			Thread.sleep(INTERVAL * 5);
+			assertEquals(2, delegate.getLoads());
+
+			delegate.set("a", "2");
+			assertTrue(await(() -> repo.getConfig("a").getString("value").equals("2")));
+			assertTrue(await(() -> changes.size() > 0));
+			assertEquals(3, delegate.getLoads());
+			assertEquals("2", repo.getVersion("a"));
+			assertEquals(Collections.singletonList("a:1->2"), changes);
+		} finally {
+			repo.close();
+		}
+	}
+
+	@Test
+	public void testAddedRemoved() throws Exception {
+		TestRepo delegate = new TestRepo().set("a", "1").set("b", "1");
+		List<String> changes = Collections.synchronizedList(new ArrayList<>());
+		ScheduledRepo repo = new ScheduledRepo(delegate, INTERVAL, 0).addListener(listener(changes));
+		try {
+			assertEquals(2, repo.getConfigs().size());
+
+			delegate.remove("a").set("c", "1");
+			assertTrue(await(() -> sorted(repo.getNames()).equals(Arrays.asList("b", "c"))));
+			assertNull(repo.getVersion("a"));
+
+			// listeners are told after the new configs are visible
+			assertTrue(await(() -> changes.size() == 2));
+			changes.sort(null);
+			assertEquals(Arrays.asList("a:1->null", "c:null->1"), changes);
+		} finally {
+			repo.close();
+		}
+	}
+
+	@Test
+	public void testUnversioned() throws Exception {
+		TestRepo delegate = new TestRepo().set("a", "1").withVersions(false);
+		ScheduledRepo repo = new ScheduledRepo(delegate, INTERVAL, 0);
+		try {
+			assertEquals("1", repo.getConfig("a").getString("value"));
+			assertNull(repo.getVersion("a"));
+
+			delegate.set("a", "2");
+			assertTrue(await(() -> repo.getConfig("a").getString("value").equals("2")));
+		} finally {
+			repo.close();
+		}
+	}
+
+	@Nonnull
+	private static List<String> sorted(@Nonnull List<String> names) {
+		List<String> list = new ArrayList<>(names);
+		Collections.sort(list);
+		return list;
+	}
+
+	private static boolean await(@Nonnull Condition condition) throws Exception {
+		long endTime = System.currentTimeMillis() + 10000;
+		while (System.currentTimeMillis() < endTime) {
+			if (condition.check()) {
+				return true;
+			}
+			Thread.sleep(INTERVAL);
+		}
+		return false;
+	}
+
+	private interface Condition {
+		boolean check() throws Exception;
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.config.repos;
+
+import com.lithium.flow.config.Config;
+import com.lithium.flow.config.Configs;
+import com.lithium.flow.config.Repo;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * In-memory repo of configs with a single "value" key, versioned by the number of times each was set.
+ *
+ * @author Matt Ayres
+ */
+class TestRepo implements Repo {
+	private final Map<String, String> values = new ConcurrentSkipListMap<>();
+	private final Map<String, Integer> versions = new ConcurrentSkipListMap<>();
+	private final AtomicInteger loads = new AtomicInteger();
+	private volatile boolean versioned = true;
+	private volatile Runnable onLoad = () -> {};
+
+	@Nonnull
+	public TestRepo set(@Nonnull String name, @Nonnull String value) {
+		values.put(name, value);
+		versions.merge(name, 1, Integer::sum);
+		return this;
+	}
+
+	@Nonnull
+	public TestRepo remove(@Nonnull String name) {
+		values.remove(name);
+		versions.remove(name);
+		return this;
+	}
+
+	@Nonnull
+	public TestRepo withVersions(boolean versioned) {
+		this.versioned = versioned;
+		return this;
+	}
+
+	@Nonnull
+	public TestRepo onLoad(@Nonnull Runnable onLoad) {
+		this.onLoad = onLoad;
+		return this;
+	}
+
+	public int getLoads() {
+		return loads.get();
+	}
+
+	@Override
+	@Nonnull
+	public List<String> getNames() {
+		return new ArrayList<>(values.keySet());
+	}
+
+	@Override
+	@Nonnull
+	public Config getConfig(@Nonnull String name) throws IOException {
+		String value = values.get(name);
+		if (value == null) {
+			throw new FileNotFoundException(name);
+		}
+		loads.incrementAndGet();
+		Config config = Configs.newBuilder().setName(name).setString("value", value).build();
+		onLoad.run();
+		return config;
+	}
+
+	@Override
+	@Nullable
+	public String getVersion(@Nonnull String name) {
+		Integer version = versions.get(name);
+		return versioned && version != null ? String.valueOf(version) : null;
+	}
+
+	@Override
+	public void close() {
+	}
+}
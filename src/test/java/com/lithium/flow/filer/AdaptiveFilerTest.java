@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.filer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.lithium.flow.util.AdaptiveLimiter;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class AdaptiveFilerTest {
+	private static final Pattern THROTTLE = Pattern.compile("slow down");
+
+	@Test
+	public void testCloseHoldsPermit() throws IOException {
+		File dir = Files.createTempDirectory("adaptive").toFile();
+		AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 10, 0.5, 2);
+		AtomicInteger inFlight = new AtomicInteger(-1);
+		Filer delegate = new DecoratedFiler(new LocalFiler()) {
+			@Override
+			@Nonnull
+			public OutputStream writeFile(@Nonnull String path) throws IOException {
+				return new FilterOutputStream(super.writeFile(path)) {
+					@Override
+					public void close() throws IOException {
+						inFlight.set(limiter.getInFlight());
+						super.close();
+					}
+				};
+			}
+		};
+
+		Filer filer = new AdaptiveFiler(delegate, limiter, THROTTLE);
+		String path = dir.getPath() + "/file";
+		OutputStream out = filer.writeFile(path);
+		assertEquals(0, limiter.getInFlight());
+		out.write(1);
+		out.close();
+		out.close();
+
+		assertEquals(1, inFlight.get());
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(1, filer.getRecord(path).getSize());
+	}
+
+	@Test
+	public void testCloseInterrupted() throws IOException {
+		File dir = Files.createTempDirectory("adaptive").toFile();
+		AtomicBoolean interrupt = new AtomicBoolean();
+		AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 10, 0.5, 2) {
+			@Override
+			public long acquire() throws InterruptedException {
+				if (interrupt.get()) {
+					throw new InterruptedException();
+				}
+				return super.acquire();
+			}
+		};
+		AtomicBoolean closed = new AtomicBoolean();
+		Filer delegate = new DecoratedFiler(new LocalFiler()) {
+			@Override
+			@Nonnull
+			public OutputStream writeFile(@Nonnull String path) throws IOException {
+				return new FilterOutputStream(super.writeFile(path)) {
+					@Override
+					public void close() throws IOException {
+						closed.set(true);
+						super.close();
+					}
+				};
+			}
+		};
+
+		Filer filer = new AdaptiveFiler(delegate, limiter, THROTTLE);
+		OutputStream out = filer.writeFile(dir.getPath() + "/file");
+		interrupt.set(true);
+		try {
+			out.close();
+			fail();
+		} catch (InterruptedIOException e) {
+			assertTrue(Thread.interrupted());
+		}
+
+		assertTrue(closed.get());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void testThrottled() throws IOException {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(8, 1, 10, 0.5, 2);
+		Filer delegate = new DecoratedFiler(new LocalFiler()) {
+			@Override
+			public void deleteFile(@Nonnull String path) throws IOException {
+				throw new IOException("please slow down");
+			}
+		};
+
+		Filer filer = new AdaptiveFiler(delegate, limiter, THROTTLE);
+		try {
+			filer.deleteFile("/nowhere");
+			fail();
+		} catch (IOException e) {
+			assertEquals(4, limiter.getLimit());
+		}
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void testFindLimited() throws IOException {
+		File dir = Files.createTempDirectory("adaptive").toFile();
+		assertTrue(new File(dir, "a/b").mkdirs());
+		Files.write(new File(dir, "a/b/file1").toPath(), new byte[1]);
+		Files.write(new File(dir, "a/file2").toPath(), new byte[1]);
+
+		AtomicInteger lists = new AtomicInteger();
+		AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 10, 0.5, 2) {
+			@Override
+			public void onSuccess(@Nonnull String operation, long startTime) {
+				if (operation.equals("listRecords")) {
+					lists.incrementAndGet();
+				}
+				super.onSuccess(operation, startTime);
+			}
+		};
+
+		Filer filer = new AdaptiveFiler(new LocalFiler(), limiter, THROTTLE);
+		List<String> names = filer.findRecords(dir.getPath(), 1)
+				.filter(Record::isFile)
+				.map(Record::getName)
+				.sorted()
+				.collect(Collectors.toList());
+		assertEquals(2, names.size());
+		assertEquals("file1", names.get(0));
+		assertTrue(lists.get() >= 3);
+	}
+}
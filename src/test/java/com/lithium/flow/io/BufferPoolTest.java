@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class BufferPoolTest {
+	@Test
+	public void testSizeClasses() {
+		BufferPool pool = new BufferPool(false, 4);
+		assertEquals(BufferPool.MIN_SIZE, pool.lease(0).capacity());
+		assertEquals(BufferPool.MIN_SIZE, pool.lease(BufferPool.MIN_SIZE).capacity());
+		assertEquals(BufferPool.MIN_SIZE * 2, pool.lease(BufferPool.MIN_SIZE + 1).capacity());
+		assertEquals(BufferPool.MAX_SIZE, pool.lease(BufferPool.MAX_SIZE).capacity());
+		assertEquals(BufferPool.MAX_SIZE + 1, pool.lease(BufferPool.MAX_SIZE + 1).capacity());
+	}
+
+	@Test
+	public void testReuse() {
+		BufferPool pool = new BufferPool(false, 4);
+		ByteBuffer buffer = pool.lease(5000);
+		buffer.putInt(7);
+		pool.release(buffer);
+
+		ByteBuffer reused = pool.lease(6000);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(reused.capacity(), reused.limit());
+
+		assertEquals(2, pool.getLeases());
+		assertEquals(1, pool.getHits());
+		assertEquals(1, pool.getMisses());
+		assertEquals(0, pool.getPooled());
+	}
+
+	@Test
+	public void testDrops() {
+		BufferPool pool = new BufferPool(false, 1);
+		pool.release(pool.lease(100));
+		pool.release(ByteBuffer.allocate(BufferPool.MIN_SIZE));
+		pool.release(ByteBuffer.allocate(100));
+		pool.release(ByteBuffer.allocateDirect(BufferPool.MIN_SIZE));
+		pool.release(pool.lease(BufferPool.MAX_SIZE + 1));
+
+		assertEquals(1, pool.getPooled());
+		assertEquals(4, pool.getDrops());
+	}
+
+	@Test
+	public void testDirect() {
+		BufferPool pool = new BufferPool(true, 1);
+		ByteBuffer buffer = pool.lease(100);
+		assertTrue(buffer.isDirect());
+		pool.release(buffer);
+		assertSame(buffer, pool.lease(100));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDirectArray() {
+		new BufferPool(true, 1).leaseArray(100);
+	}
+}
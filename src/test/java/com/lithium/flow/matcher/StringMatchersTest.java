@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class StringMatchersTest {
+	@Test
+	public void testPrefix() {
+		StringMatcher matcher = StringMatchers.fromList(Arrays.asList("prefix:foo", "prefix:fob", "prefix:ba"));
+		assertTrue(matcher.matches("foo"));
+		assertTrue(matcher.matches("fobs"));
+		assertTrue(matcher.matches("bar"));
+		assertFalse(matcher.matches("fo"));
+		assertFalse(matcher.matches("b"));
+		assertFalse(matcher.matches("xfoo"));
+		assertFalse(matcher.matches(null));
+	}
+
+	@Test
+	public void testSuffix() {
+		StringMatcher matcher = StringMatchers.fromList(Arrays.asList("suffix:.gz", "suffix:.bz2", "suffix:z"));
+		assertTrue(matcher.matches("a.gz"));
+		assertTrue(matcher.matches(".bz2"));
+		assertTrue(matcher.matches("xyz"));
+		assertFalse(matcher.matches("bz2"));
+		assertFalse(matcher.matches("a.gz.txt"));
+	}
+
+	@Test
+	public void testContains() {
+		StringMatcher matcher = StringMatchers.fromList(Arrays.asList("contains:he", "contains:she",
+				"contains:his", "contains:hers"));
+		assertTrue(matcher.matches("ushers"));
+		assertTrue(matcher.matches("xhisx"));
+		assertTrue(matcher.matches("ahe"));
+		assertFalse(matcher.matches("hi"));
+		assertFalse(matcher.matches("shx"));
+		assertFalse(matcher.matches(""));
+	}
+
+	@Test
+	public void testLower() {
+		StringMatcher matcher = StringMatchers.fromList(Arrays.asList("lower.prefix:ab", "lower.prefix:cd",
+				"lower.suffix:ef", "lower.suffix:gh", "lower.contains:ij", "lower.contains:kl"));
+		assertTrue(matcher.matches("ABx"));
+		assertTrue(matcher.matches("xGH"));
+		assertTrue(matcher.matches("xIjx"));
+		assertFalse(matcher.matches("xAB"));
+	}
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(42);
+		for (int round = 0; round < 100; round++) {
+			List<String> prefixes = randomStrings(random, 20);
+			List<String> suffixes = randomStrings(random, 20);
+			List<String> contains = randomStrings(random, 20);
+
+			List<String> list = new ArrayList<>();
+			prefixes.forEach(value -> list.add("prefix:" + value));
+			suffixes.forEach(value -> list.add("suffix:" + value));
+			contains.forEach(value -> list.add("contains:" + value));
+			StringMatcher matcher = StringMatchers.fromList(list);
+
+			for (String input : randomStrings(random, 200)) {
+				boolean expected = prefixes.stream().anyMatch(input::startsWith)
+						|| suffixes.stream().anyMatch(input::endsWith)
+						|| contains.stream().anyMatch(input::contains);
+				assertEquals(input, expected, matcher.matches(input));
+			}
+		}
+	}
+
+	private static List<String> randomStrings(Random random, int count) {
+		List<String> list = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			char[] chars = new char[1 + random.nextInt(8)];
+			for (int j = 0; j < chars.length; j++) {
+				chars[j] = (char) ('a' + random.nextInt(3));
+			}
+			list.add(new String(chars));
+		}
+		return list;
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.lithium.flow.config.Configs;
+import com.lithium.flow.filer.Filer;
+import com.lithium.flow.filer.LocalFiler;
+import com.lithium.flow.filer.StreamerFiler;
+import com.lithium.flow.io.DataIo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.Key;
+import java.util.Collections;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class ChunkCryptTest {
+	private static final int CHUNK_SIZE = 64;
+	private static final Key KEY = new SecretKeySpec(new byte[16], "AES");
+
+	@Test
+	public void testEmpty() throws IOException {
+		testRoundTrip(0, 1);
+	}
+
+	@Test
+	public void testOneChunk() throws IOException {
+		testRoundTrip(CHUNK_SIZE, 1);
+		testRoundTrip(CHUNK_SIZE * 3, 3);
+	}
+
+	@Test
+	public void testPartialChunk() throws IOException {
+		testRoundTrip(CHUNK_SIZE * 5 + 17, 1);
+		testRoundTrip(CHUNK_SIZE * 5 + 17, 4);
+		testRoundTrip(1, 2);
+	}
+
+	private void testRoundTrip(int size, int threads) throws IOException {
+		byte[] plain = random(size);
+		byte[] sealed = encrypt(plain, threads);
+		assertArrayEquals(plain, decrypt(sealed, threads));
+
+		try (DataIo io = chunkIo(sealed, threads)) {
+			assertEquals(size, io.length());
+			byte[] read = new byte[size];
+			io.readFully(read);
+			assertArrayEquals(plain, read);
+		}
+	}
+
+	@Test
+	public void testRandomSeeks() throws IOException {
+		Random random = new Random(42);
+		byte[] plain = random(CHUNK_SIZE * 20 + 5);
+		for (int threads : new int[] { 1, 3 }) {
+			try (DataIo io = chunkIo(encrypt(plain, threads), threads)) {
+				for (int i = 0; i < 200; i++) {
+					int pos = random.nextInt(plain.length);
+					int len = random.nextInt(Math.min(plain.length - pos, CHUNK_SIZE * 4) + 1);
+					io.seek(pos);
+					byte[] read = new byte[len];
+					io.readFully(read);
+					assertArrayEquals(copy(plain, pos, len), read);
+					assertEquals(pos + len, io.getFilePointer());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testTamperedTag() throws IOException {
+		byte[] sealed = encrypt(random(CHUNK_SIZE * 3), 1);
+		sealed[sealed.length - 1] ^= 1;
+
+		try {
+			decrypt(sealed, 1);
+			fail("tampered tag was accepted");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("authentication"));
+		}
+
+		try (DataIo io = chunkIo(sealed, 1)) {
+			io.seek(CHUNK_SIZE * 2);
+			io.readFully(new byte[CHUNK_SIZE]);
+			fail("tampered tag was accepted");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("authentication"));
+		}
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		byte[] sealed = encrypt(random(CHUNK_SIZE * 3), 1);
+		byte[] truncated = copy(sealed, 0, sealed.length - CHUNK_SIZE - ChunkCipher.TAG_SIZE);
+		try {
+			decrypt(truncated, 1);
+			fail("truncated input was accepted");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("authentication"));
+		}
+	}
+
+	@Test
+	public void testStreamerFiler() throws IOException {
+		byte[] plain = random(CHUNK_SIZE * 10 + 3);
+		File file = File.createTempFile("crypt", ".bin");
+		try {
+			for (String mode : new String[] { "cbc", "gcm" }) {
+				CryptStreamer streamer = new CryptStreamer(Configs.newBuilder()
+						.setString("crypt.mode", mode)
+						.setString("crypt.chunk.size", String.valueOf(CHUNK_SIZE))
+						.build(), name -> Collections.singletonList(KEY));
+				try (Filer filer = new StreamerFiler(new LocalFiler(), streamer)) {
+					try (OutputStream out = filer.writeFile(file.getPath())) {
+						out.write(plain);
+					}
+					try (InputStream in = filer.readFile(file.getPath())) {
+						assertArrayEquals(plain, IOUtils.toByteArray(in));
+					}
+
+					if (mode.equals("gcm")) {
+						try (DataIo io = filer.openFile(file.getPath(), false)) {
+							byte[] read = new byte[(int) io.length()];
+							io.readFully(read);
+							assertArrayEquals(plain, read);
+						}
+					} else {
+						try {
+							filer.openFile(file.getPath(), false).close();
+							fail("cbc input was opened for random access");
+						} catch (UnsupportedOperationException e) {
+							// expected
+						}
+					}
+				}
+			}
+		} finally {
+			assertTrue(file.delete());
+		}
+	}
+
+	@Test
+	public void testCorruptChunkSize() {
+		byte[] header = new byte[ChunkCipher.HEADER_SIZE];
+		header[0] = 0x7f;
+		try {
+			ChunkCipher.readHeader(new ByteArrayInputStream(header), KEY, 1);
+			fail("corrupt chunk size was accepted");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("invalid chunk size"));
+		}
+	}
+
+	private static byte[] encrypt(byte[] plain, int threads) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ChunkCipher cipher = ChunkCipher.create(KEY, CHUNK_SIZE, threads);
+		cipher.writeHeader(baos);
+		try (OutputStream out = new ChunkCryptOutputStream(baos, cipher)) {
+			// uneven writes to cross chunk boundaries
+			for (int pos = 0; pos < plain.length; pos += 23) {
+				out.write(plain, pos, Math.min(23, plain.length - pos));
+			}
+		}
+		return baos.toByteArray();
+	}
+
+	private static byte[] decrypt(byte[] sealed, int threads) throws IOException {
+		InputStream in = new ByteArrayInputStream(sealed);
+		ChunkCipher cipher = ChunkCipher.readHeader(in, KEY, threads);
+		try (InputStream cryptIn = new ChunkCryptInputStream(in, cipher)) {
+			return IOUtils.toByteArray(cryptIn);
+		}
+	}
+
+	private static DataIo chunkIo(byte[] sealed, int threads) throws IOException {
+		File file = File.createTempFile("chunk", ".bin");
+		file.deleteOnExit();
+		Files.write(file.toPath(), sealed);
+
+		DataIo io = new LocalFiler().openFile(file.getPath(), false);
+		ChunkCipher cipher = ChunkCipher.readHeader(new ByteArrayInputStream(sealed), KEY, threads);
+		return new ChunkCryptDataIo(io, cipher, ChunkCipher.HEADER_SIZE);
+	}
+
+	private static byte[] random(int size) {
+		byte[] bytes = new byte[size];
+		new Random(size).nextBytes(bytes);
+		return bytes;
+	}
+
+	private static byte[] copy(byte[] bytes, int off, int len) {
+		byte[] copy = new byte[len];
+		System.arraycopy(bytes, off, copy, 0, len);
+		return copy;
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.lithium.flow.config.Config;
+import com.lithium.flow.config.Configs;
+import com.lithium.flow.config.exception.IllegalConfigException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class MetricsStreamerTest {
+	@Test
+	public void testReport() throws IOException {
+		List<StreamMetrics> reported = new ArrayList<>();
+		Config config = Configs.newBuilder()
+				.setString("metrics.name", "stage1")
+				.setString("metrics.interval", "0")
+				.setString("metrics.prefixes", "2")
+				.build();
+
+		try (MetricsStreamer streamer = new MetricsStreamer(config, (name, interval, metrics) -> {
+			assertEquals("stage1", name);
+			reported.addAll(metrics);
+		})) {
+			try (OutputStream out = streamer.filterOut(new ByteArrayOutputStream(), "/a/1")) {
+				out.write(new byte[10]);
+				out.write(1);
+			}
+			try (InputStream in = streamer.filterIn(new ByteArrayInputStream(new byte[7]), "/a/2")) {
+				IOUtils.toByteArray(in);
+			}
+			try (InputStream in = streamer.filterIn(new ByteArrayInputStream(new byte[3]), "/b/1")) {
+				IOUtils.toByteArray(in);
+			}
+			try (InputStream in = streamer.filterIn(new ByteArrayInputStream(new byte[5]), "/c/1")) {
+				IOUtils.toByteArray(in);
+			}
+			try (InputStream in = streamer.filterIn(new ByteArrayInputStream(new byte[5]), "/d/1")) {
+				IOUtils.toByteArray(in);
+			}
+		}
+
+		Map<String, StreamMetrics> byPrefix = new TreeMap<>();
+		reported.forEach(metrics -> byPrefix.put(metrics.getPrefix(), metrics));
+		assertEquals("[*, /a, /b]", byPrefix.keySet().toString());
+
+		StreamMetrics a = byPrefix.get("/a");
+		assertEquals("stage1", a.getStage());
+		assertEquals(2, a.getStreams());
+		assertEquals(11, a.getWriteBytes());
+		assertEquals(7, a.getReadBytes());
+		assertEquals(3, byPrefix.get("/b").getReadBytes());
+		assertEquals(2, byPrefix.get("*").getStreams());
+		assertEquals(10, byPrefix.get("*").getReadBytes());
+	}
+
+	@Test
+	public void testSnapshotResets() throws IOException {
+		Config config = Configs.newBuilder().setString("metrics.interval", "0").build();
+		try (MetricsStreamer streamer = new MetricsStreamer(config, (name, interval, metrics) -> {
+		})) {
+			streamer.filterOut(new ByteArrayOutputStream(), "/a").write(1);
+			assertEquals(1, streamer.snapshot().size());
+			assertTrue(streamer.snapshot().isEmpty());
+		}
+	}
+
+	@Test(expected = IllegalConfigException.class)
+	public void testUnknownReporter() {
+		MetricsReporter.build(Configs.newBuilder().setString("metrics.reporter", "foo").build());
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.lithium.flow.io.BufferPool;
+import com.lithium.flow.util.Daemons;
+import com.lithium.flow.util.Sleep;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class PipeStreamTest {
+	@Test
+	public void testOutput() throws IOException {
+		byte[] bytes = random(Pipes.CHUNK_SIZE * 3 + 11);
+		AtomicBoolean closed = new AtomicBoolean();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream() {
+			@Override
+			public void close() {
+				closed.set(true);
+			}
+		};
+
+		try (OutputStream out = new PipeOutputStream(baos, 2)) {
+			out.write(bytes, 0, 10);
+			out.flush();
+			out.write(bytes[10]);
+			out.write(bytes, 11, bytes.length - 11);
+		}
+
+		assertArrayEquals(bytes, baos.toByteArray());
+		assertTrue(closed.get());
+	}
+
+	@Test
+	public void testOutputWriteAfterClose() throws IOException {
+		OutputStream out = new PipeOutputStream(new ByteArrayOutputStream(), 1);
+		out.close();
+		out.close();
+
+		try {
+			out.write(1);
+			fail("write after close");
+		} catch (IOException e) {
+			assertEquals("closed", e.getMessage());
+		}
+
+		try {
+			out.flush();
+			fail("flush after close");
+		} catch (IOException e) {
+			assertEquals("closed", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testOutputFailure() throws IOException {
+		OutputStream failOut = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("fail");
+			}
+		};
+
+		OutputStream out = new PipeOutputStream(failOut, 1);
+		try {
+			// enough chunks to fill the queue once the pump has stopped taking them
+			for (int i = 0; i < 10; i++) {
+				out.write(new byte[Pipes.CHUNK_SIZE]);
+			}
+			out.close();
+			fail("failure was not thrown");
+		} catch (IOException e) {
+			assertEquals("fail", e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void testInput() throws IOException {
+		byte[] bytes = random(Pipes.CHUNK_SIZE * 3 + 11);
+		try (InputStream in = new PipeInputStream(new ByteArrayInputStream(bytes), 2)) {
+			assertEquals(bytes[0] & 0xff, in.read());
+			byte[] read = IOUtils.toByteArray(in);
+			assertEquals(bytes.length - 1, read.length);
+			assertEquals(-1, in.read());
+			assertEquals(-1, in.read(new byte[10], 0, 10));
+		}
+
+		try (InputStream in = new PipeInputStream(new ByteArrayInputStream(new byte[0]), 1)) {
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	public void testInputFailure() throws IOException {
+		InputStream failIn = new InputStream() {
+			private int count;
+
+			@Override
+			public int read() throws IOException {
+				if (count++ == 5) {
+					throw new IOException("fail");
+				}
+				return 7;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int read = read();
+				b[off] = (byte) read;
+				return 1;
+			}
+		};
+
+		try (InputStream in = new PipeInputStream(failIn, 2)) {
+			byte[] read = new byte[5];
+			IOUtils.readFully(in, read);
+			assertArrayEquals(new byte[] { 7, 7, 7, 7, 7 }, read);
+			try {
+				in.read();
+				fail("failure was not thrown");
+			} catch (IOException e) {
+				assertEquals("fail", e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testInputFailureReleases() throws IOException {
+		InputStream failIn = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new IOException("fail");
+			}
+		};
+
+		BufferPool pool = BufferPool.heap();
+		long leases = pool.getLeases();
+		long returned = pool.getPooled() + pool.getHits() + pool.getDrops();
+		try (InputStream in = new PipeInputStream(failIn, 2)) {
+			in.read();
+			fail("failure was not thrown");
+		} catch (IOException e) {
+			assertEquals("fail", e.getMessage());
+		}
+
+		// every chunk leased by the pump went back to the pool, either hit again or pooled or dropped
+		assertEquals(pool.getLeases() - leases, pool.getPooled() + pool.getHits() + pool.getDrops() - returned);
+	}
+
+	@Test
+	public void testNoPumpThreads() throws IOException {
+		byte[] bytes = random(Pipes.CHUNK_SIZE * 2 + 11);
+		CountDownLatch latch = new CountDownLatch(1);
+		try {
+			try {
+				while (true) {
+					Daemons.execute(() -> Sleep.softly(latch::await));
+				}
+			} catch (RejectedExecutionException e) {
+				// every daemon is busy
+			}
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			try (OutputStream out = new PipeOutputStream(baos, 2)) {
+				out.write(bytes[0]);
+				out.write(bytes, 1, bytes.length - 1);
+				out.flush();
+			}
+			assertArrayEquals(bytes, baos.toByteArray());
+
+			try (InputStream in = new PipeInputStream(new ByteArrayInputStream(bytes), 2)) {
+				assertArrayEquals(bytes, IOUtils.toByteArray(in));
+			}
+		} finally {
+			latch.countDown();
+		}
+	}
+
+	@Test
+	public void testInputClose() throws Exception {
+		CountDownLatch reading = new CountDownLatch(1);
+		CountDownLatch closed = new CountDownLatch(1);
+		InputStream blockingIn = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				reading.countDown();
+				while (closed.getCount() > 0) {
+					try {
+						closed.await();
+					} catch (InterruptedException e) {
+						// only closing the stream unblocks it
+					}
+				}
+				throw new IOException("closed");
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return read();
+			}
+
+			@Override
+			public void close() {
+				closed.countDown();
+			}
+		};
+
+		InputStream in = new PipeInputStream(blockingIn, 1);
+		assertTrue(reading.await(10, TimeUnit.SECONDS));
+		in.close();
+		assertTrue(closed.await(10, TimeUnit.SECONDS));
+		assertEquals(-1, in.read());
+	}
+
+	private static byte[] random(int size) {
+		byte[] bytes = new byte[size];
+		new Random(size).nextBytes(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class AdaptiveLimiterTest {
+	@Test
+	public void testBlocksAtLimit() throws InterruptedException {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 10, 0.5, 2);
+		long startTime = limiter.acquire();
+
+		CountDownLatch acquired = new CountDownLatch(1);
+		new Thread(() -> {
+			Unchecked.run(limiter::acquire);
+			acquired.countDown();
+		}).start();
+		assertFalse(acquired.await(50, TimeUnit.MILLISECONDS));
+
+		limiter.onSuccess("op", startTime);
+		assertTrue(acquired.await(10, TimeUnit.SECONDS));
+		assertEquals(1, limiter.getInFlight());
+	}
+
+	@Test
+	public void testDropped() throws InterruptedException {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(8, 1, 10, 0.5, 2);
+		limiter.onDropped(limiter.acquire());
+		assertEquals(4, limiter.getLimit());
+
+		// calls started before the last cut do not cut again
+		long startTime = limiter.acquire();
+		Thread.sleep(1);
+		limiter.onDropped(limiter.acquire());
+		limiter.onDropped(startTime);
+		assertEquals(2, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void testBaselinePerOperation() throws InterruptedException {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(8, 1, 10, 0.5, 2);
+		for (int i = 0; i < 5; i++) {
+			limiter.onSuccess("fast", limiter.acquire());
+		}
+
+		// a slow operation is only compared with itself
+		long startTime = limiter.acquire();
+		Thread.sleep(20);
+		limiter.onSuccess("slow", startTime);
+		assertEquals(8, limiter.getLimit());
+
+		startTime = limiter.acquire();
+		Thread.sleep(20);
+		limiter.onSuccess("fast", startTime);
+		assertEquals(4, limiter.getLimit());
+	}
+
+	@Test
+	public void testUnsampled() throws InterruptedException {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 10, 0.5, 2);
+		limiter.onSuccess(limiter.acquire());
+
+		limiter.acquire();
+		Thread.sleep(20);
+		limiter.onSuccess();
+		assertEquals(2, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void testIgnore() throws InterruptedException {
+		AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 10, 0.5, 2);
+		limiter.acquire();
+		limiter.onIgnore();
+		assertEquals(4, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.lithium.flow.util.Batcher.Batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class BatcherTest {
+	@Test
+	public void testOrder() throws InterruptedException {
+		Batcher<Integer> batcher = new Batcher<>(3, Integer.MAX_VALUE, 1);
+		for (int i = 0; i < 7; i++) {
+			batcher.offer(i);
+		}
+		batcher.close();
+
+		List<Integer> values = new ArrayList<>();
+		List<Integer> sizes = new ArrayList<>();
+		Batch<Integer> batch;
+		while ((batch = batcher.take()) != null) {
+			sizes.add(batch.size());
+			batch.forEach(values::add);
+		}
+
+		assertEquals(7, values.size());
+		for (int i = 0; i < 7; i++) {
+			assertEquals(i, (int) values.get(i));
+		}
+		assertEquals(3, sizes.size());
+		assertEquals(1, (int) sizes.get(2));
+		assertNull(batcher.take());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testOfferAfterClose() {
+		Batcher<Integer> batcher = new Batcher<>(3);
+		batcher.close();
+		batcher.offer(1);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCloseTwice() {
+		Batcher<Integer> batcher = new Batcher<>(3);
+		batcher.close();
+		batcher.close();
+	}
+
+	@Test
+	public void testWeigher() throws InterruptedException {
+		Batcher<Integer> batcher = new Batcher<Integer>(100, Integer.MAX_VALUE, 1).withWeigher(i -> i, 10);
+		batcher.offer(4);
+		batcher.offer(5);
+		batcher.offer(6);
+
+		Batch<Integer> batch = batcher.poll(1, TimeUnit.SECONDS);
+		assertEquals(3, batch.size());
+		assertEquals(15, batch.getWeight());
+	}
+
+	@Test
+	public void testPollFlushesPartial() throws InterruptedException {
+		Batcher<Integer> batcher = new Batcher<>(100, Integer.MAX_VALUE, 1);
+		batcher.offer(1);
+		Batch<Integer> batch = batcher.poll(10, TimeUnit.MILLISECONDS);
+		assertEquals(1, batch.size());
+		assertEquals(0, batcher.poll(10, TimeUnit.MILLISECONDS).size());
+	}
+
+	@Test
+	public void testPollFullQueue() throws InterruptedException {
+		Batcher<Integer> batcher = new Batcher<>(100, 1, 64);
+		for (int i = 0; i < 2; i++) {
+			int value = i;
+			Thread thread = new Thread(() -> batcher.offer(value));
+			thread.start();
+			thread.join();
+		}
+
+		// each producer left a partial batch on its own stripe, more than the queue can hold
+		List<Integer> values = new ArrayList<>();
+		Thread consumer = new Thread(() -> {
+			for (int i = 0; i < 2; i++) {
+				Unchecked.get(() -> batcher.poll(10, TimeUnit.MILLISECONDS)).forEach(values::add);
+			}
+		});
+		consumer.start();
+		consumer.join(10000);
+		assertFalse(consumer.isAlive());
+		values.sort(null);
+		assertEquals(Arrays.asList(0, 1), values);
+	}
+
+	@Test
+	public void testLinger() throws InterruptedException {
+		Batcher<Integer> batcher = new Batcher<Integer>(100, Integer.MAX_VALUE, 1).withLinger(20);
+		batcher.offer(1);
+		Batch<Integer> batch = batcher.poll(10, TimeUnit.SECONDS);
+		assertEquals(1, batch.size());
+	}
+
+	@Test
+	public void testLingerRecycled() throws InterruptedException {
+		Batcher<Integer> batcher = new Batcher<Integer>(2, Integer.MAX_VALUE, 1).withLinger(200);
+		batcher.offer(1);
+		batcher.offer(2);
+		batcher.recycle(batcher.take());
+
+		// the reused batch must not be flushed by the timer of the batch it was before
+		Thread.sleep(100);
+		long time = System.nanoTime();
+		batcher.offer(3);
+		Batch<Integer> batch = batcher.take();
+		assertEquals(1, batch.size());
+		assertTrue(System.nanoTime() - time >= TimeUnit.MILLISECONDS.toNanos(180));
+	}
+
+	@Test
+	public void testCloseRace() throws InterruptedException {
+		for (int round = 0; round < 20; round++) {
+			Batcher<Integer> batcher = new Batcher<>(7, Integer.MAX_VALUE, 4);
+			AtomicInteger offered = new AtomicInteger();
+			CountDownLatch started = new CountDownLatch(4);
+			List<Thread> threads = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				Thread thread = new Thread(() -> {
+					started.countDown();
+					try {
+						while (true) {
+							batcher.offer(1);
+							offered.incrementAndGet();
+						}
+					} catch (IllegalStateException e) {
+						// closed
+					}
+				});
+				thread.start();
+				threads.add(thread);
+			}
+
+			AtomicInteger taken = new AtomicInteger();
+			Thread consumer = new Thread(() -> {
+				Batch<Integer> batch;
+				while ((batch = Unchecked.get(batcher::take)) != null) {
+					taken.addAndGet(batch.size());
+					batcher.recycle(batch);
+				}
+			});
+			consumer.start();
+
+			started.await();
+			Thread.sleep(5);
+			batcher.close();
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			consumer.join();
+			assertEquals(offered.get(), taken.get());
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.lithium.flow.util.CircuitBreaker.State;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class CircuitBreakerTest {
+	@Test
+	public void testOpen() {
+		CircuitBreaker breaker = new CircuitBreaker(3, 60000);
+		breaker.onFailure();
+		breaker.onFailure();
+		assertEquals(State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+
+		breaker.onFailure();
+		assertEquals(State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+	}
+
+	@Test
+	public void testSuccessResets() {
+		CircuitBreaker breaker = new CircuitBreaker(2, 60000);
+		breaker.onFailure();
+		breaker.onSuccess();
+		breaker.onFailure();
+		assertEquals(State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void testProbe() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(1, 20);
+		breaker.onFailure();
+		assertFalse(breaker.allowRequest());
+
+		Thread.sleep(30);
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		assertTrue(breaker.allowRequest());
+		// only one probe at a time
+		assertFalse(breaker.allowRequest());
+
+		breaker.onSuccess();
+		assertEquals(State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	public void testProbeFailure() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(5, 20);
+		for (int i = 0; i < 5; i++) {
+			breaker.onFailure();
+		}
+
+		Thread.sleep(30);
+		assertTrue(breaker.allowRequest());
+		breaker.onFailure();
+		assertEquals(State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author Matt Ayres
+ */
+public class HashedWheelTimerTest {
+	@Nonnull
+	private static HashedWheelTimer newTimer() {
+		return new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8, MoreExecutors.directExecutor(), runnable -> {
+			Thread thread = new Thread(runnable, "wheel");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Test
+	public void testOrder() throws InterruptedException {
+		List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch latch = new CountDownLatch(3);
+		try (HashedWheelTimer timer = newTimer()) {
+			timer.schedule(() -> {
+				order.add(30);
+				latch.countDown();
+			}, 30, TimeUnit.MILLISECONDS);
+			timer.schedule(() -> {
+				order.add(10);
+				latch.countDown();
+			}, 10, TimeUnit.MILLISECONDS);
+			timer.schedule(() -> {
+				order.add(20);
+				latch.countDown();
+			}, 20, TimeUnit.MILLISECONDS);
+
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+		}
+		assertEquals(Arrays.asList(10, 20, 30), order);
+	}
+
+	@Test
+	public void testNotEarly() throws Exception {
+		try (HashedWheelTimer timer = newTimer()) {
+			// longer than a full turn of the wheel, so the task has to wait out several rounds
+			long time = System.nanoTime();
+			long[] ran = new long[1];
+			ScheduledFuture<?> future = timer.schedule(() -> ran[0] = System.nanoTime(), 50, TimeUnit.MILLISECONDS);
+			future.get(10, TimeUnit.SECONDS);
+			assertTrue(ran[0] - time >= TimeUnit.MILLISECONDS.toNanos(50));
+			assertEquals(0, timer.getPending());
+		}
+	}
+
+	@Test
+	public void testCancel() throws InterruptedException {
+		AtomicInteger count = new AtomicInteger();
+		try (HashedWheelTimer timer = newTimer()) {
+			ScheduledFuture<?> future = timer.schedule(count::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+			ScheduledFuture<?> other = timer.schedule(count::incrementAndGet, 1000, TimeUnit.MILLISECONDS);
+			assertEquals(2, timer.getPending());
+			assertTrue(future.cancel(false));
+			assertTrue(other.cancel(false));
+
+			Thread.sleep(50);
+			assertEquals(0, count.get());
+			assertEquals(0, timer.getPending());
+		}
+	}
+
+	@Test
+	public void testFailure() throws InterruptedException, TimeoutException {
+		try (HashedWheelTimer timer = newTimer()) {
+			ScheduledFuture<?> future = timer.schedule(() -> {
+				throw new IllegalStateException("fail");
+			}, 1, TimeUnit.MILLISECONDS);
+			try {
+				future.get(10, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		}
+	}
+
+	@Test
+	public void testClose() {
+		HashedWheelTimer timer = newTimer();
+		timer.close();
+		try {
+			timer.schedule(() -> {
+			}, 1, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(0, timer.getPending());
+	}
+}
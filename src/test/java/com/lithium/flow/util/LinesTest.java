@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.lithium.flow.filer.DecoratedFiler;
+import com.lithium.flow.filer.Filer;
+import com.lithium.flow.filer.LocalFiler;
+import com.lithium.flow.io.DataIo;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class LinesTest {
+	@Test
+	public void testTerminators() throws IOException {
+		List<String> expected = Arrays.asList("a", "", "b", "c", "", "d");
+		assertEquals(expected, read("a\n\nb\r\nc\r\rd", 64));
+		assertEquals(expected, read("a\n\nb\r\nc\r\rd\n", 64));
+		assertEquals(expected, read("a\n\nb\r\nc\r\rd\r\n", 1));
+	}
+
+	@Test
+	public void testLongLines() throws IOException {
+		String line = String.join("", Collections.nCopies(1000, "0123456789"));
+		assertEquals(Arrays.asList(line, "x", line), read(line + "\r\nx\n" + line, 16));
+	}
+
+	@Test
+	public void testUtf8() throws IOException {
+		assertEquals(Arrays.asList("caf\u00e9", "\u4e2d\u6587", "ascii"), read("caf\u00e9\n\u4e2d\u6587\r\nascii", 3));
+	}
+
+	@Test
+	public void testStream() {
+		List<String> lines = Lines.stream(input("a\nb\r\nc")).collect(Collectors.toList());
+		assertEquals(Arrays.asList("a", "b", "c"), lines);
+	}
+
+	@Test
+	public void testScan() throws IOException {
+		List<String> lines = new ArrayList<>();
+		List<Boolean> ascii = new ArrayList<>();
+		Lines.scan(input("one\ntw\u00f6\n"), line -> {
+			lines.add(line.toString());
+			ascii.add(line.isAscii());
+		});
+		assertEquals(Arrays.asList("one", "tw\u00f6"), lines);
+		assertEquals(Arrays.asList(true, false), ascii);
+	}
+
+	@Test
+	public void testParallel() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			String line = i % 7 == 0 ? "" : "line " + i;
+			expected.add(line);
+			sb.append(line).append(i % 3 == 0 ? "\r\n" : "\n");
+		}
+
+		File file = File.createTempFile("lines", ".txt");
+		try {
+			Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+			try (Filer filer = new LocalFiler()) {
+				for (int split : new int[] { 1, 2, 7, 64, 1024 }) {
+					try (Stream<String> lines = Lines.parallel(filer, file.getPath(), StandardCharsets.UTF_8, split)) {
+						assertEquals(expected, lines.collect(Collectors.toList()));
+					}
+				}
+			}
+		} finally {
+			assertTrue(file.delete());
+		}
+	}
+
+	@Test
+	public void testParallelNotSeekable() throws IOException {
+		File file = File.createTempFile("lines", ".txt");
+		try {
+			Files.write(file.toPath(), "a\nb\nc\n".getBytes(StandardCharsets.UTF_8));
+			Filer filer = new DecoratedFiler(new LocalFiler()) {
+				@Override
+				public boolean isSeekable() {
+					return false;
+				}
+
+				@Override
+				@Nonnull
+				public DataIo openFile(@Nonnull String path, boolean write) {
+					throw new AssertionError("opened " + path);
+				}
+			};
+			try (Stream<String> lines = Lines.parallel(filer, file.getPath(), StandardCharsets.UTF_8, 1)) {
+				assertEquals(Arrays.asList("a", "b", "c"), lines.collect(Collectors.toList()));
+			}
+		} finally {
+			assertTrue(file.delete());
+		}
+	}
+
+	@Test
+	public void testFirst() throws IOException {
+		assertEquals("a", Lines.first(input("a\nb")));
+		assertEquals("", Lines.first(input("")));
+	}
+
+	@Test
+	public void testSupported() {
+		assertTrue(LineReader.isSupported(StandardCharsets.UTF_8));
+		assertTrue(LineReader.isSupported(StandardCharsets.ISO_8859_1));
+		assertFalse(LineReader.isSupported(StandardCharsets.UTF_16));
+	}
+
+	private static List<String> read(String text, int bufferSize) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (LineReader reader = new LineReader(input(text), StandardCharsets.UTF_8, bufferSize)) {
+			String line;
+			while ((line = reader.readString()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	private static InputStream input(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
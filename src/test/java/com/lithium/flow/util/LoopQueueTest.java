@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class LoopQueueTest {
+	@Test
+	public void testOrder() {
+		List<Integer> values = Collections.synchronizedList(new ArrayList<>());
+		LoopQueue<Integer> queue = new LoopQueue<>(10);
+		queue.forEach(values::add);
+
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			queue.add(i);
+			expected.add(i);
+		}
+		queue.close();
+		assertEquals(expected, values);
+	}
+
+	@Test
+	public void testComparator() {
+		LoopQueue<Integer> queue = new LoopQueue<>(10, Comparator.<Integer>reverseOrder());
+		queue.add(1);
+		queue.add(3);
+		queue.add(2);
+
+		List<Integer> values = Collections.synchronizedList(new ArrayList<>());
+		queue.forList(values::addAll);
+		queue.close();
+		assertEquals(3, values.size());
+		assertEquals(3, (int) values.get(0));
+		assertEquals(2, (int) values.get(1));
+		assertEquals(1, (int) values.get(2));
+	}
+
+	@Test
+	public void testMaxBatch() {
+		List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+		LoopQueue<Integer> queue = new LoopQueue<>();
+		for (int i = 0; i < 25; i++) {
+			queue.add(i);
+		}
+		queue.forBatch(10, 60000, list -> sizes.add(list.size()));
+		queue.close();
+
+		assertEquals(3, sizes.size());
+		assertEquals(10, (int) sizes.get(0));
+		assertEquals(10, (int) sizes.get(1));
+		assertEquals(5, (int) sizes.get(2));
+	}
+
+	@Test
+	public void testLinger() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+		LoopQueue<Integer> queue = new LoopQueue<>();
+		queue.forBatch(100, 20, list -> {
+			sizes.add(list.size());
+			latch.countDown();
+		});
+
+		queue.add(1);
+		queue.add(2);
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals(1, sizes.size());
+		assertTrue(sizes.get(0) <= 2);
+		queue.close();
+	}
+
+	@Test
+	public void testLingerWhileBusy() throws InterruptedException {
+		CountDownLatch first = new CountDownLatch(1);
+		CountDownLatch second = new CountDownLatch(1);
+		AtomicLong secondTime = new AtomicLong();
+		LoopQueue<Integer> queue = new LoopQueue<>();
+		queue.forBatch(100, 200, list -> {
+			if (first.getCount() > 0) {
+				first.countDown();
+				Thread.sleep(300);
+			} else {
+				secondTime.set(System.nanoTime());
+				second.countDown();
+			}
+		});
+
+		queue.add(1);
+		assertTrue(first.await(10, TimeUnit.SECONDS));
+		long addTime = System.nanoTime();
+		queue.add(2);
+
+		// the second element has already lingered while the consumer was busy, so it is flushed right away
+		assertTrue(second.await(10, TimeUnit.SECONDS));
+		long waited = TimeUnit.NANOSECONDS.toMillis(secondTime.get() - addTime);
+		assertTrue("waited " + waited + "ms", waited < 450);
+		queue.close();
+	}
+
+	@Test
+	public void testBackpressure() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		LoopQueue<Integer> queue = new LoopQueue<>(2);
+		queue.add(1);
+		queue.add(2);
+
+		CountDownLatch added = new CountDownLatch(1);
+		new Thread(() -> {
+			queue.add(3);
+			added.countDown();
+		}).start();
+		assertFalse(added.await(50, TimeUnit.MILLISECONDS));
+
+		AtomicInteger count = new AtomicInteger();
+		queue.forEach(value -> {
+			latch.await();
+			count.incrementAndGet();
+		});
+		latch.countDown();
+		assertTrue(added.await(10, TimeUnit.SECONDS));
+		queue.close();
+		assertEquals(3, count.get());
+	}
+
+	@Test
+	public void testMultipleConsumers() {
+		AtomicInteger count = new AtomicInteger();
+		LoopQueue<Integer> queue = new LoopQueue<>(10);
+		for (int i = 0; i < 4; i++) {
+			queue.forEach(value -> count.incrementAndGet());
+		}
+		for (int i = 0; i < 1000; i++) {
+			queue.add(i);
+		}
+		queue.close();
+		assertEquals(1000, count.get());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testCloseTimeout() {
+		CountDownLatch latch = new CountDownLatch(1);
+		LoopQueue<Integer> queue = new LoopQueue<>();
+		queue.forList(1, list -> latch.await());
+		for (int i = 0; i < 5; i++) {
+			queue.add(i);
+		}
+
+		assertFalse(queue.close(50));
+		latch.countDown();
+	}
+
+	@Test
+	public void testCloseWithoutConsumers() {
+		LoopQueue<Integer> queue = new LoopQueue<>();
+		queue.add(1);
+		queue.close();
+		assertEquals(1, queue.size());
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class MeasureTest {
+	@Test
+	public void testDone() {
+		Measure measure = new Measure("test", String::valueOf);
+		measure.addTodo(10);
+		measure.incDone();
+		measure.addDone(4);
+		measure.addSkip(2);
+		assertEquals(12, measure.getTodo());
+		assertEquals(7, measure.getDone());
+		assertEquals(5, measure.getLeft());
+	}
+
+	@Test
+	public void testUniques() {
+		Measure measure = new Measure("test", String::valueOf);
+		measure.add("a");
+		measure.add("b");
+		measure.add("a");
+		assertEquals(2, measure.getDone());
+
+		measure.remove("a");
+		assertEquals(2, measure.getDone());
+		measure.remove("a");
+		assertEquals(1, measure.getDone());
+		measure.remove("b");
+		assertEquals(0, measure.getDone());
+	}
+
+	@Test
+	public void testApproximateUniques() {
+		Measure measure = new Measure("test", String::valueOf).withApproximateUniques();
+		for (int i = 0; i < 100000; i++) {
+			measure.add(i);
+			measure.add(i);
+		}
+		assertTrue(Math.abs(measure.getDone() - 100000) < 3000);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testApproximateRemove() {
+		Measure measure = new Measure("test", String::valueOf).withApproximateUniques();
+		measure.add("a");
+		measure.remove("a");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testApproximateAfterAdd() {
+		Measure measure = new Measure("test", String::valueOf);
+		measure.add("a");
+		measure.withApproximateUniques();
+	}
+
+	@Test
+	public void testRecord() {
+		Measure measure = new Measure("test", String::valueOf);
+		assertNull(measure.getDistribution());
+		for (int i = 1; i <= 1000; i++) {
+			measure.record(i);
+		}
+
+		Distribution distribution = measure.getDistribution();
+		assertNotNull(distribution);
+		assertEquals(1000, distribution.getCount());
+		assertTrue(Math.abs(distribution.percentile(50) - 500) <= 25);
+		assertTrue(Math.abs(distribution.percentile(99) - 990) <= 50);
+	}
+}
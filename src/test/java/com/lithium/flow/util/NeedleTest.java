@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class NeedleTest {
+	@Test
+	public void testToListOrder() {
+		Threader threader = new Threader(4);
+		Needle<Integer> needle = threader.needle();
+		for (int i = 0; i < 20; i++) {
+			int value = i;
+			needle.submit("task", () -> {
+				Thread.sleep(20 - value);
+				return value;
+			});
+		}
+
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			expected.add(i);
+		}
+		assertEquals(expected, needle.toList());
+		threader.close();
+	}
+
+	@Test
+	public void testIteratorCompletionOrder() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		Threader threader = new Threader(2);
+		Needle<String> needle = threader.needle();
+		needle.submit("slow", () -> {
+			latch.await();
+			return "slow";
+		});
+		needle.submit("fast", () -> "fast");
+
+		List<String> values = new ArrayList<>();
+		for (String value : needle) {
+			values.add(value);
+			latch.countDown();
+		}
+		assertEquals(Arrays.asList("fast", "slow"), values);
+		threader.close();
+	}
+
+	@Test
+	public void testFailedSkipped() {
+		Threader threader = new Threader(2);
+		Needle<String> needle = threader.needle();
+		needle.submit("ok", () -> "ok");
+		needle.submit("fail", () -> {
+			throw new RuntimeException("fail");
+		});
+
+		List<String> values = new ArrayList<>();
+		needle.forEach(values::add);
+		assertEquals(Arrays.asList("ok"), values);
+		threader.close();
+	}
+
+	@Test
+	public void testRetainedWithRetries() throws InterruptedException {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		AtomicInteger tries = new AtomicInteger();
+		Threader threader = new Threader(4).withRetries(3);
+		Needle<Integer> needle = threader.<Integer>needle().withRetained(2);
+		Thread producer = new Thread(() -> submitRetries(needle, tries, running, maxRunning));
+		producer.start();
+
+		// results have to be consumed while submitting, or the producer blocks on the retained permits
+		int consumed = 0;
+		while (consumed < 20) {
+			consumed += needle.toList().size();
+		}
+		producer.join();
+		assertEquals(20, consumed);
+		assertTrue(maxRunning.get() <= 2);
+		threader.close();
+	}
+
+	private static void submitRetries(@Nonnull Needle<Integer> needle, @Nonnull AtomicInteger tries,
+			@Nonnull AtomicInteger running, @Nonnull AtomicInteger maxRunning) {
+		for (int i = 0; i < 20; i++) {
+			int value = i;
+			needle.submit("task", () -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					// every task fails once, which would deadlock if each try took its own permit
+					if (tries.incrementAndGet() % 2 == 1) {
+						throw new RuntimeException("retry");
+					}
+					return value;
+				} finally {
+					running.decrementAndGet();
+				}
+			});
+		}
+	}
+
+	@Test
+	public void testRetainedBlocksUntilConsumed() throws InterruptedException {
+		Threader threader = new Threader(4);
+		Needle<Integer> needle = threader.<Integer>needle().withRetained(2);
+		AtomicInteger submitted = new AtomicInteger();
+		Thread producer = new Thread(() -> {
+			for (int i = 0; i < 5; i++) {
+				int value = i;
+				needle.submit("task", () -> value);
+				submitted.incrementAndGet();
+			}
+		});
+		producer.start();
+
+		// finished tasks keep their permits until their results are taken
+		producer.join(200);
+		assertTrue(producer.isAlive());
+		assertEquals(2, submitted.get());
+
+		Iterator<Integer> it = needle.iterator();
+		it.next();
+		long endTime = System.currentTimeMillis() + 10000;
+		while (submitted.get() < 3 && System.currentTimeMillis() < endTime) {
+			Thread.sleep(1);
+		}
+		assertEquals(3, submitted.get());
+
+		while (producer.isAlive()) {
+			needle.toList();
+		}
+		assertEquals(5, submitted.get());
+		needle.close();
+		threader.close();
+	}
+
+	@Test
+	public void testSubmitFailure() {
+		Threader threader = new Threader(1);
+		Needle<String> needle = threader.needle();
+		needle.submit("ok", () -> "ok");
+		threader.close();
+
+		try {
+			needle.submit("closed", () -> "closed");
+			fail();
+		} catch (RuntimeException e) {
+			// expected
+		}
+		assertEquals(Arrays.asList("ok"), needle.toList());
+		assertEquals(0, needle.size());
+	}
+
+	@Test
+	public void testFailFast() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		Threader threader = new Threader(2);
+		Needle<String> needle = threader.<String>needle().withFailFast(true);
+		needle.submit("slow", () -> {
+			latch.await();
+			return "slow";
+		});
+		needle.submit("fail", () -> {
+			throw new IllegalStateException("fail");
+		});
+
+		try {
+			needle.toList();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("fail", e.getMessage());
+		}
+		latch.countDown();
+		assertTrue(threader.close(10000));
+	}
+
+	@Test
+	public void testTimeout() {
+		CountDownLatch latch = new CountDownLatch(1);
+		Threader threader = new Threader(1);
+		Needle<String> needle = threader.<String>needle().withTimeout(50);
+		needle.submit("slow", () -> {
+			latch.await();
+			return "slow";
+		});
+
+		try {
+			needle.toList();
+			fail();
+		} catch (RuntimeException e) {
+			// expected
+		}
+		assertTrue(threader.close(10000));
+	}
+}
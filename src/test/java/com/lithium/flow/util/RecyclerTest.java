@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.lithium.flow.config.Configs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author Matt Ayres
+ */
+public class RecyclerTest {
+	@Test
+	public void testShared() throws IOException {
+		AtomicInteger created = new AtomicInteger();
+		AtomicInteger closed = new AtomicInteger();
+		Recycler<String, Closeable> recycler = new Recycler<>(Configs.empty(), key -> {
+			created.incrementAndGet();
+			return closed::incrementAndGet;
+		});
+
+		Object holder1 = new Object();
+		Object holder2 = new Object();
+		Closeable value = recycler.get("a").get(holder1);
+		assertSame(value, recycler.get("a").get(holder2));
+		recycler.get("b").get(holder1);
+		assertEquals(2, created.get());
+
+		recycler.get("a").recycle(holder1);
+		recycler.get("a").recycle(holder2);
+		assertEquals(0, closed.get());
+
+		// closing the recycler closes values even while they are held
+		recycler.close();
+		assertEquals(2, closed.get());
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author Matt Ayres
+ */
+public class RetryPolicyTest {
+	@Test
+	public void testRetries() throws IOException {
+		AtomicInteger tries = new AtomicInteger();
+		RetryPolicy policy = RetryPolicy.builder().tries(3).delay(1).build();
+		String result = policy.call(() -> {
+			if (tries.incrementAndGet() < 3) {
+				throw new IOException("fail");
+			}
+			return "ok";
+		});
+		assertEquals("ok", result);
+		assertEquals(3, tries.get());
+	}
+
+	@Test
+	public void testExhausted() {
+		AtomicInteger tries = new AtomicInteger();
+		RetryPolicy policy = RetryPolicy.builder().tries(3).delay(1).build();
+		try {
+			policy.call(() -> {
+				tries.incrementAndGet();
+				throw new IOException("fail");
+			});
+			fail();
+		} catch (RetryingException e) {
+			assertEquals(3, e.getExceptions().size());
+		} catch (IOException e) {
+			fail();
+		}
+		assertEquals(3, tries.get());
+	}
+
+	@Test
+	public void testAbortOn() {
+		AtomicInteger tries = new AtomicInteger();
+		RetryPolicy policy = RetryPolicy.builder().tries(3).delay(1).abortOn(FileNotFoundException.class).build();
+		try {
+			policy.call(() -> {
+				tries.incrementAndGet();
+				throw new FileNotFoundException("missing");
+			});
+			fail();
+		} catch (IOException e) {
+			assertTrue(e instanceof FileNotFoundException);
+		}
+		assertEquals(1, tries.get());
+	}
+
+	@Test
+	public void testRetryOn() {
+		RetryPolicy policy = RetryPolicy.builder().retryOn(IOException.class).build();
+		assertTrue(policy.isRetryable(new FileNotFoundException()));
+		assertFalse(policy.isRetryable(new IllegalStateException()));
+		assertFalse(policy.isRetryable(new InterruptedException()));
+	}
+
+	@Test
+	public void testDelay() {
+		RetryPolicy policy = RetryPolicy.builder().delay(100).maxDelay(500).multiplier(2).jitter(false).build();
+		assertEquals(100, policy.getDelay(0));
+		assertEquals(200, policy.getDelay(1));
+		assertEquals(400, policy.getDelay(2));
+		assertEquals(500, policy.getDelay(3));
+
+		RetryPolicy jittered = RetryPolicy.builder().delay(100).maxDelay(500).jitter(true).build();
+		for (int i = 0; i < 100; i++) {
+			long delay = jittered.getDelay(1);
+			assertTrue(delay >= 0 && delay <= 200);
+		}
+
+		RetryPolicy fixed = RetryPolicy.builder().delays(retry -> retry * 10).build();
+		assertEquals(30, fixed.getDelay(3));
+	}
+
+	@Test
+	public void testBudget() {
+		AtomicInteger tries = new AtomicInteger();
+		RetryPolicy policy = RetryPolicy.builder().tries(10).delay(1).budget(new RetryBudget(0, 2, 2)).build();
+		try {
+			policy.call(() -> {
+				tries.incrementAndGet();
+				throw new IllegalStateException("fail");
+			});
+			fail();
+		} catch (RetryingException e) {
+			// the budget allows two retries
+			assertEquals(3, tries.get());
+		}
+	}
+
+	@Test
+	public void testBreaker() {
+		AtomicInteger tries = new AtomicInteger();
+		RetryPolicy policy = RetryPolicy.builder().tries(5).delay(1).breaker(2, 60000).build();
+		try {
+			policy.call("host", () -> {
+				tries.incrementAndGet();
+				throw new IllegalStateException("fail");
+			});
+			fail();
+		} catch (CircuitOpenException e) {
+			assertEquals(2, tries.get());
+		}
+
+		try {
+			policy.call("host", () -> "ok");
+			fail();
+		} catch (CircuitOpenException e) {
+			// expected
+		}
+		assertEquals("ok", policy.call("other", () -> "ok"));
+	}
+
+	@Test
+	public void testBreakerIgnoresAborted() throws IOException {
+		RetryPolicy policy = RetryPolicy.builder().tries(3).delay(1).abortOn(FileNotFoundException.class)
+				.breaker(2, 60000).build();
+		for (int i = 0; i < 3; i++) {
+			try {
+				policy.call("host", () -> {
+					throw new FileNotFoundException("missing");
+				});
+				fail();
+			} catch (FileNotFoundException e) {
+				// expected
+			}
+		}
+
+		assertEquals(CircuitBreaker.State.CLOSED, policy.getBreaker("host").getState());
+		assertEquals("ok", policy.call("host", () -> "ok"));
+	}
+
+	@Test
+	public void testCallAsync() throws Exception {
+		AtomicInteger tries = new AtomicInteger();
+		RetryPolicy policy = RetryPolicy.builder().tries(3).delay(1).build();
+		ListenableFuture<String> future = policy.callAsync(null, () -> {
+			if (tries.incrementAndGet() < 3) {
+				throw new IOException("fail");
+			}
+			return "ok";
+		}, MoreExecutors.directExecutor());
+		assertEquals("ok", future.get(10, TimeUnit.SECONDS));
+		assertEquals(3, tries.get());
+	}
+
+	@Test
+	public void testCallAsyncExhausted() throws Exception {
+		RetryPolicy policy = RetryPolicy.builder().tries(2).delay(1).build();
+		ListenableFuture<String> future = policy.callAsync(null, () -> {
+			throw new IOException("fail");
+		}, MoreExecutors.directExecutor());
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RetryingException);
+		}
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 Lithium Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lithium.flow.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.lithium.flow.config.Configs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * @author Matt Ayres
+ */
+public class ThreaderTest {
+	@Test
+	public void testClose() {
+		AtomicInteger count = new AtomicInteger();
+		Threader threader = new Threader(4);
+		for (int i = 0; i < 100; i++) {
+			threader.execute("task", () -> {
+				Thread.sleep(1);
+				count.incrementAndGet();
+			});
+		}
+		threader.close();
+		assertEquals(100, count.get());
+		assertEquals(0, threader.getRemaining());
+	}
+
+	@Test
+	public void testCloseTimeout() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		Threader threader = new Threader(1);
+		threader.execute("task", latch::await);
+
+		assertFalse(threader.close(50));
+		assertEquals(1, threader.getRemaining());
+		latch.countDown();
+		assertTrue(threader.close(10000));
+	}
+
+	@Test
+	public void testMaxQueued() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch latch = new CountDownLatch(1);
+		Threader threader = new Threader(1).withMaxQueued(2);
+		threader.execute("block", () -> {
+			started.countDown();
+			latch.await();
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		threader.execute("queued1", () -> {
+		});
+		threader.execute("queued2", () -> {
+		});
+		assertEquals(2, threader.getQueued());
+
+		// a third queued task has to wait until the running task lets the first one start
+		CountDownLatch submitted = new CountDownLatch(1);
+		Thread thread = new Thread(() -> {
+			threader.execute("queued3", () -> {
+			});
+			submitted.countDown();
+		});
+		thread.start();
+		assertFalse(submitted.await(50, TimeUnit.MILLISECONDS));
+
+		latch.countDown();
+		assertTrue(submitted.await(10, TimeUnit.SECONDS));
+		threader.close();
+		assertEquals(0, threader.getQueued());
+	}
+
+	@Test
+	public void testVirtual() {
+		boolean supported = Arrays.stream(Executors.class.getMethods())
+				.anyMatch(method -> method.getName().equals("newVirtualThreadPerTaskExecutor"));
+
+		Threader threader = Threader.build(Configs.newBuilder()
+				.setString("threads", "virtual")
+				.setString("maxQueued", "4")
+				.build());
+		assertEquals(supported, threader.isVirtual());
+
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		for (int i = 0; i < 50; i++) {
+			threader.execute("task", () -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				Thread.sleep(1);
+				running.decrementAndGet();
+			});
+		}
+		threader.close();
+
+		assertEquals(0, threader.getRemaining());
+		if (supported) {
+			// with virtual threads maxQueued limits running tasks too
+			assertTrue(maxRunning.get() <= 4);
+		}
+	}
+
+	@Test
+	public void testCloseWaitsForCancelled() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch latch = new CountDownLatch(1);
+		AtomicInteger finished = new AtomicInteger();
+		Threader threader = new Threader(1);
+		ListenableFuture<Void> future = threader.execute("task", () -> {
+			started.countDown();
+			while (latch.getCount() > 0) {
+				// ignores interrupts so that it keeps running after being cancelled
+				Thread.yield();
+			}
+			finished.incrementAndGet();
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		try {
+			future.cancel(true);
+			assertEquals(1, threader.getRemaining());
+			assertFalse(threader.close(50));
+		} finally {
+			latch.countDown();
+		}
+		assertTrue(threader.close(10000));
+		assertEquals(1, finished.get());
+	}
+
+	@Test
+	public void testRetries() {
+		AtomicInteger tries = new AtomicInteger();
+		Threader threader = new Threader(2).withRetries(3);
+		threader.execute("retry", () -> {
+			if (tries.incrementAndGet() < 3) {
+				throw new RuntimeException("fail");
+			}
+		});
+		threader.close();
+		assertEquals(3, tries.get());
+	}
+
+	@Test
+	public void testPriorityLanes() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch latch = new CountDownLatch(1);
+		Threader threader = new Threader(1);
+		threader.execute("block", () -> {
+			started.countDown();
+			latch.await();
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		for (int i = 0; i < 3; i++) {
+			String value = "bulk" + i;
+			threader.submit("bulk", 0, () -> order.add(value));
+		}
+		String value = "other";
+		threader.submit("other", 0, () -> order.add(value));
+		threader.submit("urgent", 10, () -> order.add("urgent"));
+
+		latch.countDown();
+		threader.close();
+		assertEquals(Arrays.asList("urgent", "bulk0", "other", "bulk1", "bulk2"), order);
+	}
+
+	@Test
+	public void testPriorityRetries() throws Exception {
+		AtomicInteger tries = new AtomicInteger();
+		Threader threader = new Threader(1).withRetries(2);
+		ListenableFuture<Integer> future = threader.submit("retry", 1, () -> {
+			if (tries.incrementAndGet() < 3) {
+				throw new RuntimeException("fail");
+			}
+			return tries.get();
+		});
+		assertEquals(3, (int) future.get(10, TimeUnit.SECONDS));
+		threader.close();
+	}
+
+	@Test
+	public void testComputeNested() throws Exception {
+		Threader threader = Threader.build(Configs.newBuilder()
+				.setString("threads", "2")
+				.setString("workStealing", "true")
+				.build());
+		AtomicInteger count = new AtomicInteger();
+		List<ListenableFuture<Integer>> futures = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(threader.submit("outer", () -> {
+				for (int j = 0; j < 10; j++) {
+					threader.execute("inner", count::incrementAndGet);
+				}
+				return count.incrementAndGet();
+			}));
+		}
+		for (ListenableFuture<Integer> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		threader.close();
+		assertEquals(110, count.get());
+		assertEquals(0, threader.getRemaining());
+	}
+}